@@ -1,17 +1,27 @@
 package com.example.android.news;
 
-
-import android.graphics.Bitmap;
+import java.nio.charset.Charset;
 
 public class Article {
 
+    // Returned by getStableId() for an article without link nor id, as RecyclerView.NO_ID
+    public static final long NO_STABLE_ID = -1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private String mId;
     private String mTitle;
     private String mAuthor;
     private String mDate;
+    private long mPublicationTime = PublicationDate.UNKNOWN;
     private String mSection;
     private String mLink;
-    private Bitmap mThumbnail;
-    private boolean mHasThumbnail = false;
+    private String mThumbnailUrl;
+    // Hashed the first time it is asked for, as the adapter asks for it on every layout
+    private volatile long mStableId;
+    private volatile boolean mHasStableId;
 
     /*
      * Constructor
@@ -24,9 +34,36 @@ public class Article {
         mLink = link;
     }
 
+    public Article(String title, String author, String date, String section, String link,
+                   String thumbnailUrl) {
+        this(title, author, date, section, link);
+        mThumbnailUrl = thumbnailUrl;
+    }
+
+    /*
+     * publicationTime is the time of publication in milliseconds since the epoch, or
+     * PublicationDate.UNKNOWN. Its human readable form is only made when it is shown.
+     */
+    public Article(String id, String title, String author, long publicationTime,
+                   String section, String link, String thumbnailUrl) {
+        this(title, author, null, section, link, thumbnailUrl);
+        mId = id;
+        mPublicationTime = publicationTime;
+    }
+
     /*
      * Getters
      */
+    // Unique id of the article in the API, or null if unknown
+    public String getId() {
+        return mId;
+    }
+
+    // Key identifying the article across loads: its id, or else its link
+    public String getKey() {
+        return mId != null ? mId : mLink;
+    }
+
     public String getTitle() {
         return mTitle;
     }
@@ -35,8 +72,19 @@ public class Article {
         return mAuthor;
     }
 
+    // Human readable date of publication, in the format of the current locale
     public String getDate() {
-        return mDate;
+        return mDate != null ? mDate : PublicationDate.formatForDisplay(mPublicationTime);
+    }
+
+    // Time of publication in milliseconds since the epoch, or PublicationDate.UNKNOWN
+    public long getPublicationTime() {
+        return mPublicationTime;
+    }
+
+    // ISO-8601 datetime of publication (e.g. 2017-06-20T14:41:01Z), or null if unknown
+    public String getPublicationDate() {
+        return PublicationDate.format(mPublicationTime);
     }
 
     public String getSection() {
@@ -47,19 +95,31 @@ public class Article {
         return mLink;
     }
 
-    // Call getThumbnail() ONLY IF hasThumbnail() has returned TRUE
-    public Bitmap getThumbnail() {
-        return mThumbnail;
-    }
-
-    // Set thumbnail
-    public void setThumbnail(Bitmap thumbnail) {
-        mThumbnail = thumbnail;
-        mHasThumbnail = true;
+    // URL of the thumbnail image, or null if the article has no thumbnail
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
     }
 
-    public boolean hasThumbnail() {
-        return mHasThumbnail;
+    /*
+     * Return an id of the article in lists, derived from its URL, or else its key, so that it
+     * is the same across loads, or NO_STABLE_ID if it has neither.
+     */
+    public long getStableId() {
+        if (!mHasStableId) {
+            String link = mLink != null ? mLink : getKey();
+            long hash = NO_STABLE_ID;
+            if (link != null) {
+                // 64-bit FNV-1a hash, as String.hashCode() collides too easily for ids
+                hash = FNV_OFFSET_BASIS;
+                for (byte b : link.getBytes(UTF_8)) {
+                    hash ^= b & 0xff;
+                    hash *= FNV_PRIME;
+                }
+            }
+            mStableId = hash;
+            mHasStableId = true;
+        }
+        return mStableId;
     }
 
 }
@@ -0,0 +1,316 @@
+package com.example.android.news;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a list of articles, to keep them without fetching and parsing
+ * the feed again: in the saved state of an activity, or in a snapshot file which is read
+ * back through a memory mapping.
+ * <p>
+ * The encoding starts with a magic number and a version, followed by a table of the distinct
+ * sections and authors, which repeat across the feed: each of them is written once, and only
+ * referred to by its index afterwards. Then come the articles, each as its other strings,
+ * the indexes of its section and author, and the difference between its publication time
+ * and the one of the previous article, which is small since the feed is sorted by date.
+ * Numbers are written as variable-length integers (7 bits per byte). Thumbnails are kept by
+ * their URL, and the images themselves stay in the {@link ThumbnailCache}.
+ * <p>
+ * Articles are encoded through their getters: the date string of the articles created with
+ * one, rather than with a publication time, is not kept. This class does not depend on the
+ * Android framework.
+ */
+public final class ArticleCodec {
+
+    // "NEWS"
+    private static final int MAGIC = 0x4e455753;
+    // To be increased whenever the encoding changes: older encodings are then rejected
+    static final int VERSION = 1;
+
+    // Bit of the flags of an article telling that it has a publication time
+    private static final int FLAG_PUBLICATION_TIME = 1;
+    // Index, or length plus one, of a null string
+    private static final int NULL_STRING = 0;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ArticleCodec() {
+    }
+
+    /**
+     * Return the encoding of the given articles.
+     */
+    public static byte[] encode(List<Article> articles) {
+        // Table of the distinct sections and authors, in order of first appearance.
+        // Index 0 stands for null.
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] references = new int[articles.size() * 2];
+        int r = 0;
+        for (Article article : articles) {
+            references[r++] = intern(article.getSection(), indexes, strings);
+            references[r++] = intern(article.getAuthor(), indexes, strings);
+        }
+
+        Output output = new Output(articles.size() * 160);
+        output.writeInt(MAGIC);
+        output.writeVarint(VERSION);
+        output.writeVarint(strings.size());
+        for (String string : strings) {
+            output.writeString(string);
+        }
+        output.writeVarint(articles.size());
+        long previousTime = 0;
+        r = 0;
+        for (Article article : articles) {
+            long time = article.getPublicationTime();
+            boolean hasTime = time != PublicationDate.UNKNOWN;
+            output.writeVarint(hasTime ? FLAG_PUBLICATION_TIME : 0);
+            output.writeString(article.getId());
+            output.writeString(article.getTitle());
+            output.writeString(article.getLink());
+            output.writeString(article.getThumbnailUrl());
+            output.writeVarint(references[r++]);
+            output.writeVarint(references[r++]);
+            if (hasTime) {
+                // Zigzag encoding, so that small negative differences are short too
+                long delta = time - previousTime;
+                output.writeVarint((delta << 1) ^ (delta >> 63));
+                previousTime = time;
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Return the articles encoded in the given buffer, from its position.
+     * An IOException is thrown if the buffer does not hold a valid encoding of this version.
+     */
+    public static List<Article> decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an encoding of articles");
+            }
+            Input input = new Input(buffer);
+            int version = input.readCount();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version: " + version);
+            }
+
+            String[] strings = new String[input.readCount() + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = input.readString();
+            }
+
+            int count = input.readCount();
+            // Every article takes at least 7 bytes: do not trust a larger count
+            List<Article> articles = new ArrayList<>(Math.min(count, buffer.remaining() / 7));
+            long previousTime = 0;
+            for (int i = 0; i < count; i++) {
+                int flags = input.readCount();
+                String id = input.readString();
+                String title = input.readString();
+                String link = input.readString();
+                String thumbnailUrl = input.readString();
+                String section = input.readReference(strings);
+                String author = input.readReference(strings);
+                long time = PublicationDate.UNKNOWN;
+                if ((flags & FLAG_PUBLICATION_TIME) != 0) {
+                    long zigzag = input.readVarint();
+                    time = previousTime + ((zigzag >>> 1) ^ -(zigzag & 1));
+                    previousTime = time;
+                }
+                articles.add(new Article(id, title, author, time, section, link, thumbnailUrl));
+            }
+            return articles;
+
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated encoding of articles", e);
+        }
+    }
+
+    /**
+     * Write the encoding of the given articles to the given file. The file is replaced at
+     * once, so that it is never read half written.
+     */
+    public static void write(List<Article> articles, File file) throws IOException {
+        byte[] encoded = encode(articles);
+        File temporary = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            FileOutputStream output = new FileOutputStream(temporary);
+            try {
+                output.write(encoded);
+                // Make sure the bytes are on disk before the file takes the place of the old one
+                output.getFD().sync();
+            } finally {
+                output.close();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Could not replace " + file);
+            }
+        } finally {
+            // Only left if something went wrong
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Return the articles of a file written by {@link #write(List, File)}, which is mapped
+     * into memory rather than copied. An IOException is thrown if the file is missing,
+     * or does not hold a valid encoding of this version.
+     */
+    public static List<Article> read(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            return decode(buffer);
+        } finally {
+            input.close();
+        }
+    }
+
+    private static int intern(String string, Map<String, Integer> indexes,
+                              List<String> strings) {
+        if (string == null) {
+            return NULL_STRING;
+        }
+        Integer index = indexes.get(string);
+        if (index == null) {
+            strings.add(string);
+            index = strings.size();
+            indexes.put(string, index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the numbers and the strings of an encoding.
+     */
+    private static class Input {
+
+        private final ByteBuffer mBuffer;
+        private byte[] mScratch = new byte[256];
+
+        Input(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        /*
+         * Read a string written by Output.writeString(), which may be null.
+         */
+        String readString() throws IOException {
+            int length = readCount() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > mScratch.length) {
+                mScratch = new byte[Math.max(length, mScratch.length * 2)];
+            }
+            mBuffer.get(mScratch, 0, length);
+            return new String(mScratch, 0, length, UTF_8);
+        }
+
+        /*
+         * Read the index of a string of the given table, where strings[0] is null.
+         */
+        String readReference(String[] strings) throws IOException {
+            int index = readCount();
+            if (index >= strings.length) {
+                throw new IOException("String index out of range: " + index);
+            }
+            return strings[index];
+        }
+
+        /*
+         * Read a variable-length integer which must fit in a non-negative int.
+         */
+        int readCount() throws IOException {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Invalid count: " + value);
+            }
+            return (int) value;
+        }
+
+        long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = mBuffer.get();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+    }
+
+    /**
+     * Growable output buffer, not synchronized unlike ByteArrayOutputStream.
+     */
+    private static class Output {
+
+        private byte[] mBytes;
+        private int mSize;
+
+        Output(int capacity) {
+            mBytes = new byte[Math.max(16, capacity)];
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            mBytes[mSize++] = (byte) (value >>> 24);
+            mBytes[mSize++] = (byte) (value >>> 16);
+            mBytes[mSize++] = (byte) (value >>> 8);
+            mBytes[mSize++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                mBytes[mSize++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            mBytes[mSize++] = (byte) value;
+        }
+
+        /*
+         * Write the given string, which may be null, as its length plus one and its bytes.
+         */
+        void writeString(String string) {
+            if (string == null) {
+                writeVarint(NULL_STRING);
+                return;
+            }
+            byte[] bytes = string.getBytes(UTF_8);
+            writeVarint(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, mBytes, mSize, bytes.length);
+            mSize += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(mBytes, mSize);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (mSize + extra > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mSize + extra, mBytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.android.news;
+
+import android.provider.BaseColumns;
+
+/**
+ * Schema of the local database where the last fetched articles are stored,
+ * so that they can be displayed at startup without waiting for the network.
+ */
+public final class ArticleContract {
+
+    private ArticleContract() {
+    }
+
+    /**
+     * Each row is an article. Rows are ordered by {@link ArticleEntry#COLUMN_POSITION},
+     * which is the position of the article in the news feed.
+     */
+    public static final class ArticleEntry implements BaseColumns {
+
+        public static final String TABLE_NAME = "articles";
+
+        public static final String COLUMN_POSITION = "position";
+        public static final String COLUMN_ARTICLE_ID = "article_id";
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_AUTHOR = "author";
+        // Milliseconds since the epoch, or null if unknown
+        public static final String COLUMN_PUBLICATION_TIME = "publication_time";
+        public static final String COLUMN_SECTION = "section";
+        public static final String COLUMN_LINK = "link";
+        public static final String COLUMN_THUMBNAIL_URL = "thumbnail_url";
+    }
+}
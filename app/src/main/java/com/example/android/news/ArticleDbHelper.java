@@ -0,0 +1,41 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.android.news.ArticleContract.ArticleEntry;
+
+/**
+ * Creates and upgrades the local database of articles.
+ */
+public class ArticleDbHelper extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "articles.db";
+    private static final int DATABASE_VERSION = 3;
+
+    public ArticleDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + ArticleEntry.TABLE_NAME + " ("
+                + ArticleEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + ArticleEntry.COLUMN_POSITION + " INTEGER NOT NULL, "
+                + ArticleEntry.COLUMN_ARTICLE_ID + " TEXT, "
+                + ArticleEntry.COLUMN_TITLE + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_AUTHOR + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_PUBLICATION_TIME + " INTEGER, "
+                + ArticleEntry.COLUMN_SECTION + " TEXT NOT NULL, "
+                + ArticleEntry.COLUMN_LINK + " TEXT NOT NULL UNIQUE, "
+                + ArticleEntry.COLUMN_THUMBNAIL_URL + " TEXT);");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The database is only a cache of the news feed: start over
+        db.execSQL("DROP TABLE IF EXISTS " + ArticleEntry.TABLE_NAME);
+        onCreate(db);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.android.news;
+
+import android.support.v7.util.DiffUtil;
+
+import java.util.List;
+
+/**
+ * Compares two lists of {@link Article} objects for {@link DiffUtil}: two articles are the
+ * same item if they have the same key, and their row needs to be bound again only if any of
+ * the fields it shows has changed.
+ */
+public class ArticleDiffCallback extends DiffUtil.Callback {
+
+    private final List<Article> mOldList;
+    private final List<Article> mNewList;
+
+    public ArticleDiffCallback(List<Article> oldList, List<Article> newList) {
+        mOldList = oldList;
+        mNewList = newList;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldList.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewList.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return equal(mOldList.get(oldItemPosition).getKey(),
+                mNewList.get(newItemPosition).getKey());
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        Article oldItem = mOldList.get(oldItemPosition);
+        Article newItem = mNewList.get(newItemPosition);
+        return equal(oldItem.getTitle(), newItem.getTitle())
+                && equal(oldItem.getAuthor(), newItem.getAuthor())
+                && oldItem.getPublicationTime() == newItem.getPublicationTime()
+                && equal(oldItem.getSection(), newItem.getSection())
+                && equal(oldItem.getThumbnailUrl(), newItem.getThumbnailUrl());
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
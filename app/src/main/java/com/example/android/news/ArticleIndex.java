@@ -0,0 +1,271 @@
+package com.example.android.news;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index of the words of the titles, authors and sections of the articles
+ * fetched so far, so that they can be searched on the device, as the user types, without any
+ * request to the API.
+ * <p>
+ * Words are lower case, without accents. Every word of a query matches the indexed words it is
+ * a prefix of, and an article matches a query if all its words match: "quant comp" finds
+ * "Quantum computing". The words are kept sorted, so that the words of a prefix are found by a
+ * single range lookup, each with the sorted list of the articles it appears in.
+ * <p>
+ * Articles are added incrementally, and an article added again, identified by its key,
+ * replaces the previous one. The index holds at most a given number of articles, the ones
+ * added first being dropped first. Dropped articles are only skipped by the queries, until
+ * there are as many of them as live articles, at which point the index is built again.
+ * <p>
+ * This class is thread safe, and does not depend on the Android framework.
+ */
+public class ArticleIndex {
+
+    /**
+     * Orders articles by publication time, oldest first.
+     */
+    private static final Comparator<Article> OLDEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            long timeA = a.getPublicationTime();
+            long timeB = b.getPublicationTime();
+            return timeA < timeB ? -1 : (timeA == timeB ? 0 : 1);
+        }
+    };
+
+    private final int mMaxArticles;
+    // Articles by document number, in order of addition, null once dropped
+    private final List<Article> mDocuments = new ArrayList<>();
+    private final BitSet mDropped = new BitSet();
+    private int mDroppedCount;
+    // Document number of the live article of each key
+    private final Map<String, Integer> mKeys = new HashMap<>();
+    // Sorted list of the documents of each word
+    private final TreeMap<String, Postings> mWords = new TreeMap<>();
+    // Incremented on every change, see getVersion()
+    private long mVersion;
+
+    public ArticleIndex(int maxArticles) {
+        if (maxArticles < 1) {
+            throw new IllegalArgumentException("The index must hold at least one article");
+        }
+        mMaxArticles = maxArticles;
+    }
+
+    /**
+     * Index the given article, replacing the one with the same key, if any.
+     */
+    public synchronized void add(Article article) {
+        Integer previous = mKeys.put(article.getKey(), mDocuments.size());
+        if (previous != null) {
+            drop(previous);
+        }
+        int document = mDocuments.size();
+        mDocuments.add(article);
+        for (String word : wordsOf(article)) {
+            Postings postings = mWords.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                mWords.put(word, postings);
+            }
+            postings.add(document);
+        }
+        // Drop the oldest articles beyond the limit
+        for (int oldest = mDropped.nextClearBit(0); size() > mMaxArticles;
+             oldest = mDropped.nextClearBit(oldest + 1)) {
+            mKeys.remove(mDocuments.get(oldest).getKey());
+            drop(oldest);
+        }
+        if (mDroppedCount > size()) {
+            compact();
+        }
+        mVersion++;
+    }
+
+    /**
+     * Index the given articles, see {@link #add(Article)}.
+     */
+    public synchronized void addAll(List<Article> articles) {
+        for (Article article : articles) {
+            add(article);
+        }
+    }
+
+    /**
+     * Return the articles matching the given query, newest first, at most the given number.
+     * An empty query matches nothing.
+     */
+    public synchronized List<Article> search(String query, int maxResults) {
+        List<String> prefixes = tokenize(query);
+        if (prefixes.isEmpty() || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+        BitSet matches = null;
+        for (String prefix : prefixes) {
+            BitSet documents = new BitSet(mDocuments.size());
+            for (Postings postings : wordsStartingWith(prefix).values()) {
+                postings.addTo(documents);
+            }
+            if (matches == null) {
+                matches = documents;
+            } else {
+                matches.and(documents);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        matches.andNot(mDropped);
+
+        // Keep the newest matches only, in a heap whose head is the oldest of them
+        PriorityQueue<Article> newest =
+                new PriorityQueue<>(Math.min(maxResults, 64), OLDEST_FIRST);
+        for (int d = matches.nextSetBit(0); d >= 0; d = matches.nextSetBit(d + 1)) {
+            Article article = mDocuments.get(d);
+            if (newest.size() < maxResults) {
+                newest.add(article);
+            } else if (article.getPublicationTime() > newest.peek().getPublicationTime()) {
+                newest.poll();
+                newest.add(article);
+            }
+        }
+        Article[] results = new Article[newest.size()];
+        for (int i = results.length - 1; i >= 0; i--) {
+            results[i] = newest.poll();
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Return the indexed articles, in order of addition.
+     */
+    public synchronized List<Article> getArticles() {
+        List<Article> articles = new ArrayList<>(size());
+        for (int d = mDropped.nextClearBit(0); d < mDocuments.size();
+             d = mDropped.nextClearBit(d + 1)) {
+            articles.add(mDocuments.get(d));
+        }
+        return articles;
+    }
+
+    // Number of indexed articles
+    public synchronized int size() {
+        return mDocuments.size() - mDroppedCount;
+    }
+
+    // Number of distinct indexed words
+    public synchronized int getWordCount() {
+        return mWords.size();
+    }
+
+    /**
+     * Return a number which changes every time articles are added, to tell whether the index
+     * has changed since it was last saved.
+     */
+    public synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Split the given text into lower case words without accents.
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Take the accents apart from their letters, then drop them below
+                text = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && word.length() > 0) {
+                words.add(word.toString().toLowerCase(Locale.US));
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    private static List<String> wordsOf(Article article) {
+        List<String> words = tokenize(article.getTitle());
+        words.addAll(tokenize(article.getAuthor()));
+        words.addAll(tokenize(article.getSection()));
+        return words;
+    }
+
+    private SortedMap<String, Postings> wordsStartingWith(String prefix) {
+        // The words starting with the prefix sort between it and its successor
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE) {
+            return mWords.tailMap(prefix);
+        }
+        return mWords.subMap(prefix, prefix.substring(0, prefix.length() - 1) + (char) (last + 1));
+    }
+
+    private void drop(int document) {
+        mDropped.set(document);
+        mDocuments.set(document, null);
+        mDroppedCount++;
+    }
+
+    /*
+     * Index the live articles again, without the dropped ones.
+     */
+    private void compact() {
+        List<Article> articles = getArticles();
+        mDocuments.clear();
+        mDropped.clear();
+        mDroppedCount = 0;
+        mKeys.clear();
+        mWords.clear();
+        for (Article article : articles) {
+            add(article);
+        }
+    }
+
+    /**
+     * Growable sorted array of document numbers.
+     */
+    private static class Postings {
+
+        private int[] mDocuments = new int[4];
+        private int mSize;
+
+        void add(int document) {
+            // A word may appear twice in the same article
+            if (mSize > 0 && mDocuments[mSize - 1] == document) {
+                return;
+            }
+            if (mSize == mDocuments.length) {
+                mDocuments = Arrays.copyOf(mDocuments, mSize * 2);
+            }
+            mDocuments[mSize++] = document;
+        }
+
+        void addTo(BitSet documents) {
+            for (int i = 0; i < mSize; i++) {
+                documents.set(mDocuments[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.android.news;
+
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds the list of articles shown by an adapter, and turns every new list submitted into
+ * the fine grained updates (insertions, removals, changes) that lead to it from the list
+ * on screen, so that only the rows that actually changed are bound and animated again.
+ * <p>
+ * The differences are computed in the background, and dispatched in the main thread. If a new
+ * list is submitted while the differences of the previous one are being computed,
+ * the previous one is dropped. Lists are never modified once submitted.
+ * <p>
+ * ArticleListDiffer is not thread safe: it is meant to be used from the main thread only,
+ * and the main thread executor given to the constructor must run the results there.
+ */
+public class ArticleListDiffer {
+
+    private final ListUpdateCallback mUpdateCallback;
+    private final Executor mBackground;
+    private final Executor mMainThread;
+    // List on screen
+    private List<Article> mList = Collections.emptyList();
+    // Last list submitted, which is on screen once its differences have been dispatched
+    private List<Article> mLatestList = Collections.emptyList();
+    // Incremented at each submission, so that the outdated ones can be dropped
+    private int mGeneration;
+
+    public ArticleListDiffer(ListUpdateCallback updateCallback, Executor background,
+                             Executor mainThread) {
+        mUpdateCallback = updateCallback;
+        mBackground = background;
+        mMainThread = mainThread;
+    }
+
+    /**
+     * Return the list on screen.
+     */
+    public List<Article> getList() {
+        return mList;
+    }
+
+    /**
+     * Return the last list submitted, to which any further change must be applied.
+     */
+    public List<Article> getLatestList() {
+        return mLatestList;
+    }
+
+    public void submitList(List<Article> newList) {
+        submitList(newList, null);
+    }
+
+    /**
+     * Replace the list on screen with the given one. The given callback, if any, is run
+     * in the main thread once the list is on screen, unless another list has been submitted
+     * in the meantime.
+     */
+    public void submitList(final List<Article> newList, final Runnable onCommitted) {
+        final int generation = ++mGeneration;
+        final List<Article> list = newList != null ? newList : Collections.<Article>emptyList();
+        mLatestList = list;
+        if (list == mList) {
+            runCommitted(onCommitted);
+            return;
+        }
+
+        final List<Article> oldList = mList;
+        // There is nothing to compare if either list is empty
+        if (list.isEmpty()) {
+            mList = list;
+            mUpdateCallback.onRemoved(0, oldList.size());
+            runCommitted(onCommitted);
+            return;
+        }
+        if (oldList.isEmpty()) {
+            mList = list;
+            mUpdateCallback.onInserted(0, list.size());
+            runCommitted(onCommitted);
+            return;
+        }
+
+        mBackground.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Moves are not detected: articles keep their relative order across loads
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ArticleDiffCallback(oldList, list), false);
+                mMainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            // Another list has been submitted in the meantime
+                            return;
+                        }
+                        mList = list;
+                        result.dispatchUpdatesTo(mUpdateCallback);
+                        runCommitted(onCommitted);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void runCommitted(Runnable onCommitted) {
+        if (onCommitted != null) {
+            onCommitted.run();
+        }
+    }
+}
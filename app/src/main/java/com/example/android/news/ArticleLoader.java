@@ -0,0 +1,63 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.support.v4.content.AsyncTaskLoader;
+
+import java.util.List;
+
+/**
+ * Base class of the loaders of lists of {@link Article} objects.
+ * <p>
+ * Only the text of the articles is loaded, along with their rows, see {@link ArticleRows}:
+ * each {@link Article} carries the URL of its thumbnail, which is bound to the list lazily,
+ * see {@link ThumbnailBinder}.
+ */
+public abstract class ArticleLoader extends AsyncTaskLoader<List<Article>> {
+
+    private LoadTimings mTimings;
+    // Timings of the last delivered result
+    private LoadTimings mDeliveredTimings;
+
+    public ArticleLoader(Context context) {
+        super(context);
+    }
+
+    /**
+     * Load the articles, in the background thread.
+     */
+    protected abstract List<Article> loadArticles();
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        mTimings = new LoadTimings();
+    }
+
+    @Override
+    public final List<Article> loadInBackground() {
+        // Open the thumbnail cache now, rather than in the main thread when the list is bound
+        QueryUtils.getThumbnailCache(getContext());
+        List<Article> articles = loadArticles();
+        // Format the rows now, rather than in the main thread when they are bound
+        QueryUtils.getArticleRows(getContext()).prepare(articles);
+        return articles;
+    }
+
+    @Override
+    public void deliverResult(List<Article> data) {
+        if (isReset()) {
+            return;
+        }
+        mDeliveredTimings = mTimings != null ? mTimings : new LoadTimings();
+        mTimings = null;
+        super.deliverResult(data);
+    }
+
+    /**
+     * Return the timings of the last delivered result, to be completed by its receiver
+     * once the result is on screen.
+     */
+    public LoadTimings getDeliveredTimings() {
+        return mDeliveredTimings;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.android.news;
+
+/**
+ * Everything a row of the list shows for an {@link Article}, formatted and resolved in the
+ * background, so that binding the row on the main thread only assigns fields to its views.
+ * See {@link ArticleRows}.
+ * <p>
+ * A row does not refer to its article, so that it does not keep it reachable, see
+ * {@link ArticleRows}. This class is immutable, and does not depend on the Android framework.
+ */
+public final class ArticleRow {
+
+    // Color of the sections which have none
+    public static final int NO_COLOR = 0;
+    // Longest author line, beyond which it is cut: a row only has room for a few words
+    static final int MAX_AUTHOR_LENGTH = 60;
+    private static final char ELLIPSIS = '\u2026';
+
+    private final String mTitle;
+    private final String mAuthorLine;
+    private final String mDate;
+    private final String mSection;
+    private final int mSectionColor;
+
+    /*
+     * Constructor. The color of the section is an ARGB color, or NO_COLOR.
+     */
+    public ArticleRow(Article article, int sectionColor) {
+        mTitle = nonNull(article.getTitle());
+        mAuthorLine = truncate(nonNull(article.getAuthor()), MAX_AUTHOR_LENGTH);
+        mDate = nonNull(article.getDate());
+        mSection = nonNull(article.getSection());
+        mSectionColor = sectionColor;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    // Author of the article, cut to MAX_AUTHOR_LENGTH characters
+    public String getAuthorLine() {
+        return mAuthorLine;
+    }
+
+    // Human readable date of publication, in the format of the locale in use when it was made
+    public String getDate() {
+        return mDate;
+    }
+
+    public String getSection() {
+        return mSection;
+    }
+
+    public int getSectionColor() {
+        return mSectionColor;
+    }
+
+    private static String nonNull(String string) {
+        return string != null ? string : "";
+    }
+
+    private static String truncate(String string, int maxLength) {
+        if (string.length() <= maxLength) {
+            return string;
+        }
+        int end = maxLength - 1;
+        // Do not split a surrogate pair
+        if (Character.isHighSurrogate(string.charAt(end - 1))) {
+            end--;
+        }
+        return string.substring(0, end).trim() + ELLIPSIS;
+    }
+}
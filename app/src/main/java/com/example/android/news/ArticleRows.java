@@ -0,0 +1,104 @@
+package com.example.android.news;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Makes and keeps the {@link ArticleRow} of every article on its way to the list.
+ * <p>
+ * The rows of the articles of a load are made by {@link #prepare(List)} in the background,
+ * right after the load, so that {@link #get(Article)} finds them when the list is bound. An
+ * article whose row has not been prepared, such as a search result which did not come from a
+ * load, gets its row made on the spot.
+ * <p>
+ * Rows are kept as long as their article is reachable, which they do not refer to. Since the date of a row is formatted
+ * for the locale in use, the rows must be made again, see {@link #clear()}, when it changes.
+ * This class is thread safe, and does not depend on the Android framework.
+ */
+public class ArticleRows {
+
+    // Keyed by identity: Article does not override equals()
+    private final WeakHashMap<Article, ArticleRow> mRows = new WeakHashMap<>();
+    private final Map<String, Integer> mSectionColors;
+
+    private int mHitCount;
+    private int mMissCount;
+
+    /*
+     * Constructor. The colors are ARGB colors, by section name.
+     */
+    public ArticleRows(Map<String, Integer> sectionColors) {
+        mSectionColors = new HashMap<>(sectionColors);
+    }
+
+    /**
+     * Make the rows of the given articles which do not have one yet. Not to be called from
+     * the main thread.
+     */
+    public void prepare(List<Article> articles) {
+        if (articles == null) {
+            return;
+        }
+        for (Article article : articles) {
+            // Made outside of the lock, which the main thread may be waiting for
+            synchronized (this) {
+                if (mRows.containsKey(article)) {
+                    continue;
+                }
+            }
+            ArticleRow row = make(article);
+            synchronized (this) {
+                mRows.put(article, row);
+            }
+        }
+    }
+
+    /**
+     * Return the row of the given article, making it if it has not been prepared.
+     */
+    public ArticleRow get(Article article) {
+        synchronized (this) {
+            ArticleRow row = mRows.get(article);
+            if (row != null) {
+                mHitCount++;
+                return row;
+            }
+            mMissCount++;
+        }
+        ArticleRow row = make(article);
+        synchronized (this) {
+            mRows.put(article, row);
+        }
+        return row;
+    }
+
+    /**
+     * Forget all the rows, so that they are made again.
+     */
+    public synchronized void clear() {
+        mRows.clear();
+    }
+
+    // Number of rows kept, the ones of articles which are not reachable anymore left out
+    public synchronized int size() {
+        return mRows.size();
+    }
+
+    // Number of rows found prepared
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    // Number of rows made when they were asked for
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    private ArticleRow make(Article article) {
+        Integer color = article.getSection() != null
+                ? mSectionColors.get(article.getSection()) : null;
+        return new ArticleRow(article, color != null ? color : ArticleRow.NO_COLOR);
+    }
+}
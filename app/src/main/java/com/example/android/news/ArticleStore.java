@@ -0,0 +1,171 @@
+package com.example.android.news;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.example.android.news.ArticleContract.ArticleEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Persistent store of the last fetched articles, along with the URLs of their thumbnails
+ * (the thumbnails themselves live in the {@link ThumbnailCache}).
+ * <p>
+ * The store is meant to be read at startup, so that the news feed can be displayed
+ * immediately, and updated every time fresh articles are fetched from the network.
+ * Its methods perform disk I/O and must not be called from the main thread.
+ * <p>
+ * The articles are kept in a database, and also in a snapshot file written by
+ * {@link ArticleCodec}, which is read at once instead of querying the database. The snapshot
+ * is a cache, written again from the database whenever it is missing or unreadable.
+ */
+public class ArticleStore implements FeedSync.Store {
+
+    // Maximum number of articles kept in the store
+    public static final int MAX_ARTICLES = 100;
+
+    private static final String[] PROJECTION = {
+            ArticleEntry.COLUMN_ARTICLE_ID,
+            ArticleEntry.COLUMN_TITLE,
+            ArticleEntry.COLUMN_AUTHOR,
+            ArticleEntry.COLUMN_PUBLICATION_TIME,
+            ArticleEntry.COLUMN_SECTION,
+            ArticleEntry.COLUMN_LINK,
+            ArticleEntry.COLUMN_THUMBNAIL_URL
+    };
+
+    private static final String LOG_TAG = ArticleStore.class.getSimpleName();
+
+    private static ArticleStore sInstance;
+
+    private final ArticleDbHelper mDbHelper;
+    private final File mSnapshot;
+
+    private ArticleStore(Context context) {
+        mDbHelper = new ArticleDbHelper(context.getApplicationContext());
+        mSnapshot = new File(context.getApplicationContext().getCacheDir(), "articles.snapshot");
+    }
+
+    /**
+     * Return the store shared by the whole application.
+     */
+    public static synchronized ArticleStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleStore(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Return the stored articles, in news feed order. The list is empty if nothing
+     * has been stored yet.
+     */
+    @Override
+    public synchronized List<Article> loadArticles() {
+        if (mSnapshot.exists()) {
+            try {
+                return ArticleCodec.read(mSnapshot);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Problem reading the snapshot of the articles. ", e);
+            }
+        }
+        List<Article> articles = queryArticles();
+        writeSnapshot(articles);
+        return articles;
+    }
+
+    private List<Article> queryArticles() {
+        ArrayList<Article> articles = new ArrayList<>();
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        Cursor cursor = db.query(ArticleEntry.TABLE_NAME, PROJECTION, null, null, null, null,
+                ArticleEntry.COLUMN_POSITION + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                long publicationTime = cursor.isNull(3) ? PublicationDate.UNKNOWN
+                        : cursor.getLong(3);
+                articles.add(new Article(cursor.getString(0), cursor.getString(1),
+                        cursor.getString(2), publicationTime, cursor.getString(4),
+                        cursor.getString(5), cursor.getString(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+
+    /**
+     * Merge the given articles, fresh from the network, with the stored ones by date, keeping
+     * at most MAX_ARTICLES of them, and replace the content of the store with the result,
+     * which is returned. Both the app and the background sync update the store: the lock
+     * keeps either of them from saving over the articles that the other has just saved.
+     */
+    @Override
+    public synchronized List<Article> mergeAndSave(List<Article> articles) {
+        List<Article> merged = SectionFanOut.mergeByDate(
+                Arrays.asList(articles, loadArticles()), MAX_ARTICLES);
+        saveArticles(merged);
+        return merged;
+    }
+
+    /*
+     * Replace the content of the store with the given articles.
+     */
+    private void saveArticles(List<Article> articles) {
+        // Should the database be updated but not the snapshot, the snapshot must not be read
+        mSnapshot.delete();
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(ArticleEntry.TABLE_NAME, null, null);
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < articles.size(); i++) {
+                Article article = articles.get(i);
+                values.clear();
+                values.put(ArticleEntry.COLUMN_POSITION, i);
+                values.put(ArticleEntry.COLUMN_ARTICLE_ID, article.getId());
+                values.put(ArticleEntry.COLUMN_TITLE, article.getTitle());
+                values.put(ArticleEntry.COLUMN_AUTHOR, article.getAuthor());
+                if (article.getPublicationTime() != PublicationDate.UNKNOWN) {
+                    values.put(ArticleEntry.COLUMN_PUBLICATION_TIME, article.getPublicationTime());
+                }
+                values.put(ArticleEntry.COLUMN_SECTION, article.getSection());
+                values.put(ArticleEntry.COLUMN_LINK, article.getLink());
+                values.put(ArticleEntry.COLUMN_THUMBNAIL_URL, article.getThumbnailUrl());
+                db.insertWithOnConflict(ArticleEntry.TABLE_NAME, null, values,
+                        SQLiteDatabase.CONFLICT_IGNORE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        writeSnapshot(articles);
+    }
+
+    private void writeSnapshot(List<Article> articles) {
+        try {
+            ArticleCodec.write(articles, mSnapshot);
+        } catch (IOException e) {
+            // The database is read until the snapshot can be written
+            Log.w(LOG_TAG, "Problem writing the snapshot of the articles. ", e);
+        }
+    }
+
+    /**
+     * Return the most recent publication time among the given articles, or
+     * {@link PublicationDate#UNKNOWN} if none of them has one.
+     */
+    public static long newestPublicationTime(List<Article> articles) {
+        long newest = PublicationDate.UNKNOWN;
+        for (Article article : articles) {
+            newest = Math.max(newest, article.getPublicationTime());
+        }
+        return newest;
+    }
+}
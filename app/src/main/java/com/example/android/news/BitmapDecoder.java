@@ -0,0 +1,119 @@
+package com.example.android.news;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes thumbnails at the size they are displayed at, rather than at the size they are
+ * served at.
+ * <p>
+ * The bounds of the image are read first, without allocating any pixel, to pick the largest
+ * power-of-two subsampling that keeps the image at least as large as the target size.
+ * Opaque images can be decoded to RGB_565, which takes half the memory of ARGB_8888.
+ * When a {@link BitmapPool} is given, the decoded pixels are written into a bitmap taken
+ * from the pool whenever possible, instead of a newly allocated one.
+ */
+public class BitmapDecoder implements ThumbnailDownloader.Decoder<Bitmap> {
+
+    private final int mTargetWidth;
+    private final int mTargetHeight;
+    private final Bitmap.Config mConfig;
+    private final BitmapPool mPool;
+
+    /*
+     * Constructor. The target size is in pixels; pool may be null.
+     */
+    public BitmapDecoder(int targetWidth, int targetHeight, boolean opaque, BitmapPool pool) {
+        mTargetWidth = targetWidth;
+        mTargetHeight = targetHeight;
+        mConfig = opaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        mPool = pool;
+    }
+
+    @Override
+    public Bitmap decode(InputStream inputStream) throws IOException {
+        // The stream is read twice: once for the bounds, once for the pixels
+        byte[] encoded = readFully(inputStream);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(new ByteArrayInputStream(encoded), null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            // Not an image
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight,
+                mTargetWidth, mTargetHeight);
+        options.inPreferredConfig = mConfig;
+        // Only mutable bitmaps can be reused later on
+        options.inMutable = true;
+        if (mPool != null) {
+            options.inBitmap = reusableBitmap(options);
+        }
+
+        try {
+            return BitmapFactory.decodeStream(new ByteArrayInputStream(encoded), null, options);
+        } catch (IllegalArgumentException e) {
+            // The bitmap taken from the pool did not fit after all: allocate a new one
+            options.inBitmap = null;
+            return BitmapFactory.decodeStream(new ByteArrayInputStream(encoded), null, options);
+        }
+    }
+
+    /**
+     * Return the largest power of two by which an image of the given size can be subsampled
+     * while keeping both its dimensions at least as large as the target ones.
+     */
+    public static int calculateInSampleSize(int width, int height,
+                                            int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= targetWidth
+                && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /*
+     * Take from the pool a bitmap which the image described by the given options can be
+     * decoded into, or return null if there is none.
+     */
+    private Bitmap reusableBitmap(BitmapFactory.Options options) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // Any bitmap with a large enough allocation can be reused
+            int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+            int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+            return mPool.get(width * height * bytesPerPixel(mConfig));
+        } else if (options.inSampleSize == 1) {
+            // Before KitKat, only bitmaps of the very same size and configuration can be
+            // reused, and only for images that are not subsampled
+            return mPool.get(options.outWidth, options.outHeight, mConfig);
+        }
+        return null;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.android.news;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Bounded pool of bitmaps whose memory can be reused to decode other images,
+ * see {@link BitmapDecoder}.
+ * <p>
+ * The pool is fed with the thumbnails evicted from the memory tier of the
+ * {@link ThumbnailCache}. Since thumbnails are only referenced by the rows on screen
+ * (see {@link ThumbnailBinder}), and the memory tier is much larger than that, the least
+ * recently used thumbnail is no longer on screen by the time it is evicted.
+ * <p>
+ * All methods are thread safe.
+ */
+public class BitmapPool {
+
+    private final long mMaxBytes;
+    // Least recently added first
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private long mSize;
+
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Offer the given bitmap for reuse. The caller must not use it anymore.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        int size = sizeOf(bitmap);
+        if (size > mMaxBytes) {
+            return;
+        }
+        mBitmaps.addLast(bitmap);
+        mSize += size;
+        while (mSize > mMaxBytes) {
+            mSize -= sizeOf(mBitmaps.removeFirst());
+        }
+    }
+
+    /**
+     * Remove from the pool and return a bitmap holding at least the given number of bytes,
+     * or return null if there is none.
+     */
+    public synchronized Bitmap get(int bytes) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (sizeOf(bitmap) >= bytes) {
+                iterator.remove();
+                mSize -= sizeOf(bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remove from the pool and return a bitmap of the given size and configuration,
+     * or return null if there is none.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap bitmap = iterator.next();
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmap.getConfig() == config) {
+                iterator.remove();
+                mSize -= sizeOf(bitmap);
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    /**
+     * Return the number of bytes actually held by the given bitmap, which may be more than
+     * the ones its pixels use if it has been reused for a smaller image.
+     */
+    public static int sizeOf(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.android.news;
+
+/**
+ * CircuitBreaker stops the requests to a host which keeps failing, instead of letting each of
+ * them wait for its own timeout: after a number of consecutive failures the circuit "opens",
+ * and requests are refused right away for a while. Then a single trial request is let through
+ * ("half open"): the circuit closes again if it succeeds, and opens again if it fails.
+ * <p>
+ * Times are in milliseconds, from any clock which does not go backwards, and are passed to
+ * every method so that the breaker can be driven by a simulated clock.
+ * This class is thread safe, and does not depend on the Android framework.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int mFailureThreshold;
+    private final long mOpenDuration;
+    private State mState = State.CLOSED;
+    private int mFailures;
+    // While not closed, when the next trial request may be let through
+    private long mOpenUntil;
+
+    /*
+     * Constructor. The duration is in milliseconds.
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        if (failureThreshold < 1 || openDuration < 0) {
+            throw new IllegalArgumentException("Invalid threshold or duration");
+        }
+        mFailureThreshold = failureThreshold;
+        mOpenDuration = openDuration;
+    }
+
+    /**
+     * Return true if a request may be made at the given time. While the circuit is half open,
+     * only one trial request is let through every open duration, in case the outcome of
+     * the previous one is never reported.
+     */
+    public synchronized boolean allowRequest(long now) {
+        if (mState == State.CLOSED) {
+            return true;
+        }
+        if (now < mOpenUntil) {
+            return false;
+        }
+        mState = State.HALF_OPEN;
+        mOpenUntil = now + mOpenDuration;
+        return true;
+    }
+
+    /**
+     * Report a request which succeeded: the circuit closes.
+     */
+    public synchronized void onSuccess() {
+        mState = State.CLOSED;
+        mFailures = 0;
+    }
+
+    /**
+     * Report a request which failed at the given time.
+     */
+    public synchronized void onFailure(long now) {
+        mFailures++;
+        if (mState == State.HALF_OPEN || mFailures >= mFailureThreshold) {
+            mState = State.OPEN;
+            mOpenUntil = now + mOpenDuration;
+        }
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mState + ", " + mFailures + " consecutive failures";
+    }
+}
@@ -1,83 +1,236 @@
 package com.example.android.news;
 
 import android.content.Context;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import android.support.v4.content.ContextCompat;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-import static com.example.android.news.MainActivity.SECTION_NAME1;
-import static com.example.android.news.MainActivity.SECTION_NAME2;
-import static com.example.android.news.MainActivity.SECTION_NAME3;
-import static com.example.android.news.MainActivity.SECTION_NAME4;
 
+public class CustomAdapter extends RecyclerView.Adapter<CustomAdapter.ArticleViewHolder> {
 
-public class CustomAdapter extends ArrayAdapter<Article> {
+    /**
+     * Notified when an article of the list is clicked.
+     */
+    public interface OnArticleClickListener {
+        void onArticleClick(Article article);
+    }
+
+    // Runs the results of the thumbnail requests, and of the list differences, in the main thread
+    private static final Executor MAIN_THREAD = new Executor() {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable runnable) {
+            mHandler.post(runnable);
+        }
+    };
+    // Computes the differences between the lists, one at a time
+    private static final Executor DIFF_THREAD = Executors.newSingleThreadExecutor();
+
+
+    private final Context mContext;
+    private final OnArticleClickListener mClickListener;
+    private final ArticleListDiffer mDiffer;
+    private final ArticleRows mRows;
+    private ThumbnailBinder<Bitmap> mThumbnailBinder;
+    private ThumbnailDownloader<Bitmap> mThumbnailDownloader;
+    // Number of rows bound so far
+    private int mBindCount;
 
-    public CustomAdapter(@NonNull Context context, @NonNull List<Article> objects) {
+    public CustomAdapter(Context context, OnArticleClickListener clickListener) {
+        mContext = context;
+        mClickListener = clickListener;
+        mRows = QueryUtils.getArticleRows(context);
         /*
-         * Superclass constructor is invoked with LayoutResId=0 because we are going to
-         * inflate a customized list item layout from file
+         * Only the rows of the articles that were inserted or that changed are bound again
+         * when a new list is submitted
          */
-        super(context, 0, objects);
+        mDiffer = new ArticleListDiffer(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        }, DIFF_THREAD, MAIN_THREAD);
+        // Rows keep their article across updates, so that they are not bound again needlessly
+        setHasStableIds(true);
     }
 
-    @NonNull
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-
-        // If a view is already being used, recycle it.
-        // Else, inflate it from a layout file.
-        View rootView = convertView;
-        if (convertView == null) {
-            rootView = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent,
-                    false);
-        }
+    public ArticleViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View rootView = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item,
+                parent, false);
+        return new ArticleViewHolder(rootView);
+    }
 
+    @Override
+    public void onBindViewHolder(ArticleViewHolder holder, int position) {
+        Metrics metrics = QueryUtils.getMetrics();
+        long start = metrics.start();
+        mBindCount++;
         /*
-         * Fill the list item at the current adapter position
+         * Fill the list item at the current adapter position, from its row formatted
+         * in the background
          */
         Article item = getItem(position);
+        ArticleRow row = mRows.get(item);
+        holder.mArticle = item;
 
-        ImageView thumbnail = (ImageView) rootView.findViewById(R.id.thumbnail);
-        TextView title = (TextView) rootView.findViewById(R.id.title);
-        TextView author = (TextView) rootView.findViewById(R.id.author);
-        TextView section = (TextView) rootView.findViewById(R.id.section);
-        TextView date = (TextView) rootView.findViewById(R.id.date);
+        // Request the thumbnail of this article, cancelling the one of the article that was
+        // shown by the row before it was recycled
+        getThumbnailBinder().bind(holder, item.getThumbnailUrl());
 
-        if (item.hasThumbnail()) {
-            thumbnail.setImageBitmap(item.getThumbnail());
-        } else {
-            // If there is no thumbnail available, set a default one
-            thumbnail.setImageResource(R.drawable.guardian_logo);
+        holder.mTitle.setText(row.getTitle());
+        holder.mAuthor.setText(row.getAuthorLine());
+        holder.mSection.setText(row.getSection());
+        holder.mDate.setText(row.getDate());
+        if (row.getSectionColor() != ArticleRow.NO_COLOR) {
+            holder.mSection.setBackgroundColor(row.getSectionColor());
+        }
+        metrics.stop(Metrics.Stage.BIND, start);
+    }
+
+    @Override
+    public void onViewRecycled(ArticleViewHolder holder) {
+        // The row is off screen: its thumbnail is not needed anymore
+        if (mThumbnailBinder != null) {
+            mThumbnailBinder.cancel(holder);
+        }
+        holder.mArticle = null;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mDiffer.getList().size();
+    }
+
+    /**
+     * Return a stable id for the article at the given position, derived from its URL and
+     * computed once per article, so that its row is kept across updates of the list.
+     */
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getStableId();
+    }
+
+    public Article getItem(int position) {
+        return mDiffer.getList().get(position);
+    }
+
+    /**
+     * Return the articles of the list, including the ones just submitted and not on screen yet.
+     */
+    public List<Article> getArticles() {
+        return mDiffer.getLatestList();
+    }
+
+    /**
+     * Replace the articles of the list. The differences with the articles on screen are
+     * computed in the background, then only the rows that changed are updated, after which
+     * the given callback, if any, is run.
+     */
+    public void submitArticles(List<Article> articles, Runnable onCommitted) {
+        mDiffer.submitList(articles, onCommitted);
+    }
+
+    /**
+     * Return the number of rows bound so far, to measure the cost of the updates of the list.
+     */
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    /**
+     * Return the binder of the thumbnails of the rows, creating it if needed. It must not be
+     * created before the list is bound, since opening the thumbnail cache reads the disk:
+     * by then, the loader has done it in the background.
+     */
+    public ThumbnailBinder<Bitmap> getThumbnailBinder() {
+        if (mThumbnailBinder == null) {
+            ThumbnailCache<Bitmap> cache = QueryUtils.getThumbnailCache(mContext);
+            mThumbnailDownloader = QueryUtils.newThumbnailDownloader(mContext);
+            mThumbnailBinder = new ThumbnailBinder<>(mThumbnailDownloader, cache, MAIN_THREAD);
         }
+        return mThumbnailBinder;
+    }
 
-        title.setText(item.getTitle());
-        author.setText(item.getAuthor());
-        section.setText(item.getSection());
-        date.setText(item.getDate());
-
-        if (item.getSection().equals(SECTION_NAME1)) {
-            section.setBackgroundColor(ContextCompat.getColor(rootView.getContext(),
-                    R.color.colorSectionTechnology));
-        } else if (item.getSection().equals(SECTION_NAME2)) {
-            section.setBackgroundColor(ContextCompat.getColor(rootView.getContext(),
-                    R.color.colorSectionScience));
-        } else if (item.getSection().equals(SECTION_NAME3)) {
-            section.setBackgroundColor(ContextCompat.getColor(rootView.getContext(),
-                    R.color.colorSectionEducation));
-        } else if (item.getSection().equals(SECTION_NAME4)) {
-            section.setBackgroundColor(ContextCompat.getColor(rootView.getContext(),
-                    R.color.colorSectionEnvironment));
+    /**
+     * Cancel the pending thumbnail requests, when the list is not needed anymore.
+     */
+    public void release() {
+        if (mThumbnailBinder != null) {
+            mThumbnailBinder.cancelAll();
+            mThumbnailDownloader.cancel();
+            mThumbnailBinder = null;
+            mThumbnailDownloader = null;
         }
+    }
+
+    /*
+     * Holds the views of a row, and shows the thumbnail bound to it in its thumbnail view.
+     */
+    class ArticleViewHolder extends RecyclerView.ViewHolder
+            implements ThumbnailBinder.Target<Bitmap>, View.OnClickListener {
+
+        final TextView mTitle;
+        final TextView mAuthor;
+        final TextView mSection;
+        final TextView mDate;
+        final ImageView mThumbnailView;
+        // Article shown by the row
+        Article mArticle;
 
-        return rootView;
+        ArticleViewHolder(View itemView) {
+            super(itemView);
+            mTitle = (TextView) itemView.findViewById(R.id.title);
+            mAuthor = (TextView) itemView.findViewById(R.id.author);
+            mSection = (TextView) itemView.findViewById(R.id.section);
+            mDate = (TextView) itemView.findViewById(R.id.date);
+            mThumbnailView = (ImageView) itemView.findViewById(R.id.thumbnail);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void showImage(Bitmap image) {
+            mThumbnailView.setImageBitmap(image);
+        }
+
+        @Override
+        public void showPlaceholder() {
+            // If there is no thumbnail available, set a default one
+            mThumbnailView.setImageResource(R.drawable.guardian_logo);
+        }
+
+        @Override
+        public void onClick(View view) {
+            if (mArticle != null && mClickListener != null) {
+                mClickListener.onArticleClick(mArticle);
+            }
+        }
     }
 }
@@ -0,0 +1,56 @@
+package com.example.android.news;
+
+/**
+ * The time by which a whole operation, made of any number of requests, must be over.
+ * A deadline is passed down to every request of the operation, which gives up when it
+ * expires, so that retrying a failed request or waiting on a stalled one can never make
+ * the operation last longer than planned.
+ * <p>
+ * This class does not depend on the Android framework.
+ */
+public final class Deadline {
+
+    /**
+     * A deadline which never expires.
+     */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    // In System.nanoTime() time, or Long.MAX_VALUE for no deadline
+    private final long mExpiryNanos;
+
+    private Deadline(long expiryNanos) {
+        mExpiryNanos = expiryNanos;
+    }
+
+    /**
+     * Return a deadline expiring the given number of milliseconds from now.
+     */
+    public static Deadline after(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Negative delay: " + millis);
+        }
+        return new Deadline(System.nanoTime() + millis * 1000000);
+    }
+
+    /**
+     * Return the time left before this deadline expires, in milliseconds:
+     * 0 if it has expired, Long.MAX_VALUE if it never does.
+     */
+    public long getRemaining() {
+        if (this == NONE) {
+            return Long.MAX_VALUE;
+        }
+        long remaining = mExpiryNanos - System.nanoTime();
+        // Round up, so that a deadline about to expire is not reported as expired
+        return remaining <= 0 ? 0 : (remaining + 999999) / 1000000;
+    }
+
+    public boolean isExpired() {
+        return getRemaining() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return this == NONE ? "no deadline" : getRemaining() + " ms left";
+    }
+}
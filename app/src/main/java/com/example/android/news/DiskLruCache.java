@@ -0,0 +1,280 @@
+package com.example.android.news;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-disk least-recently-used cache of byte arrays, bounded by the total number of bytes
+ * stored in its directory.
+ * <p>
+ * Every value is stored in its own file, named after a hash of its key. The order in which
+ * the entries have been used is recorded in an append-only journal, so that it survives
+ * the process: each line of the journal is either "PUT hash size", "READ hash" or
+ * "REMOVE hash". The journal is rewritten from scratch when it grows too long.
+ * <p>
+ * All methods are thread safe.
+ */
+public class DiskLruCache {
+
+    private static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_FILE_TMP = "journal.tmp";
+    private static final String PUT = "PUT";
+    private static final String READ = "READ";
+    private static final String REMOVE = "REMOVE";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    // Access-ordered map from hashed key to size in bytes
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mSize;
+    private Writer mJournalWriter;
+    private int mJournalLines;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * Open the cache stored in the given directory, creating it if needed.
+     */
+    public DiskLruCache(File directory, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create cache directory " + directory);
+        }
+        readJournal();
+        rebuildJournal();
+        trimToSize();
+    }
+
+    /**
+     * Return the bytes stored for the given key, or null if there are none.
+     */
+    public synchronized byte[] get(String key) throws IOException {
+        String hash = hash(key);
+        if (mEntries.get(hash) == null) {
+            mMissCount++;
+            return null;
+        }
+        File file = new File(mDirectory, hash);
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            int offset = 0;
+            while (offset < data.length) {
+                int read = input.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("Truncated cache entry " + hash);
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            // The file has been deleted or damaged behind our back: forget about it
+            removeEntry(hash);
+            mMissCount++;
+            return null;
+        } finally {
+            if (input != null) {
+                input.close();
+            }
+        }
+        mHitCount++;
+        appendToJournal(READ + " " + hash);
+        return data;
+    }
+
+    /**
+     * Store the given bytes for the given key, evicting the least recently used entries
+     * if the cache grows beyond its maximum size.
+     */
+    public synchronized void put(String key, byte[] data) throws IOException {
+        if (data.length > mMaxBytes) {
+            return;
+        }
+        String hash = hash(key);
+        File tmp = new File(mDirectory, hash + ".tmp");
+        FileOutputStream output = new FileOutputStream(tmp);
+        try {
+            output.write(data);
+        } finally {
+            output.close();
+        }
+        File file = new File(mDirectory, hash);
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot write cache entry " + hash);
+        }
+
+        Long previous = mEntries.put(hash, (long) data.length);
+        if (previous != null) {
+            mSize -= previous;
+        }
+        mSize += data.length;
+        appendToJournal(PUT + " " + hash + " " + data.length);
+        trimToSize();
+    }
+
+    public synchronized void remove(String key) throws IOException {
+        removeEntry(hash(key));
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized void close() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+            mJournalWriter = null;
+        }
+    }
+
+    private void removeEntry(String hash) throws IOException {
+        Long size = mEntries.remove(hash);
+        if (size != null) {
+            mSize -= size;
+            new File(mDirectory, hash).delete();
+            appendToJournal(REMOVE + " " + hash);
+        }
+    }
+
+    private void trimToSize() throws IOException {
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            mSize -= eldest.getValue();
+            new File(mDirectory, eldest.getKey()).delete();
+            appendToJournal(REMOVE + " " + eldest.getKey());
+            mEvictionCount++;
+        }
+    }
+
+    /*
+     * Replay the journal left by a previous instance, if any, to recover the entries
+     * and the order in which they have been used.
+     */
+    private void readJournal() throws IOException {
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        if (!journal.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(journal), UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 3 && parts[0].equals(PUT)) {
+                    mEntries.put(parts[1], Long.parseLong(parts[2]));
+                } else if (parts.length == 2 && parts[0].equals(READ)) {
+                    mEntries.get(parts[1]);
+                } else if (parts.length == 2 && parts[0].equals(REMOVE)) {
+                    mEntries.remove(parts[1]);
+                }
+                // Anything else is a line truncated by a crash: ignore it
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupted cache journal", e);
+        } finally {
+            reader.close();
+        }
+
+        // Drop the entries whose file has gone missing
+        Iterator<Map.Entry<String, Long>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (new File(mDirectory, entry.getKey()).length() != entry.getValue()) {
+                iterator.remove();
+            } else {
+                mSize += entry.getValue();
+            }
+        }
+    }
+
+    /*
+     * Write a compact journal holding one line per live entry, in least recently used order.
+     */
+    private void rebuildJournal() throws IOException {
+        if (mJournalWriter != null) {
+            mJournalWriter.close();
+        }
+        File tmp = new File(mDirectory, JOURNAL_FILE_TMP);
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tmp), UTF_8));
+        try {
+            for (Map.Entry<String, Long> entry : mEntries.entrySet()) {
+                writer.write(PUT + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        File journal = new File(mDirectory, JOURNAL_FILE);
+        if (!tmp.renameTo(journal)) {
+            throw new IOException("Cannot write cache journal");
+        }
+        mJournalLines = mEntries.size();
+        mJournalWriter = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(journal, true), UTF_8));
+    }
+
+    private void appendToJournal(String line) throws IOException {
+        if (mJournalLines > 2 * mEntries.size() + 1000) {
+            // The rebuilt journal already reflects the operation being recorded
+            rebuildJournal();
+            return;
+        }
+        mJournalWriter.write(line + "\n");
+        mJournalWriter.flush();
+        mJournalLines++;
+    }
+
+    /*
+     * Turn an arbitrary key (e.g. a URL) into a valid file name.
+     */
+    private static String hash(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(key.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
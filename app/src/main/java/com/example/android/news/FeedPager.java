@@ -0,0 +1,161 @@
+package com.example.android.news;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FeedPager decides, as the user scrolls through the news feed, when the next page of
+ * results has to be requested, and which one.
+ * <ul>
+ * <li>The pages follow the articles of the feed from the time down to which it holds every
+ * article, see {@link #completeUntil(List)}: they are the pages of the query of the whole
+ * feed, restricted to the articles published up to that time. Pages requested from a time,
+ * rather than from a number of articles, stay in line when the feed is made of the first
+ * pages of several sections, and when new articles are published meanwhile.</li>
+ * <li>The next page is requested as soon as the last visible position is within the
+ * prefetch distance from the end of the feed, so that it is usually there before the user
+ * reaches the end.</li>
+ * <li>Only one page is requested at a time: scroll events arriving while a page is in flight
+ * do not request it again.</li>
+ * <li>Once a page comes back shorter than the page size, or fails, the end of the feed is
+ * considered reached and no more pages are requested until the pager is reset.</li>
+ * </ul>
+ * The pages overlap the articles already in the feed: they are to be merged into it by date,
+ * leaving out the duplicates. FeedPager is not thread safe: it is meant to be used from the
+ * main thread only.
+ */
+public class FeedPager {
+
+    /**
+     * Receives the requests of the pager.
+     */
+    public interface Callbacks {
+        // Request the given page of results
+        void onLoadPage(GuardianQuery page);
+    }
+
+    private final GuardianQuery mQuery;
+    private final int mPageSize;
+    private final int mPrefetchDistance;
+    private final Callbacks mCallbacks;
+
+    // Time down to which the feed holds every article, the pages being the ones of the
+    // articles published up to then
+    private long mUntil = PublicationDate.UNKNOWN;
+    private int mNextPage = 1;
+    private boolean mLoading = false;
+    private boolean mEndReached = false;
+
+    /**
+     * @param query            query of the whole feed, newest first
+     * @param pageSize         number of results per page
+     * @param prefetchDistance number of positions before the end of the feed at which
+     *                         the next page is requested
+     */
+    public FeedPager(GuardianQuery query, int pageSize, int prefetchDistance,
+                     Callbacks callbacks) {
+        if (pageSize <= 0 || prefetchDistance < 0) {
+            throw new IllegalArgumentException("Invalid paging parameters");
+        }
+        mQuery = query.withPageSize(pageSize);
+        mPageSize = pageSize;
+        mPrefetchDistance = prefetchDistance;
+        mCallbacks = callbacks;
+    }
+
+    /**
+     * Start over with a feed which holds every article published after the given time, as
+     * delivered by a full load, see {@link #completeUntil(List)}: the next page requested
+     * is the first one of the articles published up to that time, or of the whole feed if
+     * the time is unknown. A page still in flight must be cancelled by the caller.
+     */
+    public void reset(long until) {
+        mUntil = until;
+        mNextPage = 1;
+        mLoading = false;
+        mEndReached = false;
+    }
+
+    /**
+     * Called every time the visible positions of the feed change, or the feed grows.
+     */
+    public void onScroll(int firstVisible, int visibleCount, int itemCount) {
+        int lastVisible = firstVisible + visibleCount - 1;
+        if (!mLoading && !mEndReached && itemCount > 0
+                && lastVisible >= itemCount - 1 - mPrefetchDistance) {
+            mLoading = true;
+            mCallbacks.onLoadPage(mQuery.until(mUntil).withPage(mNextPage));
+        }
+    }
+
+    /**
+     * Called when the page in flight has been loaded, with the number of results it held
+     * (some of them may have been dropped as duplicates of articles already in the feed).
+     */
+    public void onPageLoaded(int resultCount) {
+        if (!mLoading) {
+            return;
+        }
+        mLoading = false;
+        mNextPage++;
+        if (resultCount < mPageSize) {
+            mEndReached = true;
+        }
+    }
+
+    /**
+     * Called when the page in flight could not be loaded. Since the feed API answers with
+     * an error past its last page, no more pages are requested until the pager is reset.
+     */
+    public void onPageFailed() {
+        if (!mLoading) {
+            return;
+        }
+        mLoading = false;
+        mEndReached = true;
+    }
+
+    public boolean isLoading() {
+        return mLoading;
+    }
+
+    public boolean isEndReached() {
+        return mEndReached;
+    }
+
+    // Time from which the pages are requested, PublicationDate.UNKNOWN for the whole feed
+    public long getUntil() {
+        return mUntil;
+    }
+
+    public int getNextPage() {
+        return mNextPage;
+    }
+
+    /**
+     * Return the time down to which the given articles of the feed, made of the first
+     * articles of each of its sections, and of pages of the whole feed, hold every article:
+     * the newest of the oldest publication times of each section, as any section may have
+     * more articles from there on. Return PublicationDate.UNKNOWN if no article has a
+     * publication time.
+     */
+    public static long completeUntil(List<Article> feed) {
+        Map<String, Long> oldest = new HashMap<>();
+        for (Article article : feed) {
+            long time = article.getPublicationTime();
+            if (time == PublicationDate.UNKNOWN) {
+                continue;
+            }
+            Long sectionOldest = oldest.get(article.getSection());
+            if (sectionOldest == null || time < sectionOldest) {
+                oldest.put(article.getSection(), time);
+            }
+        }
+        long until = PublicationDate.UNKNOWN;
+        for (long time : oldest.values()) {
+            until = Math.max(until, time);
+        }
+        return until;
+    }
+}
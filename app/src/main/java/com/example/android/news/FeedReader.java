@@ -0,0 +1,113 @@
+package com.example.android.news;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the body of a successful response of the "search" endpoint into a {@link FeedResult}:
+ * the body is decompressed if needed, counted, and parsed as it comes in by
+ * {@link GuardianResponseParser}.
+ * <p>
+ * This class does not depend on the Android framework, so that the whole path from the bytes
+ * of a response to the articles can be measured on a JVM (see the benchmark module).
+ */
+public final class FeedReader {
+
+    /**
+     * Notified when a response could not be parsed completely.
+     */
+    public interface ErrorListener {
+        void onParseError(IOException e);
+    }
+
+    private FeedReader() {
+    }
+
+    /**
+     * Read the given response body, sent with the given "Content-Encoding" (which may be
+     * null). The body is not closed, so that the connection can be reused.
+     * <p>
+     * A response which is malformed is reported to the listener, which may be null, and the
+     * articles parsed before the problem occurred are returned in a result which is not
+     * complete. A body which could not be read to the end, because of a connection reset, a
+     * read timeout, or because it ends in the middle of the document, causes an IOException,
+     * so that the request can be retried.
+     */
+    public static FeedResult read(InputStream body, String contentEncoding,
+                                  ErrorListener listener) throws IOException {
+        CountingInputStream counter = new CountingInputStream(body);
+        InputStream inputStream = counter;
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            inputStream = new GZIPInputStream(counter);
+        }
+        final List<Article> articles = new ArrayList<>();
+        try {
+            GuardianResponseParser.parse(inputStream,
+                    new GuardianResponseParser.ArticleHandler() {
+                        @Override
+                        public void onArticle(Article article) {
+                            articles.add(article);
+                        }
+                    });
+        } catch (MalformedJsonException e) {
+            // Keep the articles parsed before the problem occurred
+            if (listener != null) {
+                listener.onParseError(e);
+            }
+            return FeedResult.partial(articles, counter.getCount());
+        } finally {
+            // Release the inflater, if any. The body itself is left open.
+            inputStream.close();
+        }
+        return FeedResult.of(articles, counter.getCount());
+    }
+
+    /**
+     * Counts the bytes read through it. Closing it does not close the underlying stream.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        long getCount() {
+            return mCount;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.android.news;
+
+import java.util.List;
+
+/**
+ * Outcome of a request for the news feed.
+ * <p>
+ * Besides the articles, it tells whether the server answered "304 Not Modified", in which
+ * case no articles were parsed and the ones fetched previously are still current, and how
+ * many bytes of response body were transferred.
+ */
+public class FeedResult {
+
+    private final List<Article> mArticles;
+    private final boolean mNotModified;
+    private final long mBytesOnWire;
+    private final boolean mComplete;
+
+    private FeedResult(List<Article> articles, boolean notModified, long bytesOnWire,
+                       boolean complete) {
+        mArticles = articles;
+        mNotModified = notModified;
+        mBytesOnWire = bytesOnWire;
+        mComplete = complete;
+    }
+
+    /*
+     * A full response, whose body has been parsed into the given articles.
+     */
+    public static FeedResult of(List<Article> articles, long bytesOnWire) {
+        return new FeedResult(articles, false, bytesOnWire, true);
+    }
+
+    /*
+     * A response which could only be parsed up to the given articles.
+     */
+    public static FeedResult partial(List<Article> articles, long bytesOnWire) {
+        return new FeedResult(articles, false, bytesOnWire, false);
+    }
+
+    /*
+     * A "304 Not Modified" response: the articles fetched previously are still current.
+     */
+    public static FeedResult notModified() {
+        return new FeedResult(null, true, 0, true);
+    }
+
+    /*
+     * A failed request.
+     */
+    public static FeedResult failed() {
+        return new FeedResult(null, false, 0, false);
+    }
+
+    // Parsed articles, or null if the request failed or the response was not modified
+    public List<Article> getArticles() {
+        return mArticles;
+    }
+
+    public boolean isNotModified() {
+        return mNotModified;
+    }
+
+    // False if the response was malformed or cut short, or if the request failed
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    // Number of response body bytes received, before any decompression
+    public long getBytesOnWire() {
+        return mBytesOnWire;
+    }
+
+    @Override
+    public String toString() {
+        if (mNotModified) {
+            return "not modified, parse skipped";
+        }
+        return (mArticles == null ? "failed" : mArticles.size() + " articles")
+                + ", " + mBytesOnWire + " bytes on wire";
+    }
+}
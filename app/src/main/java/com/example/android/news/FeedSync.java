@@ -0,0 +1,152 @@
+package com.example.android.news;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FeedSync fetches the news feed in the background, while the app is not on screen, so that
+ * the feed is ready to be shown from local data the next time it is opened: the fresh
+ * articles are merged into the {@link Store}, and the thumbnails of the first of them are
+ * downloaded into the {@link ThumbnailCache} of the given {@link ThumbnailDownloader}.
+ * <p>
+ * The sections of the feed are all requested, concurrently, see {@link SectionFanOut}, and
+ * incrementally: only the articles published since the newest stored article of each section
+ * are fetched. The outcome of every sync is recorded in the given {@link SyncStats}.
+ * <p>
+ * This class does not depend on the Android framework: it is scheduled by
+ * {@link FeedSyncService}.
+ */
+public class FeedSync {
+
+    /**
+     * Persistent store of the articles of the feed, see {@link ArticleStore}.
+     */
+    public interface Store {
+        List<Article> loadArticles();
+
+        /**
+         * Merge the given articles into the stored ones, save the result and return it,
+         * as a single step with respect to the other callers.
+         */
+        List<Article> mergeAndSave(List<Article> articles);
+    }
+
+    // Time allowed to the feed requests of a sync, retries included
+    private static final long SYNC_DEADLINE = 60000; /* milliseconds */
+
+    private final SectionFanOut mFanOut;
+    private final Store mStore;
+    private final ThumbnailDownloader<?> mDownloader;
+    private final int mMaxThumbnails;
+    private final HttpValidators mValidators;
+    private final SyncStats mStats;
+
+    /*
+     * Constructor. Only the thumbnails of the first maxThumbnails articles of the feed are
+     * downloaded. The validators may be null.
+     */
+    public FeedSync(List<SectionFanOut.Section> sections, Store store,
+                    ThumbnailDownloader<?> downloader, int maxThumbnails,
+                    HttpValidators validators, SyncStats stats) {
+        mFanOut = new SectionFanOut(sections, ArticleStore.MAX_ARTICLES);
+        mStore = store;
+        mDownloader = downloader;
+        mMaxThumbnails = maxThumbnails;
+        mValidators = validators;
+        mStats = stats;
+    }
+
+    /**
+     * Sync the feed, blocking until done. Return false if none of its sections could be
+     * fetched, in which case the sync should be retried later.
+     */
+    public boolean sync() throws InterruptedException {
+        long start = System.nanoTime();
+        final List<Article> stored = mStore.loadArticles();
+        // A conditional request only makes sense if there are stored articles
+        final HttpValidators validators = stored.isEmpty() ? null : mValidators;
+        final AtomicInteger fetched = new AtomicInteger();
+        final Deadline deadline = Deadline.after(SYNC_DEADLINE);
+        List<Article> sections = mFanOut.load(new SectionFanOut.Fetcher() {
+            @Override
+            public FeedResult fetch(SectionFanOut.Section section) {
+                FeedResult result = QueryUtils.fetchNewsArticles(
+                        incrementalQuery(section, stored).toUrl(), validators, deadline);
+                if (result.getArticles() != null || result.isNotModified()) {
+                    fetched.incrementAndGet();
+                }
+                return result;
+            }
+        }, true, null);
+        if (sections == null || fetched.get() == 0) {
+            // Not a single section could be fetched
+            mStats.recordFailure();
+            return false;
+        }
+
+        // Merged into the store as it is now: the app may have saved articles meanwhile
+        List<Article> merged = mStore.mergeAndSave(sections);
+        int thumbnails = prefetchThumbnails(merged);
+
+        long duration = (System.nanoTime() - start) / 1000000;
+        mStats.recordSuccess(System.currentTimeMillis(), duration, merged.size(), thumbnails);
+        return true;
+    }
+
+    /**
+     * Stop the threads of this instance. No further sync can be made.
+     */
+    public void shutdown() {
+        mFanOut.shutdown();
+    }
+
+    /**
+     * Return the query of the articles of the given section published since the newest
+     * of the given articles in the same section.
+     */
+    public static GuardianQuery incrementalQuery(SectionFanOut.Section section,
+                                                 List<Article> stored) {
+        List<Article> ofSection = new ArrayList<>();
+        for (Article article : stored) {
+            if (section.getName().equals(article.getSection())) {
+                ofSection.add(article);
+            }
+        }
+        return section.getQuery().since(ArticleStore.newestPublicationTime(ofSection));
+    }
+
+    /*
+     * Download the thumbnails of the first articles, the ones on screen when the feed opens.
+     * Return the number of thumbnails now in the cache.
+     */
+    private int prefetchThumbnails(List<Article> articles) throws InterruptedException {
+        List<Future<?>> downloads = new ArrayList<>();
+        for (int i = 0; i < articles.size() && downloads.size() < mMaxThumbnails; i++) {
+            String thumbnailUrl = articles.get(i).getThumbnailUrl();
+            if (thumbnailUrl == null) {
+                continue;
+            }
+            try {
+                downloads.add(mDownloader.submit(new URL(thumbnailUrl)));
+            } catch (MalformedURLException e) {
+                // No thumbnail for this article
+            }
+        }
+        int done = 0;
+        for (Future<?> download : downloads) {
+            try {
+                if (download.get() != null) {
+                    done++;
+                }
+            } catch (ExecutionException e) {
+                // The thumbnail is downloaded again when its row is shown
+            }
+        }
+        return done;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * Schedules the periodic background sync of the news feed, see {@link FeedSyncService}.
+ * <p>
+ * The sync only runs on an unmetered network while the device is charging, so that it costs
+ * the user neither data nor battery. Background syncs need the
+ * {@link android.app.job.JobScheduler}, which is only available from Android 5.0: on older
+ * versions, the feed is only fetched while the app is on screen.
+ */
+public final class FeedSyncScheduler {
+
+    private static final int JOB_ID = 1;
+    private static final long SYNC_INTERVAL = 3 * 60 * 60 * 1000; /* milliseconds */
+    // First retry delay of a failed sync, doubled at each further failure
+    private static final long INITIAL_BACKOFF = 60 * 1000; /* milliseconds */
+
+    private FeedSyncScheduler() {
+    }
+
+    /**
+     * Schedule the sync, unless it is already scheduled.
+     */
+    public static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            scheduleJob(context);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void scheduleJob(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                // Rescheduling would postpone the next sync by a whole interval
+                return;
+            }
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, FeedSyncService.class))
+                .setPeriodic(SYNC_INTERVAL)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setBackoffCriteria(INITIAL_BACKOFF, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+}
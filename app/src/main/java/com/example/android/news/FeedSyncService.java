@@ -0,0 +1,66 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * FeedSyncService runs the periodic background sync of the news feed, see {@link FeedSync},
+ * on a worker thread. It is scheduled by {@link FeedSyncScheduler}.
+ * <p>
+ * A failed sync asks to be retried, which the {@link android.app.job.JobScheduler} does
+ * with an exponential backoff.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class FeedSyncService extends JobService {
+
+    private static final String LOG_TAG = FeedSyncService.class.getSimpleName();
+    // Thumbnails downloaded by a sync: about the ones on screen when the feed opens
+    private static final int MAX_THUMBNAILS = 12;
+
+    private Thread mThread;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Context context = getApplicationContext();
+                ThumbnailDownloader<Bitmap> downloader =
+                        QueryUtils.newThumbnailDownloader(context);
+                QueryUtils.restoreArticleIndex(context);
+                FeedSync sync = new FeedSync(MainActivity.SECTIONS,
+                        ArticleStore.getInstance(context), downloader, MAX_THUMBNAILS,
+                        QueryUtils.getValidators(context), QueryUtils.getSyncStats(context));
+                try {
+                    boolean success = sync.sync();
+                    QueryUtils.saveArticleIndex(context);
+                    Log.i(LOG_TAG, "Sync " + (success ? "done" : "failed") + ", "
+                            + QueryUtils.getSyncStats(context));
+                    jobFinished(params, !success);
+                } catch (InterruptedException e) {
+                    // Stopped by the system, see onStopJob()
+                } finally {
+                    sync.shutdown();
+                    downloader.cancel();
+                }
+            }
+        }, "feed-sync");
+        mThread.start();
+        // The job goes on in the worker thread
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints are not met anymore: stop, and retry later
+        if (mThread != null) {
+            mThread.interrupt();
+        }
+        return true;
+    }
+}
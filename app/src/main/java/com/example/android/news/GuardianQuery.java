@@ -0,0 +1,247 @@
+package com.example.android.news;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A query of the content API of The Guardian, as an endpoint and a set of parameters, from
+ * which the URL of the request is built.
+ * <p>
+ * Queries are immutable: every "with" method returns a new query. Two queries which only
+ * differ in the order of their parameters, in the order of the values of a list (the sections
+ * in "section=science|technology", the fields in "show-fields=thumbnail,byline"), in the
+ * spaces around the words of the search terms, or in their API key, ask for the same results:
+ * they have the same {@link #getCacheKey() cache key}, under which the results can be shared.
+ * <p>
+ * This class does not depend on the Android framework.
+ */
+public final class GuardianQuery {
+
+    // Path of the search of the content, from the base URL of the API, see build.gradle
+    public static final String SEARCH_PATH = "/search";
+
+    // Parameters whose value is a list, in which "," stands for AND and "|" for OR
+    private static final List<String> LIST_PARAMETERS = Arrays.asList("section", "tag",
+            "show-fields", "show-tags", "show-elements", "show-blocks", "ids");
+    // Parameter which does not change the results
+    private static final String API_KEY = "api-key";
+
+    private final String mEndpoint;
+    // Decoded values, sorted by parameter name
+    private final TreeMap<String, String> mParameters;
+
+    /*
+     * Constructor of a query without any parameter.
+     */
+    public GuardianQuery(String endpoint) {
+        this(endpoint, new TreeMap<String, String>());
+    }
+
+    private GuardianQuery(String endpoint, TreeMap<String, String> parameters) {
+        mEndpoint = endpoint;
+        mParameters = parameters;
+    }
+
+    /**
+     * Return the query of the given URL, whose parameters are decoded. An
+     * IllegalArgumentException is thrown if a parameter cannot be decoded.
+     */
+    public static GuardianQuery parse(String url) {
+        int question = url.indexOf('?');
+        if (question < 0) {
+            return new GuardianQuery(url);
+        }
+        TreeMap<String, String> parameters = new TreeMap<>();
+        for (String parameter : url.substring(question + 1).split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            parameters.put(decode(name), decode(value));
+        }
+        return new GuardianQuery(url.substring(0, question), parameters);
+    }
+
+    /**
+     * Return this query with the given parameter set to the given value, or removed if the
+     * value is null.
+     */
+    public GuardianQuery with(String name, String value) {
+        TreeMap<String, String> parameters = new TreeMap<>(mParameters);
+        if (value == null) {
+            parameters.remove(name);
+        } else {
+            parameters.put(name, value);
+        }
+        return new GuardianQuery(mEndpoint, parameters);
+    }
+
+    /**
+     * Return this query restricted to the articles of any of the given sections, by id.
+     */
+    public GuardianQuery withSections(String... sections) {
+        return with("section", join(Arrays.asList(sections), "|"));
+    }
+
+    public GuardianQuery withPageSize(int pageSize) {
+        return with("page-size", String.valueOf(pageSize));
+    }
+
+    /**
+     * Return this query restricted to the given page of results (the first page is 1).
+     */
+    public GuardianQuery withPage(int page) {
+        return with("page", String.valueOf(page));
+    }
+
+    /**
+     * Return this query restricted to the articles published after the given time, see
+     * {@link PublicationDate}. The query is returned unchanged if the time is unknown.
+     */
+    public GuardianQuery since(long lastTime) {
+        if (lastTime == PublicationDate.UNKNOWN) {
+            return this;
+        }
+        // The "from-date" parameter is inclusive, and datetimes have a resolution of one second
+        return with("from-date", PublicationDate.format(lastTime + 1000));
+    }
+
+    /**
+     * Return this query restricted to the articles published up to the given time, included,
+     * see {@link PublicationDate}. The query is returned unchanged if the time is unknown.
+     */
+    public GuardianQuery until(long time) {
+        if (time == PublicationDate.UNKNOWN) {
+            return this;
+        }
+        return with("to-date", PublicationDate.format(time));
+    }
+
+    /*
+     * Return the decoded value of the given parameter, or null if it is not set.
+     */
+    public String getParameter(String name) {
+        return mParameters.get(name);
+    }
+
+    /**
+     * Return the URL of the request of this query.
+     */
+    public String toUrl() {
+        return build(false);
+    }
+
+    /**
+     * Return a key which is the same for all the queries asking for the same results, see
+     * above.
+     */
+    public String getCacheKey() {
+        return build(true);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GuardianQuery
+                && getCacheKey().equals(((GuardianQuery) o).getCacheKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return getCacheKey().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toUrl();
+    }
+
+    private String build(boolean normalized) {
+        StringBuilder url = new StringBuilder(mEndpoint);
+        char separator = '?';
+        for (Map.Entry<String, String> parameter : mParameters.entrySet()) {
+            String name = parameter.getKey();
+            String value = parameter.getValue();
+            if (normalized) {
+                if (name.equals(API_KEY)) {
+                    continue;
+                }
+                value = normalize(name, value);
+            }
+            url.append(separator).append(encode(name)).append('=').append(encode(value));
+            separator = '&';
+        }
+        return url.toString();
+    }
+
+    private static String normalize(String name, String value) {
+        // Words separated by any spaces
+        value = value.trim().replaceAll("\\s+", " ");
+        if (!LIST_PARAMETERS.contains(name)) {
+            return value;
+        }
+        // Both operators are commutative: sort the alternatives, then the terms
+        List<String> terms = new ArrayList<>();
+        for (String term : value.split(",")) {
+            List<String> alternatives = new ArrayList<>();
+            for (String alternative : term.split("\\|")) {
+                alternatives.add(alternative.trim());
+            }
+            Collections.sort(alternatives);
+            terms.add(join(alternatives, "|"));
+        }
+        Collections.sort(terms);
+        return join(terms, ",");
+    }
+
+    private static String join(List<String> strings, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String string : strings) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(string);
+        }
+        return joined.toString();
+    }
+
+    /*
+     * Percent-encode the given string, except for the unreserved characters, and for the
+     * commas and slashes of the values of the API, which are kept readable.
+     */
+    private static String encode(String string) {
+        StringBuilder encoded = new StringBuilder(string.length());
+        byte[] bytes;
+        try {
+            bytes = string.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        for (byte b : bytes) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || "-_.~,/".indexOf(c) >= 0) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xf, 16)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static String decode(String string) {
+        try {
+            return URLDecoder.decode(string, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.android.news;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming parser for the responses of the "search" endpoint of the Guardian OpenPlatform API.
+ * <p>
+ * The parser reads the array "response.results" directly from the response stream and emits
+ * one {@link Article} at a time to an {@link ArticleHandler}, as soon as the corresponding
+ * JSON object has been read. Fields that are not needed are skipped without being
+ * materialized, so the response is never held in memory as a whole.
+ */
+public final class GuardianResponseParser {
+
+    /**
+     * Receives the articles in the order in which they appear in the response.
+     */
+    public interface ArticleHandler {
+        void onArticle(Article article);
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private GuardianResponseParser() {
+    }
+
+    /**
+     * Parse the given response stream, emitting every result of type "article".
+     * Articles emitted before a malformed part of the response is reached are kept.
+     */
+    public static void parse(InputStream inputStream, ArticleHandler handler)
+            throws IOException {
+        JsonPullReader reader = new JsonPullReader(new InputStreamReader(inputStream, UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("response")
+                    && reader.peek() == JsonPullReader.Token.BEGIN_OBJECT) {
+                readResponse(reader, handler);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readResponse(JsonPullReader reader, ArticleHandler handler)
+            throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("results")
+                    && reader.peek() == JsonPullReader.Token.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    Article article = readResult(reader);
+                    if (article != null) {
+                        handler.onArticle(article);
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /*
+     * Read one element of "results", and return the corresponding article,
+     * or null if it is not an article.
+     */
+    private static Article readResult(JsonPullReader reader) throws IOException {
+        if (reader.peek() != JsonPullReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+
+        String id = null;
+        String type = null;
+        String section = "";
+        String datetime = null;
+        String title = "";
+        String link = "";
+        String authors = "";
+        String thumbnail = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonPullReader.Token.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextString();
+                    break;
+                case "sectionName":
+                    section = reader.nextString();
+                    break;
+                case "webPublicationDate":
+                    datetime = reader.nextString();
+                    break;
+                case "webTitle":
+                    title = reader.nextString();
+                    break;
+                case "webUrl":
+                    link = reader.nextString();
+                    break;
+                case "tags":
+                    authors = readAuthors(reader);
+                    break;
+                case "fields":
+                    thumbnail = readThumbnail(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        // Filter out anything that is not an article
+        if (!"article".equals(type)) {
+            return null;
+        }
+        return new Article(id, title, authors, PublicationDate.parse(datetime),
+                section, link, thumbnail);
+    }
+
+    /*
+     * Read the array of contributor tags: the first contributor is named, the presence
+     * of any other one is marked by an ellipsis.
+     */
+    private static String readAuthors(JsonPullReader reader) throws IOException {
+        if (reader.peek() != JsonPullReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return "";
+        }
+        String firstAuthor = null;
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == 0 && reader.peek() == JsonPullReader.Token.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("webTitle")
+                            && reader.peek() == JsonPullReader.Token.STRING) {
+                        firstAuthor = reader.nextString();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+            count++;
+        }
+        reader.endArray();
+
+        if (firstAuthor == null) {
+            return "";
+        }
+        return count > 1 ? firstAuthor + ", ..." : firstAuthor;
+    }
+
+    private static String readThumbnail(JsonPullReader reader) throws IOException {
+        if (reader.peek() != JsonPullReader.Token.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        String thumbnail = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnail")
+                    && reader.peek() == JsonPullReader.Token.STRING) {
+                thumbnail = reader.nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return thumbnail;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.news;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values, such as durations, from which percentiles can be read.
+ * <p>
+ * Values are counted in buckets of logarithmic width: every power of two is split into
+ * {@link #SUB_BUCKETS} buckets of equal width, so that values up to 2 * SUB_BUCKETS are
+ * counted exactly, and larger ones with a relative error below 1 / SUB_BUCKETS. The memory
+ * used is fixed, whatever the number of values recorded.
+ * <p>
+ * Recording takes no lock, so that it can be done from any thread at little cost.
+ */
+public class Histogram {
+
+    public static final int SUB_BUCKETS = 16;
+    // log2(SUB_BUCKETS)
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Record the given value. Negative values are counted as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts.incrementAndGet(bucketOf(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long min;
+        while (value < (min = mMin.get()) && !mMin.compareAndSet(min, value)) {
+            // Lost a race with another thread: try again
+        }
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // Lost a race with another thread: try again
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    // Smallest recorded value, or 0 if there is none
+    public long getMin() {
+        return getCount() == 0 ? 0 : mMin.get();
+    }
+
+    // Largest recorded value, or 0 if there is none
+    public long getMax() {
+        return getCount() == 0 ? 0 : mMax.get();
+    }
+
+    // Mean of the recorded values, or 0 if there is none
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) mSum.get() / count;
+    }
+
+    /**
+     * Return the value below which the given percentage of the recorded values fall
+     * (e.g. 50 for the median, 99 for the 99th percentile), or 0 if there is none.
+     * The value returned is the highest value of the bucket where the percentile falls,
+     * and never more than the largest recorded value.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        // Rank of the value, counting from 1
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        // Values recorded while reading the buckets
+        return getMax();
+    }
+
+    /**
+     * Forget all the recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMin.set(Long.MAX_VALUE);
+        mMax.set(Long.MIN_VALUE);
+    }
+
+    /*
+     * Return the index of the bucket of the given value.
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Position of the highest bit, at least SUB_BUCKET_BITS + 1
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /*
+     * Return the highest value counted in the bucket of the given index.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "count: " + getCount() + ", min: " + getMin() + ", p50: " + getPercentile(50)
+                + ", p90: " + getPercentile(90) + ", p99: " + getPercentile(99)
+                + ", max: " + getMax();
+    }
+}
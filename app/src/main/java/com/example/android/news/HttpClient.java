@@ -0,0 +1,266 @@
+package com.example.android.news;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HttpClient makes the HTTP requests of the application: the ones of the news feed, and the
+ * ones of the thumbnails, which all come from the same couple of hosts.
+ * <p>
+ * Connections are pooled and kept alive by {@link HttpURLConnection}, so that consecutive
+ * requests to the same host skip the TCP and TLS handshakes, provided that every response
+ * body is read to the end and closed, and that the connection is never disconnected:
+ * {@link Response#close()} takes care of both.
+ * <p>
+ * A request may be given a {@link Deadline}: its timeouts are shortened to the time left, and
+ * its connection is disconnected if it is still connecting, waiting or reading when the
+ * deadline expires, so that a stalled server cannot hold it any longer.
+ * <p>
+ * The timings of every request are reported to the {@link Listener}, if any.
+ * All methods are thread safe.
+ */
+public class HttpClient {
+
+    /**
+     * Notified on the requesting thread every time a response is closed.
+     */
+    public interface Listener {
+        void onResponseClosed(URL url, int responseCode, RequestTimings timings);
+    }
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 15000; /* milliseconds */
+    public static final int DEFAULT_READ_TIMEOUT = 10000; /* milliseconds */
+
+    // Number of unread bytes of a response body worth reading to keep its connection
+    private static final int MAX_DRAINED_BYTES = 64 * 1024;
+
+    // Disconnects the requests whose deadline has expired
+    private static ScheduledExecutorService sWatchdog;
+
+    private final int mConnectTimeout;
+    private final int mReadTimeout;
+    private volatile Listener mListener;
+
+    public HttpClient() {
+        this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /*
+     * Constructor. Timeouts are in milliseconds.
+     */
+    public HttpClient(int connectTimeout, int readTimeout) {
+        if (connectTimeout < 0 || readTimeout < 0) {
+            throw new IllegalArgumentException("Timeouts must not be negative");
+        }
+        mConnectTimeout = connectTimeout;
+        mReadTimeout = readTimeout;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Send a GET request with the given headers, which may be null, and return its response
+     * as soon as its headers are in. The response must be closed, whatever its code.
+     */
+    public Response get(URL url, Map<String, String> headers) throws IOException {
+        return get(url, headers, Deadline.NONE);
+    }
+
+    /**
+     * Send a GET request as above, which fails with a {@link SocketTimeoutException} if the
+     * given deadline has expired, and with some IOException if it expires before the response
+     * is closed.
+     */
+    public Response get(URL url, Map<String, String> headers, Deadline deadline)
+            throws IOException {
+        RequestTimings timings = new RequestTimings();
+        long remaining = deadline.getRemaining();
+        if (remaining == 0) {
+            throw new SocketTimeoutException("Deadline expired before requesting " + url);
+        }
+        final HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        // A timeout of 0 means no timeout at all
+        urlConnection.setConnectTimeout(shorten(mConnectTimeout, remaining));
+        urlConnection.setReadTimeout(shorten(mReadTimeout, remaining));
+        urlConnection.setRequestMethod("GET");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                urlConnection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        Future<?> watchdog = null;
+        if (deadline != Deadline.NONE) {
+            watchdog = getWatchdog().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // Whatever the connection is blocked on fails with an IOException
+                    urlConnection.disconnect();
+                }
+            }, remaining, TimeUnit.MILLISECONDS);
+        }
+        try {
+            urlConnection.connect();
+            timings.markConnected();
+            int responseCode = urlConnection.getResponseCode();
+            timings.markFirstByte();
+            return new Response(url, urlConnection, responseCode, timings, deadline, watchdog);
+        } catch (IOException e) {
+            // The connection is in an unknown state: do not let it go back to the pool
+            if (watchdog != null) {
+                watchdog.cancel(false);
+            }
+            urlConnection.disconnect();
+            throw e;
+        }
+    }
+
+    /*
+     * Return the given timeout, shortened to the given time left, but never 0.
+     */
+    private static int shorten(int timeout, long remaining) {
+        if (timeout == 0 || timeout > remaining) {
+            return (int) Math.max(1, Math.min(remaining, Integer.MAX_VALUE));
+        }
+        return timeout;
+    }
+
+    private static synchronized ScheduledExecutorService getWatchdog() {
+        if (sWatchdog == null) {
+            sWatchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "http-deadline");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return sWatchdog;
+    }
+
+    /**
+     * The response to a request, whose body is streamed from the connection.
+     */
+    public class Response implements Closeable {
+
+        private final URL mUrl;
+        private final HttpURLConnection mConnection;
+        private final int mCode;
+        private final RequestTimings mTimings;
+        private final Deadline mDeadline;
+        private final Future<?> mWatchdog;
+        private InputStream mBody;
+        private boolean mClosed;
+
+        private Response(URL url, HttpURLConnection connection, int code,
+                         RequestTimings timings, Deadline deadline, Future<?> watchdog) {
+            mUrl = url;
+            mConnection = connection;
+            mCode = code;
+            mTimings = timings;
+            mDeadline = deadline;
+            mWatchdog = watchdog;
+        }
+
+        public int getCode() {
+            return mCode;
+        }
+
+        public String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        public String getContentEncoding() {
+            return mConnection.getContentEncoding();
+        }
+
+        /**
+         * Return the body of the response, either successful or not. It is closed along with
+         * the response.
+         */
+        public InputStream getBody() throws IOException {
+            if (mBody == null) {
+                mBody = mCode < HttpURLConnection.HTTP_BAD_REQUEST
+                        ? mConnection.getInputStream() : mConnection.getErrorStream();
+                if (mBody == null) {
+                    mBody = new ByteArrayInputStream(new byte[0]);
+                }
+            }
+            return mBody;
+        }
+
+        public RequestTimings getTimings() {
+            return mTimings;
+        }
+
+        /**
+         * Read what is left of the body, so that the connection can be reused, and close it.
+         * If too much is left, the connection is closed instead.
+         */
+        @Override
+        public void close() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                InputStream body = getBody();
+                // Past the deadline, there is no time left to read anything
+                if (!mDeadline.isExpired() && drain(body)) {
+                    // Past this point, the connection may go back to the pool
+                    cancelWatchdog();
+                    body.close();
+                } else {
+                    mConnection.disconnect();
+                }
+            } catch (IOException e) {
+                mConnection.disconnect();
+            }
+            cancelWatchdog();
+            mTimings.markDone();
+            Listener listener = mListener;
+            if (listener != null) {
+                listener.onResponseClosed(mUrl, mCode, mTimings);
+            }
+        }
+
+        /*
+         * Only called once the body has been read: the deadline also bounds the reading of
+         * what was left of it.
+         */
+        private void cancelWatchdog() {
+            if (mWatchdog != null) {
+                mWatchdog.cancel(false);
+            }
+        }
+
+        /*
+         * Return true if the end of the body has been reached.
+         */
+        private boolean drain(InputStream body) throws IOException {
+            byte[] buffer = new byte[4096];
+            int drained = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAINED_BYTES) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
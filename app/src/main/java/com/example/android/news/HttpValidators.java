@@ -0,0 +1,104 @@
+package com.example.android.news;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Remembers the cache validators (the "ETag" and "Last-Modified" response headers) returned by
+ * the server for each URL, so that later requests for the same URL can be made conditional
+ * with "If-None-Match" and "If-Modified-Since".
+ * <p>
+ * Validators are persisted to a file if one is given, so that they survive the process.
+ * All methods are thread safe.
+ */
+public class HttpValidators {
+
+    private static final String ETAG_PREFIX = "etag:";
+    private static final String LAST_MODIFIED_PREFIX = "last-modified:";
+
+    private final File mFile;
+    private final Properties mValidators = new Properties();
+
+    /*
+     * Constructor. The validators are kept in memory only if file is null.
+     */
+    public HttpValidators(File file) {
+        mFile = file;
+        if (file != null && file.exists()) {
+            InputStream input = null;
+            try {
+                input = new FileInputStream(file);
+                mValidators.load(input);
+            } catch (IOException e) {
+                // Unreadable validators only cost an unconditional request
+                mValidators.clear();
+            } finally {
+                closeQuietly(input);
+            }
+        }
+    }
+
+    public synchronized String getETag(String url) {
+        return mValidators.getProperty(ETAG_PREFIX + url);
+    }
+
+    public synchronized String getLastModified(String url) {
+        return mValidators.getProperty(LAST_MODIFIED_PREFIX + url);
+    }
+
+    /**
+     * Record the validators of the last successful response for the given URL.
+     * Either of them may be null if the server did not send it.
+     */
+    public synchronized void update(String url, String eTag, String lastModified) {
+        put(ETAG_PREFIX + url, eTag);
+        put(LAST_MODIFIED_PREFIX + url, lastModified);
+        save();
+    }
+
+    /**
+     * Forget the validators of the given URL, so that the next request is unconditional.
+     */
+    public synchronized void clear(String url) {
+        update(url, null, null);
+    }
+
+    private void put(String key, String value) {
+        if (value == null) {
+            mValidators.remove(key);
+        } else {
+            mValidators.setProperty(key, value);
+        }
+    }
+
+    private void save() {
+        if (mFile == null) {
+            return;
+        }
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(mFile);
+            mValidators.store(output, null);
+        } catch (IOException e) {
+            // Validators that cannot be saved only cost an unconditional request next time
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.android.news;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JankMonitor watches the frames of the main thread through the {@link Choreographer}, and
+ * its stalls from a watchdog thread, and keeps their statistics in a {@link StallDetector}.
+ * <p>
+ * Monitoring is opt-in: it asks for every frame, which keeps the display from idling, so it
+ * is only meant for the debug builds, see {@link #isSupported()}. {@link #start()} and
+ * {@link #stop()} must be called from the main thread.
+ */
+public class JankMonitor {
+
+    private static final String LOG_TAG = JankMonitor.class.getSimpleName();
+
+    // Interval of the frames of a 60 Hz display
+    private static final long FRAME_INTERVAL = TimeUnit.SECONDS.toNanos(1) / 60;
+    // Time without a frame after which the main thread is stalled, well above a frozen frame
+    // so that only the real stalls have their stack sampled
+    private static final long STALL_THRESHOLD = 1000; /* milliseconds */
+    private static final long CHECK_INTERVAL = STALL_THRESHOLD / 4; /* milliseconds */
+
+    // Checks the main thread for stalls, shared by all the monitors
+    private static final ScheduledExecutorService WATCHDOG =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "jank-watchdog");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final StallDetector mDetector = new StallDetector(FRAME_INTERVAL,
+            TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD), new StallDetector.StackSampler() {
+                @Override
+                public StackTraceElement[] sample() {
+                    return Looper.getMainLooper().getThread().getStackTrace();
+                }
+            });
+    private boolean mEnabled;
+    private boolean mRunning;
+    private ScheduledFuture<?> mWatchdog;
+    // Only made once running, since the Choreographer does not exist before Android 4.1
+    private FrameWatcher mFrameWatcher;
+
+    /**
+     * Return true if frames can be monitored on this device: the Choreographer came with
+     * Android 4.1.
+     */
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    }
+
+    public StallDetector getDetector() {
+        return mDetector;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Enable or disable the monitoring: while disabled, {@link #start()} does nothing.
+     */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled && isSupported();
+        if (!mEnabled) {
+            stop();
+        }
+    }
+
+    /**
+     * Start watching the frames, if enabled, as the activity shows up.
+     */
+    public void start() {
+        if (!mEnabled || mRunning) {
+            return;
+        }
+        mRunning = true;
+        if (mFrameWatcher == null) {
+            mFrameWatcher = new FrameWatcher();
+        }
+        mFrameWatcher.start();
+        mWatchdog = WATCHDOG.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (mDetector.check(System.nanoTime())) {
+                    Log.w(LOG_TAG, "Main thread stalled for " + STALL_THRESHOLD + " ms");
+                }
+            }
+        }, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop watching the frames, as the activity goes away.
+     */
+    public void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mFrameWatcher.stop();
+        mWatchdog.cancel(false);
+        mWatchdog = null;
+        mDetector.pause();
+    }
+
+    /**
+     * Asks for every frame, and records it.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private class FrameWatcher implements Choreographer.FrameCallback {
+
+        void start() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Frame times are on the same clock as System.nanoTime()
+            mDetector.onFrame(frameTimeNanos);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
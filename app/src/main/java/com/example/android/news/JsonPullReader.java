@@ -0,0 +1,450 @@
+package com.example.android.news;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Minimal pull parser for JSON documents (RFC 7159), which reads its input incrementally
+ * through a fixed-size buffer instead of loading the whole document in memory.
+ * <p>
+ * The API follows the one of {@code android.util.JsonReader}: the caller walks the document
+ * token by token, and the values it is not interested in are skipped with
+ * {@link #skipValue()} without ever being turned into objects. Unlike the platform class,
+ * this one does not depend on the Android framework, so it can run on any JVM.
+ * <p>
+ * Numbers are returned as strings, via {@link #nextString()}. Malformed input causes
+ * a {@link MalformedJsonException}. Input which ends before the end of the document causes
+ * an {@link EOFException}, and the errors of the input stream are passed through.
+ */
+public class JsonPullReader implements Closeable {
+
+    public enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    // Lexical scopes, kept on a stack as the parser descends into arrays and objects
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private final Reader mIn;
+    private final char[] mBuffer = new char[8192];
+    private int mPos = 0;
+    private int mLimit = 0;
+
+    private int[] mStack = new int[32];
+    private int mStackSize = 0;
+
+    // The next token, once it has been looked at by peek(), else null
+    private Token mPeeked;
+
+    // Reused to accumulate the characters of strings and names
+    private final StringBuilder mBuilder = new StringBuilder();
+
+    public JsonPullReader(Reader in) {
+        mIn = in;
+        push(EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Return the type of the next token, without consuming it.
+     */
+    public Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+
+        int scope = mStack[mStackSize - 1];
+        int c;
+        if (scope == EMPTY_ARRAY) {
+            mStack[mStackSize - 1] = NONEMPTY_ARRAY;
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return mPeeked = Token.END_ARRAY;
+            }
+            mPos--;
+        } else if (scope == NONEMPTY_ARRAY) {
+            c = nextNonWhitespace();
+            if (c == ']') {
+                return mPeeked = Token.END_ARRAY;
+            } else if (c != ',') {
+                throw syntaxError("Unterminated array");
+            }
+        } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+            mStack[mStackSize - 1] = DANGLING_NAME;
+            if (scope == NONEMPTY_OBJECT) {
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated object");
+                }
+            }
+            c = nextNonWhitespace();
+            if (c == '}' && scope == EMPTY_OBJECT) {
+                return mPeeked = Token.END_OBJECT;
+            } else if (c != '"') {
+                throw syntaxError("Expected name");
+            }
+            return mPeeked = Token.NAME;
+        } else if (scope == DANGLING_NAME) {
+            mStack[mStackSize - 1] = NONEMPTY_OBJECT;
+            if (nextNonWhitespace() != ':') {
+                throw syntaxError("Expected ':'");
+            }
+        } else if (scope == EMPTY_DOCUMENT) {
+            mStack[mStackSize - 1] = NONEMPTY_DOCUMENT;
+        } else if (scope == NONEMPTY_DOCUMENT) {
+            if (skipWhitespace() == -1) {
+                return mPeeked = Token.END_DOCUMENT;
+            }
+            throw syntaxError("Unexpected content after the end of the document");
+        }
+
+        // A value is expected
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return mPeeked = Token.BEGIN_OBJECT;
+            case '[':
+                return mPeeked = Token.BEGIN_ARRAY;
+            case '"':
+                return mPeeked = Token.STRING;
+            case 't':
+            case 'f':
+                mPos--;
+                return mPeeked = Token.BOOLEAN;
+            case 'n':
+                mPos--;
+                return mPeeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    return mPeeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    /**
+     * Return true if the current array or object has another element.
+     */
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return readQuoted();
+    }
+
+    /**
+     * Return the next string or number value, as a string.
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        mPeeked = null;
+        if (token == Token.STRING) {
+            return readQuoted();
+        } else if (token == Token.NUMBER) {
+            return readLiteral();
+        }
+        throw syntaxError("Expected a string but was " + token);
+    }
+
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        String literal = readLiteral();
+        if (literal.equals("true")) {
+            return true;
+        } else if (literal.equals("false")) {
+            return false;
+        }
+        throw syntaxError("Unexpected literal " + literal);
+    }
+
+    public void nextNull() throws IOException {
+        expect(Token.NULL);
+        String literal = readLiteral();
+        if (!literal.equals("null")) {
+            throw syntaxError("Unexpected literal " + literal);
+        }
+    }
+
+    /**
+     * Skip the next value, recursively if it is an array or an object,
+     * without materializing any of it.
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            mPeeked = null;
+            switch (token) {
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    depth++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    mStackSize--;
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    skipQuoted();
+                    break;
+                case NUMBER:
+                case BOOLEAN:
+                case NULL:
+                    skipLiteral();
+                    break;
+                default:
+                    throw syntaxError("Unexpected " + token);
+            }
+        } while (depth > 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mPeeked = null;
+        mStackSize = 0;
+        mIn.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] stack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    /*
+     * Make sure that at least "minimum" characters are available in the buffer,
+     * compacting it if needed. Returns false if the input ends earlier.
+     */
+    private boolean fill(int minimum) throws IOException {
+        if (mPos != mLimit) {
+            System.arraycopy(mBuffer, mPos, mBuffer, 0, mLimit - mPos);
+        }
+        mLimit -= mPos;
+        mPos = 0;
+        int read;
+        while (mLimit < minimum
+                && (read = mIn.read(mBuffer, mLimit, mBuffer.length - mLimit)) != -1) {
+            mLimit += read;
+        }
+        return mLimit >= minimum;
+    }
+
+    /*
+     * Return the next non-whitespace character without consuming it, or -1 at the end
+     * of the input.
+     */
+    private int skipWhitespace() throws IOException {
+        while (mPos < mLimit || fill(1)) {
+            char c = mBuffer[mPos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            mPos++;
+        }
+        return -1;
+    }
+
+    /*
+     * Consume and return the next non-whitespace character.
+     */
+    private int nextNonWhitespace() throws IOException {
+        int c = skipWhitespace();
+        if (c == -1) {
+            throw endOfInput("in the middle of the document");
+        }
+        mPos++;
+        return c;
+    }
+
+    /*
+     * Read a string whose opening quote has already been consumed, up to and including
+     * its closing quote, and return its unescaped content.
+     */
+    private String readQuoted() throws IOException {
+        mBuilder.setLength(0);
+        while (true) {
+            int start = mPos;
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') {
+                    mBuilder.append(mBuffer, start, mPos - start - 1);
+                    return mBuilder.toString();
+                } else if (c == '\\') {
+                    mBuilder.append(mBuffer, start, mPos - start - 1);
+                    mBuilder.append(readEscapeCharacter());
+                    start = mPos;
+                }
+            }
+            mBuilder.append(mBuffer, start, mPos - start);
+            if (!fill(1)) {
+                throw endOfInput("in a string");
+            }
+        }
+    }
+
+    /*
+     * Same as readQuoted(), without building the string.
+     */
+    private void skipQuoted() throws IOException {
+        while (true) {
+            while (mPos < mLimit) {
+                char c = mBuffer[mPos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    readEscapeCharacter();
+                }
+            }
+            if (!fill(1)) {
+                throw endOfInput("in a string");
+            }
+        }
+    }
+
+    private char readEscapeCharacter() throws IOException {
+        if (mPos == mLimit && !fill(1)) {
+            throw endOfInput("in an escape sequence");
+        }
+        char escaped = mBuffer[mPos++];
+        switch (escaped) {
+            case 'u':
+                if (mPos + 4 > mLimit && !fill(4)) {
+                    throw endOfInput("in an escape sequence");
+                }
+                char result = 0;
+                for (int i = mPos; i < mPos + 4; i++) {
+                    int digit = Character.digit(mBuffer[i], 16);
+                    if (digit == -1) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    result = (char) ((result << 4) + digit);
+                }
+                mPos += 4;
+                return result;
+            case 't':
+                return '\t';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case '"':
+            case '\\':
+            case '/':
+                return escaped;
+            default:
+                throw syntaxError("Invalid escape sequence \\" + escaped);
+        }
+    }
+
+    /*
+     * Read an unquoted value: a number, true, false or null.
+     */
+    private String readLiteral() throws IOException {
+        mBuilder.setLength(0);
+        while (true) {
+            int start = mPos;
+            while (mPos < mLimit) {
+                if (isDelimiter(mBuffer[mPos])) {
+                    mBuilder.append(mBuffer, start, mPos - start);
+                    return mBuilder.toString();
+                }
+                mPos++;
+            }
+            mBuilder.append(mBuffer, start, mPos - start);
+            if (!fill(1)) {
+                return mBuilder.toString();
+            }
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        while (mPos < mLimit || fill(1)) {
+            if (isDelimiter(mBuffer[mPos])) {
+                return;
+            }
+            mPos++;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        switch (c) {
+            case ',':
+            case ':':
+            case '}':
+            case ']':
+            case ' ':
+            case '\n':
+            case '\r':
+            case '\t':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * The input ends before the document: it has been cut, rather than being malformed.
+     */
+    private EOFException endOfInput(String where) {
+        return new EOFException("End of the JSON input " + where);
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException("Malformed JSON: " + message);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.android.news;
+
+/**
+ * LoadTimings records how long a single load of the news feed takes to reach the user:
+ * <ul>
+ * <li>time-to-text: from the start of the load until the text-only article list is on
+ * screen;</li>
+ * <li>time-to-all-thumbnails: from the start of the load until the last thumbnail of the rows
+ * on screen has been bound to its row (or has failed to download).</li>
+ * </ul>
+ * Along with them, it records the number of rows bound to get the articles on screen, which is
+ * the number of articles that are new or that changed when the list was already showing.
+ */
+public class LoadTimings {
+
+    private final long mStartNanos;
+    private long mTextNanos = -1;
+    private long mAllThumbnailsNanos = -1;
+    private int mThumbnailsExpected;
+    private int mThumbnailsDone;
+    private int mRowsBound;
+
+    public LoadTimings() {
+        mStartNanos = System.nanoTime();
+    }
+
+    /*
+     * Record that the text-only article list is on screen, the number of thumbnails
+     * of the rows on screen that are still to be bound, and the number of rows bound.
+     */
+    public void markTextDelivered(int thumbnailsExpected, int rowsBound) {
+        mTextNanos = System.nanoTime();
+        mRowsBound = rowsBound;
+        mThumbnailsExpected = thumbnailsExpected;
+        if (thumbnailsExpected == 0) {
+            mAllThumbnailsNanos = mTextNanos;
+        }
+    }
+
+    /*
+     * Record that one more thumbnail is done, either successfully or not.
+     * Returns true if it was the last one.
+     */
+    public boolean markThumbnailDone() {
+        mThumbnailsDone++;
+        if (mThumbnailsDone == mThumbnailsExpected) {
+            mAllThumbnailsNanos = System.nanoTime();
+            return true;
+        }
+        return false;
+    }
+
+    // Milliseconds from the start of the load to the delivery of the text, or -1
+    public long getTimeToText() {
+        return mTextNanos < 0 ? -1 : (mTextNanos - mStartNanos) / 1000000;
+    }
+
+    // Milliseconds from the start of the load to the last thumbnail, or -1
+    public long getTimeToAllThumbnails() {
+        return mAllThumbnailsNanos < 0 ? -1 : (mAllThumbnailsNanos - mStartNanos) / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "time-to-text: " + getTimeToText() + " ms, time-to-all-thumbnails: "
+                + getTimeToAllThumbnails() + " ms (" + mThumbnailsDone + "/"
+                + mThumbnailsExpected + " thumbnails), " + mRowsBound + " rows bound";
+    }
+}
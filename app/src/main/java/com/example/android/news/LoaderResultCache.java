@@ -0,0 +1,100 @@
+package com.example.android.news;
+
+/**
+ * Keeps the last result of a loader, so that it can be delivered again as soon as the loader is
+ * started again (after a configuration change, or when the user comes back to the activity),
+ * and decides when the loader must load again:
+ * <ul>
+ * <li>when it has no result yet;</li>
+ * <li>when its result is older than the time to live given to the constructor;</li>
+ * <li>when its result has been invalidated, as on an explicit refresh.</li>
+ * </ul>
+ * A load is never started while another one is running: overlapping starts share its result.
+ * Every load is numbered, so that only the cancellation of the last one started ends the
+ * loading state: a load cancelled by the one replacing it ends after it has started.
+ * <p>
+ * Times are given by the caller, in milliseconds from any fixed origin, so that they can be
+ * read from a clock which keeps running while the device sleeps. All methods are thread safe.
+ */
+public class LoaderResultCache<D> {
+
+    private final long mTimeToLive;
+    private D mResult;
+    private long mResultTime;
+    private boolean mInvalidated;
+    private boolean mLoading;
+    // Number of the last load started
+    private int mLoad;
+
+    /*
+     * Constructor. The time to live is in milliseconds.
+     */
+    public LoaderResultCache(long timeToLive) {
+        mTimeToLive = timeToLive;
+    }
+
+    /**
+     * Return the last result, or null if there is none.
+     */
+    public synchronized D getResult() {
+        return mResult;
+    }
+
+    /**
+     * Return true if a load must be started at the given time.
+     */
+    public synchronized boolean shouldLoad(long now) {
+        if (mLoading) {
+            return false;
+        }
+        return mResult == null || mInvalidated || now - mResultTime >= mTimeToLive;
+    }
+
+    /**
+     * Record that a load has been started, and return its number, which identifies it when
+     * it is cancelled.
+     */
+    public synchronized int onLoadStarted() {
+        mLoading = true;
+        mInvalidated = false;
+        return ++mLoad;
+    }
+
+    /**
+     * Record the result of a load, completed at the given time.
+     */
+    public synchronized void onLoadFinished(D result, long now) {
+        mLoading = false;
+        mResult = result;
+        mResultTime = now;
+    }
+
+    /**
+     * Record that the load of the given number has been abandoned: the last result, if any,
+     * is kept. Nothing changes if another load has been started since.
+     */
+    public synchronized void onLoadCanceled(int load) {
+        if (load == mLoad) {
+            mLoading = false;
+        }
+    }
+
+    /**
+     * Replace the last result with a partial result of the running load, without changing
+     * its age.
+     */
+    public synchronized void onPartialResult(D result) {
+        mResult = result;
+    }
+
+    /**
+     * Make the next start load again, whatever the age of the last result.
+     */
+    public synchronized void invalidate() {
+        mInvalidated = true;
+    }
+
+    public synchronized boolean isLoading() {
+        return mLoading;
+    }
+}
@@ -4,130 +4,299 @@ import android.content.Intent;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.DividerItemDecoration;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 
 public class MainActivity extends AppCompatActivity
-        implements LoaderManager.LoaderCallbacks<List<Article>> {
-
-    public static final String QUERY = "https://content.guardianapis.com/search?" +
-            "q=physics%20AND%20NOT%20obituary" +
-            "&tag=science/physics|education/physics" +
-            "&section=science|technology|education|environment" +
-            "&show-fields=thumbnail&show-tags=contributor&order-by=newest" +
-            "&page-size=30&api-key=test";
+        implements LoaderManager.LoaderCallbacks<List<Article>>,
+        ThumbnailBinder.Listener {
+
+    // Number of articles per page of results
+    public static final int PAGE_SIZE = 30;
+    // Query of the whole feed, without its sections, to the API the app is built for
+    private static final GuardianQuery FEED_QUERY =
+            new GuardianQuery(BuildConfig.GUARDIAN_API_URL + GuardianQuery.SEARCH_PATH)
+            .with("q", "physics AND NOT obituary")
+            .with("tag", "science/physics|education/physics")
+            .with("show-fields", "thumbnail")
+            .with("show-tags", "contributor")
+            .with("order-by", "newest")
+            .withPageSize(PAGE_SIZE)
+            .with("api-key", BuildConfig.GUARDIAN_API_KEY);
+    public static final GuardianQuery QUERY =
+            FEED_QUERY.withSections("science", "technology", "education", "environment");
     public static final String SECTION_NAME1 = "Technology";
     public static final String SECTION_NAME2 = "Science";
     public static final String SECTION_NAME3 = "Education";
     public static final String SECTION_NAME4 = "Environment";
 
+    // Minimum time between two requests of a section: most physics news are in Science
+    private static final long HOT_SECTION_REFRESH_INTERVAL = 5 * 60 * 1000; /* milliseconds */
+    private static final long SECTION_REFRESH_INTERVAL = 30 * 60 * 1000; /* milliseconds */
+    /*
+     * Sections of the feed, each one requested on its own.
+     */
+    public static final List<SectionFanOut.Section> SECTIONS = Arrays.asList(
+            new SectionFanOut.Section(SECTION_NAME1,
+                    FEED_QUERY.withSections("technology"),
+                    SECTION_REFRESH_INTERVAL),
+            new SectionFanOut.Section(SECTION_NAME2,
+                    FEED_QUERY.withSections("science"),
+                    HOT_SECTION_REFRESH_INTERVAL),
+            new SectionFanOut.Section(SECTION_NAME3,
+                    FEED_QUERY.withSections("education"),
+                    SECTION_REFRESH_INTERVAL),
+            new SectionFanOut.Section(SECTION_NAME4,
+                    FEED_QUERY.withSections("environment"),
+                    SECTION_REFRESH_INTERVAL));
+
+    private static final String LOG_TAG = MainActivity.class.getSimpleName();
+
+    // Loader of the first page of the feed, merged with the stored articles
+    private static final int FEED_LOADER_ID = 0;
+    // Loader of the following pages, as the user scrolls
+    private static final int PAGE_LOADER_ID = 1;
+    // Distance from the end of the list at which the next page is requested
+    private static final int PREFETCH_DISTANCE = 10;
+    // Key of the articles on screen in the saved state, encoded by ArticleCodec
+    private static final String STATE_ARTICLES = "articles";
+    // Articles kept in the saved state, which must stay well below the size of a transaction
+    private static final int MAX_SAVED_ARTICLES = 200;
+    // Results of a search of the fetched articles shown at most
+    private static final int MAX_SEARCH_RESULTS = 200;
+
     private TextView mEmptyMessage1;
     private TextView mEmptyMessage2;
     private ProgressBar mProgressBar;
     private View mEmptyView;
-    private ListView mListView;
+    private RecyclerView mRecyclerView;
     private CustomAdapter mAdapter;
+    private FeedPager mPager;
+    // Frames and stalls of the main thread, for each action of the user
+    private JankMonitor mJankMonitor;
+    // Timings of the last load of the feed, until its thumbnails on screen are bound
+    private LoadTimings mTimings;
+    // Articles of the feed, loaded and paged, which are on screen unless a search is
+    private List<Article> mFeed = Collections.emptyList();
+    // Words being searched in the fetched articles, empty if none
+    private String mSearchQuery = "";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        mJankMonitor = QueryUtils.getJankMonitor();
 
         mProgressBar = (ProgressBar) findViewById(R.id.progress_bar);
-        mListView = (ListView) findViewById(R.id.list);
-        // Create a custom adapter with an empty array list
-        mAdapter = new CustomAdapter(this, new ArrayList<Article>());
-        // Set this adapter to the list view
-        mListView.setAdapter(mAdapter);
+        mRecyclerView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        mRecyclerView.setLayoutManager(layoutManager);
+        mRecyclerView.addItemDecoration(
+                new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
 
         mEmptyView = findViewById(R.id.empty_view);
         mEmptyMessage1 = (TextView) findViewById(R.id.empty_view_1);
         mEmptyMessage2 = (TextView) findViewById(R.id.empty_view_2);
-        // Set mEmptyView as the view to be displayed when mListView is empty
-        mListView.setEmptyView(mEmptyView);
 
         /**
-         * Set an {@link android.widget.AdapterView.OnItemClickListener} on the ListView,
-         * so by clicking any article in the list it is possible to
-         * read the full article on the related page on the Guardian website.
+         * Create a custom adapter with an empty list, with a
+         * {@link CustomAdapter.OnArticleClickListener}, so by clicking any article in the list
+         * it is possible to read the full article on the related page on the Guardian website.
          * This is achieved by sending an intent to a web browser.
          */
-        mListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        mAdapter = new CustomAdapter(this, new CustomAdapter.OnArticleClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Article selectedArticle = mAdapter.getItem(position);
+            public void onArticleClick(Article selectedArticle) {
                 Intent openWebPage = new Intent(Intent.ACTION_VIEW,
                         Uri.parse(selectedArticle.getLink()));
                 startActivity(openWebPage);
             }
         });
+        // Set this adapter to the recycler view
+        mRecyclerView.setAdapter(mAdapter);
+
+        /*
+         * Load the next page of the feed as the user nears the end of the list.
+         */
+        mPager = new FeedPager(QUERY, PAGE_SIZE, PREFETCH_DISTANCE, new FeedPager.Callbacks() {
+            @Override
+            public void onLoadPage(GuardianQuery page) {
+                PageLoader.load(getSupportLoaderManager(), PAGE_LOADER_ID, page,
+                        MainActivity.this);
+            }
+        });
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    mJankMonitor.getDetector().end(StallDetector.Action.SCROLL);
+                } else {
+                    mJankMonitor.getDetector().begin(StallDetector.Action.SCROLL);
+                }
+            }
+
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // Search results are not paged
+                if (!mSearchQuery.isEmpty()) {
+                    return;
+                }
+                // Also called after every layout of the list, as when a page is appended
+                mPager.onScroll(layoutManager.findFirstVisibleItemPosition(),
+                        layoutManager.getChildCount(), layoutManager.getItemCount());
+            }
+        });
+
+        // The pages loaded for a previous instance of this activity come back with its saved
+        // state, see onSaveInstanceState(): its page loader is not needed anymore
+        getSupportLoaderManager().destroyLoader(PAGE_LOADER_ID);
+        if (savedInstanceState != null) {
+            restoreArticles(savedInstanceState.getByteArray(STATE_ARTICLES));
+        }
+
+        // Keep the stored articles fresh while the app is not on screen
+        FeedSyncScheduler.schedule(this);
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        // Initially hide the empty view, so that only the progress bar is showing
+        // Initially hide the empty view, so that only the progress bar is showing,
+        // unless the articles of the previous start are still on screen
         mEmptyView.setVisibility(View.GONE);
-        mProgressBar.setVisibility(View.VISIBLE);
-        /*
-         * CHECK INTERNET CONNECTION:
-         *
-         * Make this check onStart(), rather than onCreate(), since the loader is restarted
-         * every time the activity is restarted.
-         * In this way, if the user presses the HOME button, does other things, and then, after a
-         * while, he relaunches the app from "Recent Tasks" with internet connection off,
-         * the empty message that the user is going to receive is "you are offline",
-         * rather than "no results found", which is more consistent with what the user expects.
+        if (mAdapter.getItemCount() == 0) {
+            mProgressBar.setVisibility(View.VISIBLE);
+            mJankMonitor.getDetector().begin(StallDetector.Action.INITIAL_LOAD);
+        }
+        mJankMonitor.start();
+        /**
+         * Get a LoaderManager in order to be able to create and manage an instance of
+         * {@link android.support.v4.content.AsyncTaskLoader}.
+         * First argument of method initLoader identifies the loader of the feed, as opposed
+         * to the loader of the following pages, which is created as the user scrolls.
          *
-         * The price to pay for making this check onStart(), rather than onCreate(),
-         * is that we are going to issue more server queries.
+         * The loader is started whether the device is online or not: it first serves the
+         * articles stored by previous loads, so that the user never waits for the network
+         * to see the news feed, then refreshes them from the network if it is available.
+         * When the activity is started again, as after a rotation or when coming back from
+         * the browser, the loader delivers its last result right away, and only goes back to
+         * the network if that result is stale.
          */
+        LoaderManager loaderManager = getSupportLoaderManager();
+        loaderManager.initLoader(FEED_LOADER_ID, null, this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mJankMonitor.stop();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // Even after the process is gone, the list comes back as it was, pages included,
+        // without waiting for the loader
+        List<Article> articles = mFeed;
+        if (!articles.isEmpty()) {
+            outState.putByteArray(STATE_ARTICLES, ArticleCodec.encode(
+                    articles.subList(0, Math.min(articles.size(), MAX_SAVED_ARTICLES))));
+        }
+    }
+
+    private void restoreArticles(byte[] encoded) {
+        if (encoded == null) {
+            return;
+        }
+        try {
+            List<Article> articles = ArticleCodec.decode(ByteBuffer.wrap(encoded));
+            showFeed(articles, null);
+            mPager.reset(FeedPager.completeUntil(articles));
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem restoring the articles. ", e);
+        }
+    }
+
+    /*
+     * CHECK INTERNET CONNECTION
+     */
+    private boolean isConnected() {
         ConnectivityManager cm = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
         NetworkInfo networkInfo = cm.getActiveNetworkInfo();
-        boolean isConnected = (networkInfo != null && networkInfo.isConnectedOrConnecting());
-        if (isConnected) {
-            /**
-             * If the device is connected to the network, we can perform an http request.
-             * Get a LoaderManager in order to be able to create and manage an instance of
-             * {@link android.support.v4.content.AsyncTaskLoader}.
-             * First argument of method initLoader is arbitrary
-             * (we don't care since we only use one loader).
-             */
-            LoaderManager loaderManager = getSupportLoaderManager();
-            loaderManager.initLoader(0, null, this);
-        } else {
-            // If the device is offline and a loader already exists,
-            // then intercept it before it starts loading data and kill it.
-            // Thus the message displayed will be "you are offline",
-            // rather than "no results found".
-            if (getSupportLoaderManager().getLoader(0) != null) {
-                getSupportLoaderManager().destroyLoader(0);
-            }
-            // Hide the progress bar and display the empty view
-            // with a message warning the user that he is offline
-            mProgressBar.setVisibility(View.GONE);
-            mEmptyView.setVisibility(View.VISIBLE);
-            mEmptyMessage1.setText(getString(R.string.no_connection1));
-            mEmptyMessage2.setText(getString(R.string.no_connection2));
-        }
+        return (networkInfo != null && networkInfo.isConnectedOrConnecting());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Stop downloading the thumbnails of the rows of this activity
+        mAdapter.release();
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+
+        /*
+         * Search the articles fetched so far as the user types, without going to the network.
+         * Closing the search brings the feed back.
+         */
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // The results are already on screen: just hide the keyboard
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                search(query);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                search("");
+                return true;
+            }
+        });
+        // The metrics are only recorded in debug builds
+        menu.findItem(R.id.action_metrics).setVisible(QueryUtils.getMetrics().isEnabled());
+        // So is the jank watchdog, which has to be turned on
+        menu.findItem(R.id.action_jank).setVisible(QueryUtils.getMetrics().isEnabled()
+                && JankMonitor.isSupported()).setChecked(mJankMonitor.isEnabled());
         return true;
     }
 
@@ -146,30 +315,84 @@ public class MainActivity extends AppCompatActivity
              *
              * 2. The user wants to reload the results to see if a new article has just come out.
              *
-             * In the first case, it is sufficient to restart the activity
-             * to issue a new server query.
-             *
-             * In the second case, we have to force the loader to be recreated from scratch:
+             * In both cases, we ask the loader to fetch only the articles published since
+             * the newest one on screen, and to merge them into the current list.
+             * If there is no loader yet, restart the activity to create it.
              */
-            if (getSupportLoaderManager().getLoader(0) != null) {
-                getSupportLoaderManager().destroyLoader(0);
+            Loader<List<Article>> loader = getSupportLoaderManager().getLoader(FEED_LOADER_ID);
+            if (loader != null) {
+                mProgressBar.setVisibility(View.VISIBLE);
+                mJankMonitor.getDetector().begin(StallDetector.Action.RELOAD);
+                ((NewsLoader) loader).refresh();
+            } else {
+                onStart();
             }
-            onStart();
+            return true;
+        }
+        if (itemID == R.id.action_metrics) {
+            showMetrics();
+            return true;
+        }
+        if (itemID == R.id.action_jank) {
+            item.setChecked(!item.isChecked());
+            mJankMonitor.setEnabled(item.isChecked());
+            mJankMonitor.start();
             return true;
         }
         return false;
     }
 
+    /*
+     * Show the metrics of the loads so far, and write them to metrics.json in the files
+     * directory of the app, from where "adb shell run-as" can read them in a debug build.
+     * The report of the jank watchdog, if it is on, is shown below them, and written to
+     * jank.txt along with the stacks of the stalls.
+     */
+    private void showMetrics() {
+        final Metrics metrics = QueryUtils.getMetrics();
+        final StallDetector detector = mJankMonitor.isEnabled() ? mJankMonitor.getDetector() : null;
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.metrics_title)
+                .setMessage(metrics.toString() + (detector != null ? "\n" + detector : ""))
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+        final File file = new File(getFilesDir(), "metrics.json");
+        final File jankFile = new File(getFilesDir(), "jank.txt");
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    metrics.writeJson(file);
+                    Log.i(LOG_TAG, "Metrics written to " + file);
+                    if (detector != null) {
+                        detector.writeReport(jankFile);
+                        Log.i(LOG_TAG, "Jank report written to " + jankFile);
+                    }
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem writing the metrics. ", e);
+                }
+            }
+        });
+    }
+
     @Override
     public Loader<List<Article>> onCreateLoader(int id, Bundle args) {
         /**
-         * Return a new instance of {@link NewsLoader}
+         * Return a new instance of {@link NewsLoader}, which requests the sections of the feed
+         * separately, or of {@link PageLoader} for the pages that follow, across all sections
          */
-        return new NewsLoader(this, QUERY);
+        if (id == PAGE_LOADER_ID) {
+            return new PageLoader(this, args);
+        }
+        return new NewsLoader(this, SECTIONS);
     }
 
     @Override
     public void onLoadFinished(Loader<List<Article>> loader, List<Article> data) {
+        if (loader.getId() == PAGE_LOADER_ID) {
+            onPageLoaded(data);
+            return;
+        }
         /*
          * As soon as the Loader has finished loading the results of the query, hide the
          * progress bar and show the list of articles. If the list is empty, or if the
@@ -177,23 +400,138 @@ public class MainActivity extends AppCompatActivity
          * saying that no results were found.
          */
         mProgressBar.setVisibility(View.GONE);
-        //Clear the Adapter from previous data download
-        mAdapter.clear();
+        // Keep the pages loaded while scrolling, below the delivered articles
+        List<Article> loaded = mFeed;
+        final LoadTimings timings = ((ArticleLoader) loader).getDeliveredTimings();
+        Runnable onCommitted = new Runnable() {
+            @Override
+            public void run() {
+                trackTimings(timings);
+            }
+        };
 
         if (data == null || data.isEmpty()) {
-            mEmptyMessage1.setText(getString(R.string.empty_view_message1));
-            mEmptyMessage2.setText(getString(R.string.empty_view_message2));
+            //Clear the Adapter from previous data download
+            showFeed(null, onCommitted);
+            mPager.reset(PublicationDate.UNKNOWN);
+            mEmptyView.setVisibility(View.VISIBLE);
+            if (isConnected()) {
+                mEmptyMessage1.setText(getString(R.string.empty_view_message1));
+                mEmptyMessage2.setText(getString(R.string.empty_view_message2));
+            } else {
+                // Nothing stored and no way to fetch anything: warn the user that they are offline
+                mEmptyMessage1.setText(getString(R.string.no_connection1));
+                mEmptyMessage2.setText(getString(R.string.no_connection2));
+            }
 
         } else {
-            // Update the Adapter. This will trigger the ListView to update too.
-            mAdapter.addAll(data);
+            mEmptyView.setVisibility(View.GONE);
+            /*
+             * Update the Adapter. Only the rows of the articles that are new, or that changed,
+             * are bound again by the RecyclerView.
+             */
+            List<Article> merged = SectionFanOut.mergeByDate(Arrays.asList(data, loaded),
+                    Integer.MAX_VALUE);
+            showFeed(merged, onCommitted);
+            // The next pages follow the articles down to which every section is there, which
+            // change as the sections arrive
+            long until = FeedPager.completeUntil(merged);
+            if (loaded.isEmpty() || until != mPager.getUntil()) {
+                if (mPager.isLoading()) {
+                    getSupportLoaderManager().destroyLoader(PAGE_LOADER_ID);
+                }
+                mPager.reset(until);
+            }
+        }
+    }
+
+    /*
+     * Replace the articles of the feed, and show them unless a search is on screen, in which
+     * case the search is run again, since it may now find more articles.
+     */
+    private void showFeed(List<Article> feed, Runnable onCommitted) {
+        mFeed = feed != null ? feed : Collections.<Article>emptyList();
+        if (mSearchQuery.isEmpty()) {
+            mAdapter.submitArticles(feed, onCommitted);
+        } else {
+            mAdapter.submitArticles(QueryUtils.getArticleIndex().search(mSearchQuery,
+                    MAX_SEARCH_RESULTS), onCommitted);
+        }
+    }
+
+    /*
+     * Show the fetched articles matching the given words, or the feed if there are none.
+     */
+    private void search(String query) {
+        mSearchQuery = query.trim();
+        if (mSearchQuery.isEmpty()) {
+            mAdapter.submitArticles(mFeed, null);
+        } else {
+            mAdapter.submitArticles(QueryUtils.getArticleIndex().search(mSearchQuery,
+                    MAX_SEARCH_RESULTS), null);
+        }
+    }
+
+    /*
+     * Complete the timings of a load of the feed once its rows are on screen, and once
+     * their thumbnails are bound.
+     */
+    private void trackTimings(final LoadTimings timings) {
+        mTimings = null;
+        final int bindCount = mAdapter.getBindCount();
+        // The rows are bound, and their thumbnails requested, on the next layout pass
+        mRecyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                mJankMonitor.getDetector().end(StallDetector.Action.INITIAL_LOAD);
+                mJankMonitor.getDetector().end(StallDetector.Action.RELOAD);
+                ThumbnailBinder<?> binder = mAdapter.getThumbnailBinder();
+                binder.setListener(MainActivity.this);
+                timings.markTextDelivered(binder.getPendingCount(),
+                        mAdapter.getBindCount() - bindCount);
+                QueryUtils.getMetrics().record(Metrics.Stage.DELIVERY,
+                        timings.getTimeToText() * 1000);
+                if (timings.getTimeToAllThumbnails() >= 0) {
+                    Log.i(LOG_TAG, "Load complete, " + timings);
+                } else {
+                    Log.i(LOG_TAG, "Articles on screen, " + timings);
+                    mTimings = timings;
+                }
+            }
+        });
+    }
+
+    /*
+     * Merge a page of articles loaded while scrolling into the list, by date, leaving out the
+     * articles that are already there.
+     */
+    private void onPageLoaded(List<Article> page) {
+        if (page == null) {
+            mPager.onPageFailed();
+            return;
+        }
+        mPager.onPageLoaded(page.size());
+        showFeed(SectionFanOut.mergeByDate(Arrays.asList(mFeed, page), Integer.MAX_VALUE),
+                null);
+    }
+
+    @Override
+    public void onRequestDone() {
+        if (mTimings != null && mTimings.markThumbnailDone()) {
+            Log.i(LOG_TAG, "Load complete, " + mTimings);
+            Log.i(LOG_TAG, "Thumbnail cache, " + QueryUtils.getThumbnailCache(this));
+            mTimings = null;
         }
     }
 
     @Override
     public void onLoaderReset(Loader<List<Article>> loader) {
+        if (loader.getId() == PAGE_LOADER_ID) {
+            // The pages already appended stay in the list
+            return;
+        }
         // When the Loader is no longer needed, clear data
-        mAdapter.clear();
+        showFeed(null, null);
     }
 
 }
@@ -0,0 +1,16 @@
+package com.example.android.news;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link JsonPullReader} when its input is not valid JSON, as opposed to the other
+ * IOExceptions, which come from the stream the input is read from.
+ */
+public class MalformedJsonException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public MalformedJsonException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.android.news;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory least-recently-used cache bounded by the total size of its values, as measured by
+ * {@link #sizeOf(Object, Object)}, rather than by the number of its entries.
+ * <p>
+ * All methods are thread safe.
+ */
+public abstract class MemoryLruCache<K, V> {
+
+    // Access-ordered: iteration starts from the least recently used entry
+    private final LinkedHashMap<K, V> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long mMaxSize;
+    private long mSize;
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /*
+     * Constructor
+     */
+    public MemoryLruCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Return the size of the given entry, in the same unit as the maximum size of the cache.
+     */
+    protected abstract int sizeOf(K key, V value);
+
+    /**
+     * Called, with the lock of the cache held, when an entry is evicted to make room
+     * for other ones.
+     */
+    protected void entryEvicted(K key, V value) {
+    }
+
+    public synchronized V get(K key) {
+        V value = mEntries.get(key);
+        if (value != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        int size = sizeOf(key, value);
+        if (size > mMaxSize) {
+            // Caching this value would evict everything else
+            remove(key);
+            return;
+        }
+        V previous = mEntries.put(key, value);
+        mSize += size;
+        if (previous != null) {
+            mSize -= sizeOf(key, previous);
+        }
+        trimToSize(mMaxSize);
+    }
+
+    public synchronized V remove(K key) {
+        V previous = mEntries.remove(key);
+        if (previous != null) {
+            mSize -= sizeOf(key, previous);
+        }
+        return previous;
+    }
+
+    public synchronized void evictAll() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(long maxSize) {
+        Iterator<Map.Entry<K, V>> iterator = mEntries.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            iterator.remove();
+            mSize -= sizeOf(eldest.getKey(), eldest.getValue());
+            mEvictionCount++;
+            entryEvicted(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    public synchronized long size() {
+        return mSize;
+    }
+
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.android.news;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics times every stage of a load of the news feed, from the request of the feed to the
+ * articles on screen, and counts the errors of each stage, so that a slow feed can be traced
+ * to the stage responsible for it. The durations of each {@link Stage} are kept in a
+ * {@link Histogram}, in microseconds.
+ * <p>
+ * A stage is timed by passing the value returned by {@link #start()} to
+ * {@link #stop(Stage, long)}. While disabled, both only read a volatile field, and nothing is
+ * recorded.
+ * <p>
+ * A snapshot of the metrics can be read with {@link #toString()}, or written as JSON with
+ * {@link #writeJson(File)}. This class does not depend on the Android framework.
+ */
+public class Metrics {
+
+    /**
+     * The stages of a load, in the order in which they happen.
+     */
+    public enum Stage {
+        // Turning the query into a URL
+        URL,
+        // Resolving the host name and opening the connection of a feed request, close to
+        // zero when a pooled connection is reused
+        CONNECT,
+        // From sending a feed request until its response headers are in
+        FIRST_BYTE,
+        // From the response headers of a feed request until its response is closed
+        BODY,
+        // Decompressing and parsing the body of a feed response, which is parsed as it
+        // arrives: the time spent waiting for its bytes is not counted, it is part of BODY
+        PARSE,
+        // Downloading a thumbnail which was not in the cache
+        THUMBNAIL_DOWNLOAD,
+        // Decoding a downloaded thumbnail
+        THUMBNAIL_DECODE,
+        // From the start of a load until its articles are on screen
+        DELIVERY,
+        // Binding a row of the list to its article, in the main thread
+        BIND
+    }
+
+    // Returned by start() while disabled
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private volatile boolean mEnabled;
+    private final Histogram[] mHistograms = new Histogram[Stage.values().length];
+    private final AtomicLongArray mErrors = new AtomicLongArray(Stage.values().length);
+
+    public Metrics(boolean enabled) {
+        mEnabled = enabled;
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new Histogram();
+        }
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Return the start time of a stage, to be passed to {@link #stop(Stage, long)}.
+     */
+    public long start() {
+        return mEnabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Record the duration of the given stage, started at the given time.
+     */
+    public void stop(Stage stage, long start) {
+        if (start != NOT_STARTED && mEnabled) {
+            mHistograms[stage.ordinal()].record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * Record the given duration of the given stage, in microseconds.
+     */
+    public void record(Stage stage, long micros) {
+        if (mEnabled) {
+            mHistograms[stage.ordinal()].record(micros);
+        }
+    }
+
+    /**
+     * Record the durations of the network stages of a completed request.
+     */
+    public void recordRequest(RequestTimings timings) {
+        if (!mEnabled) {
+            return;
+        }
+        recordIfKnown(Stage.CONNECT, timings.getConnectNanos());
+        recordIfKnown(Stage.FIRST_BYTE, timings.getTimeToFirstByteNanos());
+        recordIfKnown(Stage.BODY, timings.getBodyNanos());
+    }
+
+    /**
+     * Count one more error in the given stage.
+     */
+    public void recordError(Stage stage) {
+        if (mEnabled) {
+            mErrors.incrementAndGet(stage.ordinal());
+        }
+    }
+
+    public Histogram getHistogram(Stage stage) {
+        return mHistograms[stage.ordinal()];
+    }
+
+    public long getErrors(Stage stage) {
+        return mErrors.get(stage.ordinal());
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (Stage stage : Stage.values()) {
+            mHistograms[stage.ordinal()].reset();
+            mErrors.set(stage.ordinal(), 0);
+        }
+    }
+
+    /**
+     * Return a snapshot of the metrics as a JSON object, with one member per stage.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = getHistogram(stage);
+            if (stage.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(stage.name().toLowerCase(Locale.US)).append("\":{")
+                    .append("\"count\":").append(histogram.getCount())
+                    .append(",\"errors\":").append(getErrors(stage))
+                    .append(",\"min_us\":").append(histogram.getMin())
+                    .append(",\"mean_us\":").append(Math.round(histogram.getMean()))
+                    .append(",\"p50_us\":").append(histogram.getPercentile(50))
+                    .append(",\"p90_us\":").append(histogram.getPercentile(90))
+                    .append(",\"p99_us\":").append(histogram.getPercentile(99))
+                    .append(",\"max_us\":").append(histogram.getMax())
+                    .append('}');
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Write a snapshot of the metrics to the given file, as returned by {@link #toJson()}.
+     */
+    public void writeJson(File file) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(toJson().getBytes(UTF_8));
+        } finally {
+            output.close();
+        }
+    }
+
+    private void recordIfKnown(Stage stage, long nanos) {
+        if (nanos >= 0) {
+            mHistograms[stage.ordinal()].record(nanos / 1000);
+        }
+    }
+
+    /**
+     * Return a snapshot of the metrics, one line per stage, durations in milliseconds.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = getHistogram(stage);
+            text.append(String.format(Locale.US,
+                    "%s: %d, %d errors, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    stage.name().toLowerCase(Locale.US), histogram.getCount(),
+                    getErrors(stage), histogram.getPercentile(50) / 1000.0,
+                    histogram.getPercentile(90) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0));
+        }
+        return text.toString();
+    }
+}
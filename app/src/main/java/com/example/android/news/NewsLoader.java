@@ -1,9 +1,14 @@
 package com.example.android.news;
 
 import android.content.Context;
-import android.support.v4.content.AsyncTaskLoader;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -14,31 +19,223 @@ import java.util.List;
  * {@link Article} objects, which is the result of the web API query.
  * NewsLoader returns these results back to MainActivity in the main thread via callback method
  * onLoadFinished()
+ * <p>
+ * The first load serves the articles saved in the {@link ArticleStore} by previous runs,
+ * without waiting for the network; a network load is then started automatically, and
+ * its results are merged into the store and delivered in turn. Network loads are
+ * incremental: once some articles are stored, only the articles published since the newest
+ * of them are requested, so a refresh with nothing new transfers an empty results page.
+ * <p>
+ * Network loads request each section of the feed separately and concurrently, see
+ * {@link SectionFanOut}: the articles are delivered again every time a section arrives, and
+ * a section is only requested again once its refresh interval has elapsed, unless the load
+ * is a {@link #refresh()}. The stored articles are not refreshed at all if they have just been
+ * fetched by {@link FeedSync}.
+ * <p>
+ * The last result is kept, see {@link LoaderResultCache}: when the loader is started again,
+ * as after a rotation or when the user comes back from the browser, it is delivered right away,
+ * and the articles are only loaded again if it is older than {@link #RESULT_TIME_TO_LIVE}.
  */
-public class NewsLoader extends AsyncTaskLoader<List<Article>> {
+public class NewsLoader extends ArticleLoader {
 
     private static final String LOG_TAG = NewsLoader.class.getSimpleName();
-    private String mQuery;
+    // Age under which the articles stored by a background sync are not refreshed at startup
+    private static final long SYNC_FRESHNESS = 15 * 60 * 1000; /* milliseconds */
+    // Age under which the last result is delivered again without loading
+    public static final long RESULT_TIME_TO_LIVE = 5 * 60 * 1000; /* milliseconds */
+    // Time allowed to the requests of a load, retries included
+    private static final long LOAD_DEADLINE = 20000; /* milliseconds */
+    private final SectionFanOut mFanOut;
+    private final LoaderResultCache<List<Article>> mResultCache =
+            new LoaderResultCache<>(RESULT_TIME_TO_LIVE);
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // True once the stored articles have been served: next loads go to the network
+    private volatile boolean mStoreServed = false;
+    // True if the result being delivered comes from the store and must be refreshed
+    private volatile boolean mNetworkLoadPending = false;
+    // True if the next network load must request all the sections
+    private volatile boolean mRefreshRequested = false;
+    // Numbers of the last load started, and of the load being cancelled, see LoaderResultCache
+    private int mLoad;
+    private int mCanceledLoad;
 
-    public NewsLoader(Context context, String query) {
+    public NewsLoader(Context context, List<SectionFanOut.Section> sections) {
         super(context);
-        mQuery = query;
+        mFanOut = new SectionFanOut(sections, ArticleStore.MAX_ARTICLES);
     }
 
     @Override
     protected void onStartLoading() {
-        forceLoad();
+        List<Article> result = mResultCache.getResult();
+        if (result != null) {
+            super.deliverResult(result);
+        }
+        // A load still running delivers its result when done: do not start another one
+        if (mResultCache.shouldLoad(SystemClock.elapsedRealtime())) {
+            forceLoad();
+        }
     }
 
     @Override
-    public List<Article> loadInBackground() {
-        // Perform the HTTP request for news articles and process the response.
-        if (mQuery != null) {
+    protected void onForceLoad() {
+        // Cancels the load running, if any, before the new one is started
+        super.onForceLoad();
+        mLoad = mResultCache.onLoadStarted();
+    }
 
-            Log.i(LOG_TAG, "+++ Issuing a new server query... +++");
+    @Override
+    protected boolean onCancelLoad() {
+        boolean canceling = super.onCancelLoad();
+        if (canceling) {
+            // The load goes on in the background, and ends in onCanceled()
+            mCanceledLoad = mLoad;
+        } else {
+            // The load had not started, or was done already: its result is dropped
+            mResultCache.onLoadCanceled(mLoad);
+        }
+        return canceling;
+    }
 
-            return QueryUtils.fetchNewsArticles(mQuery);
+    @Override
+    public void onCanceled(List<Article> data) {
+        super.onCanceled(data);
+        // Which may come once a newer load has started, whose loading state is kept
+        mResultCache.onLoadCanceled(mCanceledLoad);
+    }
+
+    @Override
+    protected List<Article> loadArticles() {
+        // Perform the HTTP requests for news articles and process the responses.
+        if (!mFanOut.getSections().isEmpty()) {
+            ArticleStore store = ArticleStore.getInstance(getContext());
+            boolean connected = isConnected();
+            // The fetched articles go into the search index, after the ones of previous runs
+            QueryUtils.restoreArticleIndex(getContext());
+
+            // Serve the stored articles first, and whenever the device is offline
+            if (!mStoreServed || !connected) {
+                mStoreServed = true;
+                List<Article> stored = store.loadArticles();
+                if (!stored.isEmpty() || !connected) {
+                    Log.i(LOG_TAG, "Serving " + stored.size() + " stored articles");
+                    // Articles just synced in the background need no refresh
+                    mNetworkLoadPending = connected && !isSyncedRecently();
+                    return stored;
+                }
+            }
+
+            Log.i(LOG_TAG, "+++ Issuing new server queries... +++");
+
+            // A conditional request only makes sense if there are stored articles
+            // to serve when the server answers "not modified"
+            final List<Article> stored = store.loadArticles();
+            final HttpValidators validators =
+                    stored.isEmpty() ? null : QueryUtils.getValidators(getContext());
+            boolean force = mRefreshRequested;
+            mRefreshRequested = false;
+            List<Article> sections;
+            // The sections are fetched in parallel, under the same deadline
+            final Deadline deadline = Deadline.after(LOAD_DEADLINE);
+            try {
+                sections = mFanOut.load(new SectionFanOut.Fetcher() {
+                    @Override
+                    public FeedResult fetch(SectionFanOut.Section section) {
+                        // Only ask for what has been published since the newest stored
+                        // article of the section
+                        FeedResult result = QueryUtils.getQueryEngine().fetch(
+                                FeedSync.incrementalQuery(section, stored),
+                                validators, deadline, SystemClock.elapsedRealtime());
+                        Log.i(LOG_TAG, section.getName() + " query done, " + result);
+                        return result;
+                    }
+                }, force, new SectionFanOut.Listener() {
+                    @Override
+                    public void onSectionLoaded(SectionFanOut.Section section,
+                                                List<Article> articles) {
+                        // Show the section right away, without waiting for the other ones
+                        List<Article> merged = mergeWithStored(articles, stored);
+                        QueryUtils.getArticleRows(getContext()).prepare(merged);
+                        deliverPartialResult(merged);
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return stored;
+            }
+
+            if (sections == null || sections.isEmpty()) {
+                // Nothing new, or the requests failed:
+                // keep showing the stored articles rather than an empty list
+                return stored.isEmpty() ? sections : stored;
+            }
+            // Merged into the store as it is now, which a sync may have updated meanwhile
+            List<Article> merged = store.mergeAndSave(sections);
+            QueryUtils.saveArticleIndex(getContext());
+            return merged;
         }
         return null;
     }
+
+    /*
+     * Deliver the given articles in the main thread, while the load goes on.
+     */
+    private void deliverPartialResult(final List<Article> articles) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mResultCache.onPartialResult(articles);
+                if (isStarted()) {
+                    NewsLoader.super.deliverResult(articles);
+                }
+            }
+        });
+    }
+
+    private static List<Article> mergeWithStored(List<Article> sections, List<Article> stored) {
+        return SectionFanOut.mergeByDate(Arrays.asList(sections, stored),
+                ArticleStore.MAX_ARTICLES);
+    }
+
+    /**
+     * Fetch the articles published since the last load, and deliver them merged
+     * with the ones already delivered.
+     */
+    public void refresh() {
+        mStoreServed = true;
+        mRefreshRequested = true;
+        mResultCache.invalidate();
+        QueryUtils.getQueryEngine().invalidate();
+        forceLoad();
+    }
+
+    @Override
+    public void deliverResult(List<Article> data) {
+        // Called with the result of a load, either finished or abandoned by a reset
+        mResultCache.onLoadFinished(data, SystemClock.elapsedRealtime());
+        super.deliverResult(data);
+
+        if (mNetworkLoadPending && !isReset()) {
+            // The stored articles are on screen: now refresh them from the network
+            mNetworkLoadPending = false;
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mFanOut.shutdown();
+    }
+
+    private boolean isSyncedRecently() {
+        long lastSyncTime = QueryUtils.getSyncStats(getContext()).getLastSyncTime();
+        return System.currentTimeMillis() - lastSyncTime < SYNC_FRESHNESS;
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager cm = (ConnectivityManager) getContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = cm.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnectedOrConnecting();
+    }
 }
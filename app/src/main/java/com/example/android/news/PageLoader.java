@@ -0,0 +1,71 @@
+package com.example.android.news;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.v4.app.LoaderManager;
+import android.util.Log;
+
+import java.util.List;
+
+/**
+ * PageLoader loads the pages of the news feed that follow the ones delivered by
+ * {@link NewsLoader}, one at a time, as the user scrolls towards the end of the feed.
+ * <p>
+ * Pages are only loaded on request, see {@link #load(LoaderManager, int, GuardianQuery,
+ * LoaderManager.LoaderCallbacks)}, as decided by {@link FeedPager}. Every page has a loader of
+ * its own, which never delivers the result of another page. Each result holds the articles
+ * of a single page, to be appended to the feed, or is null if the page could not be fetched.
+ */
+public class PageLoader extends ArticleLoader {
+
+    private static final String LOG_TAG = PageLoader.class.getSimpleName();
+    // Time allowed to the request of a page, retries included
+    private static final long PAGE_DEADLINE = 15000; /* milliseconds */
+    // Key of the URL of the page in the arguments of the loader
+    private static final String ARG_PAGE = "page";
+
+    private final GuardianQuery mPage;
+    private boolean mLoadStarted = false;
+
+    /**
+     * Constructor of the loader of the page given by its arguments, as made by
+     * {@link #load(LoaderManager, int, GuardianQuery, LoaderManager.LoaderCallbacks)}.
+     */
+    public PageLoader(Context context, Bundle args) {
+        super(context);
+        mPage = GuardianQuery.parse(args.getString(ARG_PAGE));
+    }
+
+    /**
+     * Load the given page of the feed, in the background, with a new loader of the given id,
+     * created by the given callbacks. The loader of the page requested before, if any, is
+     * replaced: its result is not delivered anymore, even if it was still loading.
+     */
+    public static void load(LoaderManager loaderManager, int id, GuardianQuery page,
+                            LoaderManager.LoaderCallbacks<List<Article>> callbacks) {
+        Bundle args = new Bundle();
+        args.putString(ARG_PAGE, page.toUrl());
+        loaderManager.restartLoader(id, args, callbacks);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        // The page is loaded once: once it is delivered, the LoaderManager keeps it
+        if (!mLoadStarted) {
+            mLoadStarted = true;
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected List<Article> loadArticles() {
+        GuardianQuery page = mPage;
+        Log.i(LOG_TAG, "+++ Loading page " + page + "... +++");
+        FeedResult result = QueryUtils.getQueryEngine().fetch(page, null,
+                Deadline.after(PAGE_DEADLINE), SystemClock.elapsedRealtime());
+        Log.i(LOG_TAG, "Page done, " + result);
+        QueryUtils.saveArticleIndex(getContext());
+        return result.getArticles();
+    }
+}
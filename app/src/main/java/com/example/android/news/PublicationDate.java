@@ -0,0 +1,231 @@
+package com.example.android.news;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Converts the publication dates of the articles between the ISO-8601 datetimes of the API
+ * (e.g. 2017-06-20T14:41:01Z) and milliseconds since the epoch, which is how they are kept
+ * in {@link Article}, and formats them for display.
+ * <p>
+ * Parsing runs once per article of every response, so it is done by hand, without
+ * allocating. Formatting for display is left until an article is shown, and goes through a
+ * formatter kept for the locale in use. All methods are thread safe.
+ */
+public final class PublicationDate {
+
+    /**
+     * Value of a publication date which is missing or could not be parsed. It is lower than
+     * any valid date, so articles without a date sort last when sorted newest first.
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * MILLIS_PER_SECOND;
+
+    // Date formatter of the current thread, along with the locale it was made for
+    private static final ThreadLocal<DisplayFormat> sDisplayFormat =
+            new ThreadLocal<DisplayFormat>() {
+                @Override
+                protected DisplayFormat initialValue() {
+                    return new DisplayFormat();
+                }
+            };
+
+    private PublicationDate() {
+    }
+
+    /**
+     * Parse the given ISO-8601 datetime, as returned by the API. Fractions of a second, and
+     * offsets from UTC such as +01:00, are accepted as well. Return {@link #UNKNOWN} if the
+     * datetime is null or malformed.
+     */
+    public static long parse(String datetime) {
+        if (datetime == null || datetime.length() < 20) {
+            return UNKNOWN;
+        }
+        int year = digits(datetime, 0, 4);
+        int month = digits(datetime, 5, 2);
+        int day = digits(datetime, 8, 2);
+        int hour = digits(datetime, 11, 2);
+        int minute = digits(datetime, 14, 2);
+        int second = digits(datetime, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59
+                || datetime.charAt(4) != '-' || datetime.charAt(7) != '-'
+                || datetime.charAt(10) != 'T' || datetime.charAt(13) != ':'
+                || datetime.charAt(16) != ':') {
+            return UNKNOWN;
+        }
+
+        int index = 19;
+        int millis = 0;
+        if (datetime.charAt(index) == '.') {
+            // Only the milliseconds are kept of the fraction
+            int scale = 100;
+            index++;
+            int start = index;
+            while (index < datetime.length() && isDigit(datetime.charAt(index))) {
+                millis += (datetime.charAt(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+            if (index == start || index == datetime.length()) {
+                return UNKNOWN;
+            }
+        }
+
+        int offset;
+        char zone = datetime.charAt(index);
+        if (zone == 'Z' && index + 1 == datetime.length()) {
+            offset = 0;
+        } else if ((zone == '+' || zone == '-') && index + 6 == datetime.length()
+                && datetime.charAt(index + 3) == ':') {
+            int offsetHours = digits(datetime, index + 1, 2);
+            int offsetMinutes = digits(datetime, index + 4, 2);
+            if (offsetHours < 0 || offsetMinutes < 0) {
+                return UNKNOWN;
+            }
+            offset = (offsetHours * 60 + offsetMinutes) * 60;
+            if (zone == '-') {
+                offset = -offset;
+            }
+        } else {
+            return UNKNOWN;
+        }
+
+        long seconds = daysFromCivil(year, month, day) * 24 * 60 * 60
+                + hour * 60 * 60 + minute * 60 + second - offset;
+        return seconds * MILLIS_PER_SECOND + millis;
+    }
+
+    /**
+     * Return the given date as an ISO-8601 datetime in UTC, to the second, as understood by
+     * the API (e.g. 2017-06-20T14:41:01Z), or null if the date is {@link #UNKNOWN}.
+     */
+    public static String format(long time) {
+        if (time == UNKNOWN) {
+            return null;
+        }
+        long days = floorDiv(time, MILLIS_PER_DAY);
+        int secondOfDay = (int) ((time - days * MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+
+        // Inverse of daysFromCivil
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] chars = "0000-00-00T00:00:00Z".toCharArray();
+        putDigits(chars, 0, 4, (int) year);
+        putDigits(chars, 5, 2, month);
+        putDigits(chars, 8, 2, day);
+        putDigits(chars, 11, 2, secondOfDay / 3600);
+        putDigits(chars, 14, 2, secondOfDay / 60 % 60);
+        putDigits(chars, 17, 2, secondOfDay % 60);
+        return new String(chars);
+    }
+
+    /**
+     * Return the given date in the short form shown in the news feed, for the default locale
+     * (06/20/17 in the United States, 20/06/17 elsewhere), or an empty string if the date is
+     * {@link #UNKNOWN}. As the API gives it, the date is the one in UTC.
+     */
+    public static String formatForDisplay(long time) {
+        if (time == UNKNOWN) {
+            return "";
+        }
+        return sDisplayFormat.get().format(time, Locale.getDefault());
+    }
+
+    /*
+     * Return the number of days between the epoch and the given date of the proleptic
+     * Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        // Count the years from March, so that the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /*
+     * Return the value of the given count of decimal digits at the given index,
+     * or -1 if any of them is not a digit.
+     */
+    private static int digits(String string, int index, int count) {
+        int value = 0;
+        for (int i = index; i < index + count; i++) {
+            char c = string.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static void putDigits(char[] chars, int index, int count, int value) {
+        for (int i = index + count - 1; i >= index; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static long floorDiv(long a, long b) {
+        long quotient = a / b;
+        return (a % b != 0 && (a < 0) != (b < 0)) ? quotient - 1 : quotient;
+    }
+
+    /*
+     * Formatter of the dates shown in the news feed. A SimpleDateFormat cannot be shared
+     * between threads, so every thread has its own, made again only when the locale changes.
+     */
+    private static class DisplayFormat {
+        private Locale mLocale;
+        private DateFormat mFormat;
+        private final Date mDate = new Date();
+
+        String format(long time, Locale locale) {
+            if (!locale.equals(mLocale)) {
+                mFormat = new SimpleDateFormat(Locale.US.equals(locale) ? "MM/dd/yy"
+                        : "dd/MM/yy", locale);
+                mFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+                mLocale = locale;
+            }
+            mDate.setTime(time);
+            return mFormat.format(mDate);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.android.news;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * QueryEngine runs the queries of the feed for all the loaders of the application, so that
+ * the same results are never requested twice at the same time, nor again while they are
+ * still fresh:
+ * <ul>
+ * <li>the complete results of a query are kept for the time to live given to the
+ * constructor, under the {@link GuardianQuery#getCacheKey() cache key} of the query, so that
+ * equivalent queries share them;</li>
+ * <li>a query asked for while the same query is being requested waits for that request,
+ * rather than sending its own.</li>
+ * </ul>
+ * A query waiting for the request of another one gives up when its own deadline expires,
+ * but shares the outcome of the request otherwise: a request cut short by its deadline fails
+ * for all the queries waiting for it. Conditional requests, with validators, are only shared
+ * with other conditional requests, since they may be answered "not modified".
+ * <p>
+ * Results are shared, and must not be modified. Times are given by the caller, in
+ * milliseconds from any fixed origin. This class is thread safe, and does not depend on the
+ * Android framework.
+ */
+public class QueryEngine {
+
+    /**
+     * Sends the request of a query, see {@link QueryUtils#fetchNewsArticles(String,
+     * HttpValidators, Deadline)}.
+     */
+    public interface Fetcher {
+        FeedResult fetch(String url, HttpValidators validators, Deadline deadline);
+    }
+
+    // Suffix of the keys of the conditional requests being sent
+    private static final String CONDITIONAL = " (conditional)";
+
+    private final Fetcher mFetcher;
+    private final long mTimeToLive;
+    // Results by cache key, least recently used first
+    private final LinkedHashMap<String, CachedResult> mResults;
+    // Requests being sent, by cache key
+    private final Map<String, FutureTask<FeedResult>> mRequests = new HashMap<>();
+
+    private int mHitCount;
+    private int mCoalescedCount;
+    private int mRequestCount;
+
+    /*
+     * Constructor. The time to live is in milliseconds.
+     */
+    public QueryEngine(Fetcher fetcher, long timeToLive, final int maxResults) {
+        mFetcher = fetcher;
+        mTimeToLive = timeToLive;
+        mResults = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > maxResults;
+            }
+        };
+    }
+
+    /**
+     * Return the results of the given query, from the cache if they are fresh at the given
+     * time, from the request of an equivalent query if one is being sent, or else from a new
+     * request, sent from the calling thread. The validators, which may be null, are those of
+     * {@link QueryUtils#fetchNewsArticles(String, HttpValidators, Deadline)}.
+     */
+    public FeedResult fetch(final GuardianQuery query, final HttpValidators validators,
+                            final Deadline deadline, long now) {
+        String key = query.getCacheKey();
+        String requestKey = validators != null ? key + CONDITIONAL : key;
+        FutureTask<FeedResult> request;
+        boolean sending = false;
+        synchronized (this) {
+            CachedResult cached = mResults.get(key);
+            if (cached != null && now - cached.mTime < mTimeToLive) {
+                mHitCount++;
+                return cached.mResult;
+            }
+            request = mRequests.get(requestKey);
+            if (request == null) {
+                request = new FutureTask<>(new Callable<FeedResult>() {
+                    @Override
+                    public FeedResult call() {
+                        return mFetcher.fetch(query.toUrl(), validators, deadline);
+                    }
+                });
+                mRequests.put(requestKey, request);
+                mRequestCount++;
+                sending = true;
+            } else {
+                mCoalescedCount++;
+            }
+        }
+
+        if (!sending) {
+            return await(request, deadline);
+        }
+        request.run();
+        FeedResult result = null;
+        try {
+            result = request.get();
+            return result;
+        } catch (ExecutionException e) {
+            // Thrown by the fetcher, which does not throw checked exceptions
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw (RuntimeException) e.getCause();
+        } catch (InterruptedException e) {
+            // Not possible: the request has run
+            throw new AssertionError(e);
+        } finally {
+            synchronized (this) {
+                // Cached before the request is forgotten, so that an equivalent query
+                // always finds one or the other
+                if (result != null && result.getArticles() != null && result.isComplete()) {
+                    mResults.put(key, new CachedResult(result, now));
+                }
+                mRequests.remove(requestKey);
+            }
+        }
+    }
+
+    /**
+     * Forget the results in the cache, so that the next queries are requested again.
+     */
+    public synchronized void invalidate() {
+        mResults.clear();
+    }
+
+    // Number of queries answered from the cache
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    // Number of queries which waited for the request of another one
+    public synchronized int coalescedCount() {
+        return mCoalescedCount;
+    }
+
+    // Number of requests sent
+    public synchronized int requestCount() {
+        return mRequestCount;
+    }
+
+    private static FeedResult await(FutureTask<FeedResult> request, Deadline deadline) {
+        try {
+            return request.get(deadline.getRemaining(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // The load has been cancelled
+            Thread.currentThread().interrupt();
+            return FeedResult.failed();
+        } catch (ExecutionException | TimeoutException e) {
+            return FeedResult.failed();
+        }
+    }
+
+    private static class CachedResult {
+        final FeedResult mResult;
+        // Time of the start of the request
+        final long mTime;
+
+        CachedResult(FeedResult result, long time) {
+            mResult = result;
+            mTime = time;
+        }
+    }
+}
@@ -1,30 +1,22 @@
 package com.example.android.news;
 
+import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.text.TextUtils;
+import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.Charset;
-import java.text.DateFormat;
-import java.text.FieldPosition;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 
 /**
@@ -44,289 +36,506 @@ public class QueryUtils {
     private QueryUtils() {
     }
 
-    public static List<Article> fetchNewsArticles(String query) {
+    /**
+     * Measures the memory held by a decoded thumbnail.
+     */
+    private static final ThumbnailCache.Sizer<Bitmap> BITMAP_SIZER =
+            new ThumbnailCache.Sizer<Bitmap>() {
+                @Override
+                public int sizeOf(Bitmap image) {
+                    return BitmapPool.sizeOf(image);
+                }
+            };
 
-        // Turn String query into a URL
-        URL queryURL = createURL(query);
+    // Share of the heap available to the decoded thumbnails
+    private static final int THUMBNAIL_MEMORY_CACHE_FRACTION = 8;
+    private static final long THUMBNAIL_DISK_CACHE_BYTES = 10 * 1024 * 1024;
+    // Memory held by the thumbnails waiting to be reused
+    private static final long BITMAP_POOL_BYTES = 1024 * 1024;
 
-        // Perform HTTP request to the URL and receive a JSON response back
-        String JSONResponse = null;
-        try {
-            JSONResponse = makeHTTPRequest(queryURL);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem making the HTTP request. ", e);
-        }
+    /**
+     * Logs the responses which could not be parsed completely.
+     */
+    private static final FeedReader.ErrorListener PARSE_ERROR_LOGGER =
+            new FeedReader.ErrorListener() {
+                @Override
+                public void onParseError(IOException e) {
+                    Log.e(LOG_TAG, "Problem parsing the JSON results", e);
+                }
+            };
 
-        // Extract relevant fields from the JSON response and create a list of articles
-        List<Article> newsFeed = extractFeatureFromJson(JSONResponse);
+    private static final int CONNECT_TIMEOUT = 15000; /* milliseconds */
+    private static final int READ_TIMEOUT = 10000; /* milliseconds */
 
-        return newsFeed;
-    }
+    /**
+     * Retries of the feed requests which failed on the network or on the server.
+     */
+    static final RetryPolicy FEED_RETRY_POLICY = new RetryPolicy(3, 250, 2000);
+
+    // Retries, hedging and circuit breaking of the thumbnail requests, see ThumbnailDownloader
+    private static final RetryPolicy THUMBNAIL_RETRY_POLICY = new RetryPolicy(2, 250, 250);
+    private static final long THUMBNAIL_HEDGE_DELAY = 1500; /* milliseconds */
+    private static final long THUMBNAIL_DEADLINE = 10000; /* milliseconds */
+    private static final int THUMBNAIL_FAILURE_THRESHOLD = 5;
+    private static final long THUMBNAIL_OPEN_CIRCUIT_DURATION = 30000; /* milliseconds */
+
+    private static HttpClient sHttpClient;
+    private static Metrics sMetrics;
+    private static BitmapPool sBitmapPool;
+    private static BitmapDecoder sBitmapDecoder;
+    private static ThumbnailCache<Bitmap> sThumbnailCache;
 
     /**
-     * Returns new URL object from the given string URL.
+     * Return the HTTP client shared by the whole application, so that the requests of the feed
+     * and of the thumbnails reuse the same pool of connections.
      */
-    private static URL createURL(String stringURL) {
-        URL url = null;
-        try {
-            url = new URL(stringURL);
-        } catch (MalformedURLException e) {
-            Log.e(LOG_TAG, "Error creating URL. ", e);
+    public static synchronized HttpClient getHttpClient() {
+        if (sHttpClient == null) {
+            sHttpClient = new HttpClient(CONNECT_TIMEOUT, READ_TIMEOUT);
+            sHttpClient.setListener(new HttpClient.Listener() {
+                @Override
+                public void onResponseClosed(URL url, int responseCode, RequestTimings timings) {
+                    Log.d(LOG_TAG, responseCode + " " + url.getPath() + ", " + timings);
+                }
+            });
         }
-        return url;
+        return sHttpClient;
     }
 
     /**
-     * Make an HTTP request to the given URL and return a JSON response.
+     * Return the metrics of the loads of the feed, shared by the whole application.
+     * They are only recorded in debug builds.
      */
-    private static String makeHTTPRequest(URL url) throws IOException {
+    public static synchronized Metrics getMetrics() {
+        if (sMetrics == null) {
+            sMetrics = new Metrics(BuildConfig.DEBUG);
+        }
+        return sMetrics;
+    }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
-        String JSONResponse = "";
+    private static JankMonitor sJankMonitor;
 
-        if (url == null) {
-            return null;
+    /**
+     * Return the monitor of the frames of the main thread, off until enabled.
+     */
+    public static synchronized JankMonitor getJankMonitor() {
+        if (sJankMonitor == null) {
+            sJankMonitor = new JankMonitor();
         }
+        return sJankMonitor;
+    }
 
-        try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            if (urlConnection.getResponseCode() == 200) {
-                // If the request was successful (response code 200), then read the
-                // input stream and store its whole content into a String.
-                inputStream = urlConnection.getInputStream();
-                JSONResponse = readFromStream(inputStream);
+    /**
+     * Return the decoder of the thumbnails shared by the whole application, which decodes them
+     * at the size of the thumbnail view of the news feed.
+     */
+    public static synchronized BitmapDecoder getBitmapDecoder(Context context) {
+        if (sBitmapDecoder == null) {
+            Resources resources = context.getResources();
+            sBitmapPool = new BitmapPool(BITMAP_POOL_BYTES);
+            // Thumbnails are JPEG images, which have no transparency
+            sBitmapDecoder = new BitmapDecoder(
+                    resources.getDimensionPixelSize(R.dimen.listItem_image_width),
+                    resources.getDimensionPixelSize(R.dimen.listItem_image_height),
+                    true, sBitmapPool);
+        }
+        return sBitmapDecoder;
+    }
 
-            } else {
-                // If the request was not successful, print the error code in the Logcat
-                Log.e(LOG_TAG, "Connection to server has failed with response code: "
-                        + urlConnection.getResponseCode());
+    /**
+     * Return the cache of thumbnails shared by the whole application, creating it if needed.
+     */
+    public static synchronized ThumbnailCache<Bitmap> getThumbnailCache(Context context) {
+        if (sThumbnailCache == null) {
+            long memoryBytes = Runtime.getRuntime().maxMemory() / THUMBNAIL_MEMORY_CACHE_FRACTION;
+            File diskDirectory = new File(context.getApplicationContext().getCacheDir(),
+                    "thumbnails");
+            BitmapDecoder decoder = getBitmapDecoder(context);
+            // The thumbnails evicted from memory lend their pixels to the next ones
+            ThumbnailCache.Recycler<Bitmap> recycler = new ThumbnailCache.Recycler<Bitmap>() {
+                @Override
+                public void recycle(Bitmap image) {
+                    sBitmapPool.put(image);
+                }
+            };
+            try {
+                sThumbnailCache = new ThumbnailCache<>(memoryBytes, diskDirectory,
+                        THUMBNAIL_DISK_CACHE_BYTES, BITMAP_SIZER, decoder, recycler);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem opening the thumbnail disk cache. ", e);
+                try {
+                    // Fall back to a memory-only cache
+                    sThumbnailCache = new ThumbnailCache<>(memoryBytes, null, 0,
+                            BITMAP_SIZER, decoder, recycler);
+                } catch (IOException impossible) {
+                    throw new AssertionError(impossible);
+                }
             }
+        }
+        return sThumbnailCache;
+    }
 
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving JSON response. ", e);
+    /**
+     * Return a new downloader of thumbnails, backed by the shared HTTP client, decoder and
+     * cache. Failed downloads are retried once, a slow download is hedged with a second
+     * request, and the downloads from a host which keeps failing are skipped for a while.
+     */
+    public static ThumbnailDownloader<Bitmap> newThumbnailDownloader(Context context) {
+        ThumbnailDownloader<Bitmap> downloader = new ThumbnailDownloader<>(getHttpClient(),
+                getBitmapDecoder(context), getThumbnailCache(context),
+                ThumbnailDownloader.DEFAULT_CONCURRENCY,
+                ThumbnailDownloader.DEFAULT_PER_HOST_LIMIT);
+        downloader.setMetrics(getMetrics());
+        downloader.setRetryPolicy(THUMBNAIL_RETRY_POLICY);
+        downloader.setHedgeDelay(THUMBNAIL_HEDGE_DELAY);
+        downloader.setTimeout(THUMBNAIL_DEADLINE);
+        downloader.setCircuitBreaking(THUMBNAIL_FAILURE_THRESHOLD,
+                THUMBNAIL_OPEN_CIRCUIT_DURATION);
+        return downloader;
+    }
 
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+    // Articles which can be searched on the device, the oldest being dropped first
+    private static final int MAX_INDEXED_ARTICLES = 2000;
+    // Guards the file of the search index, which is read and written outside of the class lock
+    private static final Object ARTICLE_INDEX_LOCK = new Object();
+
+    private static ArticleIndex sArticleIndex;
+    private static boolean sArticleIndexRestored;
+    private static long sArticleIndexSavedVersion = -1;
+
+    /**
+     * Return the search index of the articles fetched so far, shared by the whole application.
+     * Every article fetched by {@link #fetchNewsArticles(String, HttpValidators, Deadline)}
+     * is added to it.
+     */
+    public static synchronized ArticleIndex getArticleIndex() {
+        if (sArticleIndex == null) {
+            sArticleIndex = new ArticleIndex(MAX_INDEXED_ARTICLES);
+        }
+        return sArticleIndex;
+    }
+
+    /**
+     * Add the articles saved by {@link #saveArticleIndex(Context)} to the search index, or the
+     * stored articles if nothing has been saved yet. Only the first call reads them: it must
+     * be made before any fetch, and not from the main thread.
+     */
+    public static void restoreArticleIndex(Context context) {
+        synchronized (ARTICLE_INDEX_LOCK) {
+            if (sArticleIndexRestored) {
+                return;
             }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies that an IOException
-                // could be thrown.
-                inputStream.close();
+            sArticleIndexRestored = true;
+            List<Article> articles;
+            try {
+                articles = ArticleCodec.read(getArticleIndexFile(context));
+            } catch (IOException e) {
+                articles = ArticleStore.getInstance(context).loadArticles();
             }
+            getArticleIndex().addAll(articles);
+            Log.i(LOG_TAG, "Search index restored, " + articles.size() + " articles");
         }
-
-        return JSONResponse;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the
-     * whole JSON response from the server.
+     * Save the articles of the search index, if it has changed since it was last saved,
+     * so that they can be searched after a restart. Not to be called from the main thread.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-
-        /** Create a new instance of {@link StringBuilder}*/
-        StringBuilder output = new StringBuilder();
-
-        if (inputStream != null) {
-            /** Create a new instance of {@link InputStreamReader} */
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream,
-                    Charset.forName("UTF-8"));
-            /** Create a new instance of {@link BufferedReader}*/
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-            // Read the first line and store it into a string
-            String line = bufferedReader.readLine();
-            // As long as the next line is non-null, append the next line to the output string
-            while (line != null) {
-                output.append(line);
-                // Read next line
-                line = bufferedReader.readLine();
+    public static void saveArticleIndex(Context context) {
+        synchronized (ARTICLE_INDEX_LOCK) {
+            ArticleIndex index = getArticleIndex();
+            long version = index.getVersion();
+            // Until restored, the index would replace the saved articles with fewer of them
+            if (!sArticleIndexRestored || version == sArticleIndexSavedVersion) {
+                return;
+            }
+            try {
+                ArticleCodec.write(index.getArticles(), getArticleIndexFile(context));
+                sArticleIndexSavedVersion = version;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem saving the search index. ", e);
             }
         }
-        return output.toString();
     }
 
+    private static File getArticleIndexFile(Context context) {
+        return new File(context.getApplicationContext().getFilesDir(), "search.snapshot");
+    }
+
+    private static HttpValidators sValidators;
+    private static SyncStats sSyncStats;
+
     /**
-     * Return a list of {@link Article} objects that has been built up from
-     * parsing the given JSON response.
+     * Return the cache validators of the feed requests, creating them if needed.
      */
-    private static List<Article> extractFeatureFromJson(String JSONResponse) {
+    public static synchronized HttpValidators getValidators(Context context) {
+        if (sValidators == null) {
+            sValidators = new HttpValidators(new File(
+                    context.getApplicationContext().getCacheDir(), "validators.properties"));
+        }
+        return sValidators;
+    }
 
-        if (TextUtils.isEmpty(JSONResponse)) {
-            // If the JSON string is empty or null, then return early.
-            return null;
+    /**
+     * Return the statistics of the background syncs of the feed, creating them if needed.
+     */
+    public static synchronized SyncStats getSyncStats(Context context) {
+        if (sSyncStats == null) {
+            sSyncStats = new SyncStats(new File(
+                    context.getApplicationContext().getFilesDir(), "sync.properties"));
         }
+        return sSyncStats;
+    }
 
-        // Create empty arraylist to be filled with data obtained from parsing JSON response
-        ArrayList<Article> articlesList = new ArrayList<>();
+    private static ArticleRows sArticleRows;
+    // Locale the dates of the rows are formatted for
+    private static Locale sArticleRowsLocale;
 
-        // Try to parse the JSONResponse. If there's a problem with the way the JSON string
-        // is formatted, a JSONException exception object will be thrown.
-        // Catch the exception so the app doesn't crash, and print the error message to the logs.
-        try {
-            JSONObject jsonObject = new JSONObject(JSONResponse);
-            JSONObject response = jsonObject.getJSONObject("response");
-            JSONArray results = response.getJSONArray("results");
-
-            for (int i = 0; i < results.length(); i++) {
-                JSONObject item = results.getJSONObject(i);
-                if (item.has("type")) {
-                    // Filter out anything that is not an article
-                    if (item.getString("type").equals("article")) {
-
-                        // Get section name
-                        String section = "";
-                        if (item.has("sectionName")) {
-                            section = item.getString("sectionName");
-                        }
-
-                        /*
-                         * Get date of publication. Requires conversion from
-                         * Datetime format (combined date and time in UTC
-                         * according to ISO-8601) to a more readable date format.
-                         */
-                        String formattedDate = "";
-
-                        if (item.has("webPublicationDate")) {
-                            // Get datetime string
-                            String datetime = item.getString("webPublicationDate");
-                            DateFormat dfInput = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-                            // Parse string into a date
-                            Date date = null;
-                            try {
-                                date = dfInput.parse(datetime);
-                            } catch (ParseException e) {
-                                Log.e(LOG_TAG, "Problem parsing datetime. ", e);
-                            }
-                            // Represent the date in a convenient format
-                            if (date != null) {
-                                StringBuffer sb = new StringBuffer();
-                                if (Locale.getDefault() == Locale.US) {
-                                    DateFormat dfOutput = new SimpleDateFormat("MM/dd/yy", Locale.US);
-                                    dfOutput.format(date, sb, // appendable
-                                            new FieldPosition(SimpleDateFormat.DATE_FIELD));
-                                } else {
-                                    DateFormat dfOutput = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
-                                    dfOutput.format(date, sb, // appendable
-                                            new FieldPosition(SimpleDateFormat.DATE_FIELD));
-                                }
-                                formattedDate = sb.toString();
-                            }
-                        }
-
-                        // Get title
-                        String title = "";
-                        if (item.has("webTitle")) {
-                            title = item.getString("webTitle");
-                        }
-
-                        // Get link to article
-                        String link = "";
-                        if (item.has("webUrl")) {
-                            link = item.getString("webUrl");
-                        }
-
-                        // Get authors
-                        String authors = "";
-                        JSONArray tags = item.getJSONArray("tags");
-                        if(tags.length() > 0) {
-                            JSONObject firstAuthor = tags.getJSONObject(0);
-                            if (firstAuthor.has("webTitle")) {
-                                if (tags.length() > 1) {
-                                    authors = firstAuthor.getString("webTitle") + ", ...";
-                                } else if (tags.length() == 1) {
-                                    authors = firstAuthor.getString("webTitle");
-                                }
-                            }
-                        }
-
-                        // Get thumbnail resource URL
-                        Bitmap thumbnail = null;
-                        JSONObject fields = item.getJSONObject("fields");
-                        String thumbnailURLString = fields.getString("thumbnail");
-                        URL thumbnailURL = createURL(thumbnailURLString);
-                        try {
-                            thumbnail = downloadBitmapFromURL(thumbnailURL);
-                        } catch (IOException e) {
-                            Log.e(LOG_TAG, "Problem retrieving the bitmap image. ", e);
-                        }
-
-                        /** Create a new {@link Article} object */
-                        Article article = new Article(title, authors, formattedDate, section, link);
-
-                        if (thumbnail != null) {
-                            article.setThumbnail(thumbnail);
-                        }
-
-                        articlesList.add(article);
-                    }
-                }
-            }
+    /**
+     * Return the rows of the articles of the list, see {@link ArticleRows}, made again
+     * from scratch when the locale has changed.
+     */
+    public static synchronized ArticleRows getArticleRows(Context context) {
+        if (sArticleRows == null) {
+            Context appContext = context.getApplicationContext();
+            Map<String, Integer> colors = new HashMap<>();
+            colors.put(MainActivity.SECTION_NAME1,
+                    ContextCompat.getColor(appContext, R.color.colorSectionTechnology));
+            colors.put(MainActivity.SECTION_NAME2,
+                    ContextCompat.getColor(appContext, R.color.colorSectionScience));
+            colors.put(MainActivity.SECTION_NAME3,
+                    ContextCompat.getColor(appContext, R.color.colorSectionEducation));
+            colors.put(MainActivity.SECTION_NAME4,
+                    ContextCompat.getColor(appContext, R.color.colorSectionEnvironment));
+            sArticleRows = new ArticleRows(colors);
+            sArticleRowsLocale = Locale.getDefault();
+        } else if (!sArticleRowsLocale.equals(Locale.getDefault())) {
+            sArticleRows.clear();
+            sArticleRowsLocale = Locale.getDefault();
+        }
+        return sArticleRows;
+    }
+
+    // Time during which the results of a query are served again without a request
+    private static final long QUERY_RESULT_TIME_TO_LIVE = 60 * 1000; /* milliseconds */
+    private static final int MAX_CACHED_QUERIES = 32;
+
+    private static QueryEngine sQueryEngine;
 
-        } catch (JSONException e) {
-            // If an error is thrown when executing any of the above statements in the "try" block,
-            // catch the exception here, so the app doesn't crash. Print a log message
-            // with the message from the exception.
-            Log.e(LOG_TAG, "Problem parsing the JSON results", e);
+    /**
+     * Return the engine through which the loaders run their queries, see {@link QueryEngine}.
+     */
+    public static synchronized QueryEngine getQueryEngine() {
+        if (sQueryEngine == null) {
+            sQueryEngine = new QueryEngine(new QueryEngine.Fetcher() {
+                @Override
+                public FeedResult fetch(String url, HttpValidators validators,
+                                        Deadline deadline) {
+                    return fetchNewsArticles(url, validators, deadline);
+                }
+            }, QUERY_RESULT_TIME_TO_LIVE, MAX_CACHED_QUERIES);
         }
+        return sQueryEngine;
+    }
 
-        return articlesList;
+    /**
+     * Query the web API and return the list of articles.
+     * Thumbnails are not downloaded here: each {@link Article} only carries the URL
+     * of its thumbnail, so that the list can be displayed as soon as possible.
+     * <p>
+     * If validators are given, the request is made conditional on the feed having changed
+     * since the last successful response: if it has not, the response body is empty and
+     * the returned {@link FeedResult} is "not modified". Pass null validators when the
+     * articles of the previous response are not available anymore.
+     */
+    public static FeedResult fetchNewsArticles(String query, HttpValidators validators) {
+        return fetchNewsArticles(query, validators, Deadline.NONE);
     }
 
-    /*
-     * Download bitmap image from specified URL
+    /**
+     * Query the web API as above, giving up when the given deadline expires.
+     * A request which fails on the network or on the server is retried, as long as the
+     * deadline leaves time for it, see {@link #FEED_RETRY_POLICY}.
      */
-    private static Bitmap downloadBitmapFromURL(URL sourceURL) throws IOException {
-        Bitmap bitmap = null;
+    public static FeedResult fetchNewsArticles(String query, HttpValidators validators,
+                                               Deadline deadline) {
 
-        if (sourceURL == null) {
-            return null;
+        // Turn String query into a URL
+        Metrics metrics = getMetrics();
+        long start = metrics.start();
+        URL queryURL = createURL(query);
+        metrics.stop(Metrics.Stage.URL, start);
+        if (queryURL == null) {
+            metrics.recordError(Metrics.Stage.URL);
+            return FeedResult.failed();
         }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        // Perform HTTP request to the URL and parse the JSON response as it comes in,
+        // again if it fails and there is time for it
+        for (int attempt = 1; ; attempt++) {
+            try {
+                FeedResult newsFeed = makeHTTPRequest(queryURL, validators, deadline);
+                if (newsFeed.getArticles() != null) {
+                    getArticleIndex().addAll(newsFeed.getArticles());
+                }
+                return newsFeed;
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem making the HTTP request, attempt " + attempt + ". ", e);
+            }
+            long delay = FEED_RETRY_POLICY.getDelay(attempt);
+            if (delay < 0 || delay >= deadline.getRemaining()) {
+                return FeedResult.failed();
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                // The load has been cancelled
+                Thread.currentThread().interrupt();
+                return FeedResult.failed();
+            }
+        }
+    }
+
+    /**
+     * Returns new URL object from the given string URL.
+     */
+    public static URL createURL(String stringURL) {
+        URL url = null;
         try {
-            urlConnection = (HttpURLConnection) sourceURL.openConnection();
-            urlConnection.setReadTimeout(10000 /* milliseconds */);
-            urlConnection.setConnectTimeout(15000 /* milliseconds */);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            if (urlConnection.getResponseCode() == 200) {
-                // If the request was successful (response code 200), then read the
-                // input stream and download the bitmap image.
-                inputStream = urlConnection.getInputStream();
-                if (inputStream != null) {
-                    bitmap = BitmapFactory.decodeStream(inputStream);
+            url = new URL(stringURL);
+        } catch (MalformedURLException e) {
+            Log.e(LOG_TAG, "Error creating URL. ", e);
+        }
+        return url;
+    }
+
+    /**
+     * Make an HTTP request to the given URL and return the list of articles in its
+     * JSON response. An IOException is thrown if the request is worth retrying.
+     */
+    private static FeedResult makeHTTPRequest(URL url, HttpValidators validators,
+                                              Deadline deadline) throws IOException {
+
+        HttpClient.Response response = null;
+        FeedResult newsFeed = FeedResult.failed();
+        Metrics metrics = getMetrics();
+        String key = url.toString();
+
+        try {
+            HashMap<String, String> headers = new HashMap<>();
+            // Ask for a compressed response. Setting this header explicitly disables
+            // the transparent decompression of HttpURLConnection, so that the body
+            // is decompressed below and its size on the wire can be measured.
+            headers.put("Accept-Encoding", "gzip");
+            if (validators != null) {
+                String eTag = validators.getETag(key);
+                String lastModified = validators.getLastModified(key);
+                if (eTag != null) {
+                    headers.put("If-None-Match", eTag);
+                }
+                if (lastModified != null) {
+                    headers.put("If-Modified-Since", lastModified);
+                }
+            }
+            response = getHttpClient().get(url, headers, deadline);
+
+            if (response.getCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                // The articles of the previous response are still current:
+                // there is nothing to download, nor to parse.
+                newsFeed = FeedResult.notModified();
+
+            } else if (response.getCode() == 200) {
+                // If the request was successful (response code 200), then parse the
+                // articles straight from the input stream. The time spent waiting for the
+                // bytes of the body belongs to BODY, and is left out of PARSE.
+                long start = System.nanoTime();
+                WaitTimingInputStream body = new WaitTimingInputStream(response.getBody());
+                newsFeed = FeedReader.read(body, response.getContentEncoding(),
+                        PARSE_ERROR_LOGGER);
+                metrics.record(Metrics.Stage.PARSE,
+                        (System.nanoTime() - start - body.getWaitTime()) / 1000);
+                if (!newsFeed.isComplete()) {
+                    metrics.recordError(Metrics.Stage.PARSE);
                 }
+
+                // Only a completely parsed response may be confirmed by a later
+                // "304 Not Modified"
+                if (validators != null) {
+                    if (newsFeed.isComplete()) {
+                        validators.update(key, response.getHeader("ETag"),
+                                response.getHeader("Last-Modified"));
+                    } else {
+                        validators.clear(key);
+                    }
+                }
+
             } else {
                 // If the request was not successful, print the error code in the Logcat
-                Log.e(LOG_TAG, "Could not retrieve bitmap image. " +
-                        "Connection to server has failed with response code: "
-                        + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Connection to server has failed with response code: "
+                        + response.getCode());
+                metrics.recordError(Metrics.Stage.FIRST_BYTE);
+                if (RetryPolicy.isRetryable(response.getCode())) {
+                    throw new IOException("Server answered with response code: "
+                            + response.getCode());
+                }
             }
+
         } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the bitmap image. ", e);
+            if (response == null) {
+                // Resolving the host name included
+                metrics.recordError(Metrics.Stage.CONNECT);
+            } else if (response.getCode() == 200) {
+                metrics.recordError(Metrics.Stage.BODY);
+            }
+            throw e;
 
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies that an IOException
-                // could be thrown.
-                inputStream.close();
+            // Close the response, so that it can read what is left of the body
+            // and hand the connection back to the pool for the next requests
+            if (response != null) {
+                response.close();
+                metrics.recordRequest(response.getTimings());
             }
         }
-        return bitmap;
+
+        return newsFeed;
     }
 
+    /**
+     * Measures the time spent in the reads of the stream it wraps, that is waiting for the
+     * network when it wraps the body of a response.
+     */
+    private static class WaitTimingInputStream extends FilterInputStream {
+
+        private long mWaitTime;
+
+        WaitTimingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                mWaitTime += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(buffer, offset, length);
+            } finally {
+                mWaitTime += System.nanoTime() - start;
+            }
+        }
+
+        // Time spent in the reads, in nanoseconds
+        long getWaitTime() {
+            return mWaitTime;
+        }
+    }
 }
@@ -0,0 +1,85 @@
+package com.example.android.news;
+
+/**
+ * RequestTimings records how long the phases of a single HTTP request made by
+ * {@link HttpClient} take:
+ * <ul>
+ * <li>connect: resolving the host name and opening the connection, TLS handshake included,
+ * which is close to zero when a pooled connection is reused;</li>
+ * <li>time-to-first-byte: from sending the request until the response headers are in;</li>
+ * <li>body: from the response headers until the response has been read and closed.</li>
+ * </ul>
+ */
+public class RequestTimings {
+
+    private final long mStartNanos;
+    private long mConnectedNanos = -1;
+    private long mFirstByteNanos = -1;
+    private long mDoneNanos = -1;
+
+    public RequestTimings() {
+        mStartNanos = System.nanoTime();
+    }
+
+    void markConnected() {
+        mConnectedNanos = System.nanoTime();
+    }
+
+    void markFirstByte() {
+        mFirstByteNanos = System.nanoTime();
+    }
+
+    void markDone() {
+        mDoneNanos = System.nanoTime();
+    }
+
+    // Milliseconds spent resolving the host name and opening the connection, or -1
+    public long getConnect() {
+        return elapsed(mStartNanos, mConnectedNanos);
+    }
+
+    // Milliseconds from sending the request to the response headers, or -1
+    public long getTimeToFirstByte() {
+        return elapsed(mConnectedNanos, mFirstByteNanos);
+    }
+
+    // Milliseconds spent reading the response body, or -1
+    public long getBody() {
+        return elapsed(mFirstByteNanos, mDoneNanos);
+    }
+
+    // Milliseconds from the start of the request until its response was closed, or -1
+    public long getTotal() {
+        return elapsed(mStartNanos, mDoneNanos);
+    }
+
+    /*
+     * The same durations in nanoseconds, or -1, for the histograms of Metrics.
+     */
+    long getConnectNanos() {
+        return elapsedNanos(mStartNanos, mConnectedNanos);
+    }
+
+    long getTimeToFirstByteNanos() {
+        return elapsedNanos(mConnectedNanos, mFirstByteNanos);
+    }
+
+    long getBodyNanos() {
+        return elapsedNanos(mFirstByteNanos, mDoneNanos);
+    }
+
+    private static long elapsed(long fromNanos, long toNanos) {
+        long nanos = elapsedNanos(fromNanos, toNanos);
+        return nanos < 0 ? -1 : nanos / 1000000;
+    }
+
+    private static long elapsedNanos(long fromNanos, long toNanos) {
+        return fromNanos < 0 || toNanos < 0 ? -1 : toNanos - fromNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "connect: " + getConnect() + " ms, ttfb: "
+                + getTimeToFirstByte() + " ms, body: " + getBody() + " ms";
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.android.news;
+
+import java.net.HttpURLConnection;
+import java.util.Random;
+
+/**
+ * How many times an idempotent request is attempted, and how long to wait between attempts.
+ * <p>
+ * The wait before each retry is drawn at random between 0 and an exponential backoff
+ * (base delay, twice the base delay, and so on, up to a maximum), so that the clients
+ * which failed together do not all come back at the same time ("full jitter").
+ * <p>
+ * Only transient failures are worth a retry: the ones of the network, and the responses
+ * telling that the server is overloaded or failing, see {@link #isRetryable(int)}.
+ * This class does not depend on the Android framework.
+ */
+public final class RetryPolicy {
+
+    /**
+     * A single attempt, never retried.
+     */
+    public static final RetryPolicy NEVER = new RetryPolicy(1, 0, 0);
+
+    // Code of the responses to a client sending too many requests
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final int mMaxAttempts;
+    private final long mBaseDelay;
+    private final long mMaxDelay;
+    private final Random mRandom;
+
+    /*
+     * Constructor. Delays are in milliseconds.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay) {
+        this(maxAttempts, baseDelay, maxDelay, new Random());
+    }
+
+    /*
+     * Constructor, drawing the delays from the given source of randomness.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, Random random) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is needed");
+        }
+        if (baseDelay < 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("Invalid delays: " + baseDelay + ", " + maxDelay);
+        }
+        mMaxAttempts = maxAttempts;
+        mBaseDelay = baseDelay;
+        mMaxDelay = maxDelay;
+        mRandom = random;
+    }
+
+    public int getMaxAttempts() {
+        return mMaxAttempts;
+    }
+
+    /**
+     * Return how long to wait before the attempt following the given one (the first attempt
+     * is 1), in milliseconds, or -1 if no attempt is left.
+     */
+    public long getDelay(int attempt) {
+        if (attempt >= mMaxAttempts) {
+            return -1;
+        }
+        // Base delay times 2^(attempt - 1), without overflowing
+        long backoff = mBaseDelay;
+        for (int i = 1; i < attempt && backoff < mMaxDelay; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, mMaxDelay);
+        return (long) (mRandom.nextDouble() * (backoff + 1));
+    }
+
+    /**
+     * Return true if a response with the given code may succeed if requested again.
+     */
+    public static boolean isRetryable(int responseCode) {
+        return responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                || responseCode == HTTP_TOO_MANY_REQUESTS;
+    }
+
+    @Override
+    public String toString() {
+        return mMaxAttempts + " attempts, backoff " + mBaseDelay + "-" + mMaxDelay + " ms";
+    }
+}
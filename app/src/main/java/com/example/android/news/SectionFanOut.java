@@ -0,0 +1,226 @@
+package com.example.android.news;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SectionFanOut loads the news feed one section at a time, with one request per section,
+ * all of them running concurrently: the time spent on the network is bounded by the slowest
+ * section rather than by the sum of all of them, and the sections can be shown one by one
+ * as soon as each of them has arrived, see {@link Listener}.
+ * <p>
+ * The articles of every section are kept in memory across loads, so that each section is only
+ * requested again once its own refresh interval has elapsed: the sections that are updated
+ * often can be refreshed more often than the other ones.
+ * <p>
+ * The articles of the sections are merged by publication date, newest first, and an article
+ * found in several sections is only kept once. A load must not run concurrently with another
+ * one on the same instance.
+ */
+public class SectionFanOut {
+
+    /**
+     * A section of the feed, with the query of its articles.
+     */
+    public static class Section {
+        private final String mName;
+        private final GuardianQuery mQuery;
+        private final long mRefreshInterval;
+
+        /*
+         * Constructor. The name is the one the API gives to the articles of the section;
+         * the refresh interval is in milliseconds.
+         */
+        public Section(String name, GuardianQuery query, long refreshInterval) {
+            mName = name;
+            mQuery = query;
+            mRefreshInterval = refreshInterval;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public GuardianQuery getQuery() {
+            return mQuery;
+        }
+
+        public long getRefreshInterval() {
+            return mRefreshInterval;
+        }
+    }
+
+    /**
+     * Requests the articles of a section, on a worker thread.
+     */
+    public interface Fetcher {
+        FeedResult fetch(Section section);
+    }
+
+    /**
+     * Notified on the loading thread every time a section has been requested, successfully
+     * or not, with the articles of all the sections known so far, merged.
+     */
+    public interface Listener {
+        void onSectionLoaded(Section section, List<Article> articles);
+    }
+
+    // Orders the articles newest first, the ones without a publication date last
+    private static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            // PublicationDate.UNKNOWN is lower than any time
+            long timeA = a.getPublicationTime();
+            long timeB = b.getPublicationTime();
+            return timeA < timeB ? 1 : (timeA == timeB ? 0 : -1);
+        }
+    };
+
+    private final List<Section> mSections;
+    private final int mMaxArticlesPerSection;
+    private final ThreadPoolExecutor mExecutor;
+    // Articles of each section, newest first, and time of their last successful request
+    private final Map<String, List<Article>> mArticles = new HashMap<>();
+    private final Map<String, Long> mLoadTimes = new HashMap<>();
+
+    public SectionFanOut(List<Section> sections, int maxArticlesPerSection) {
+        mSections = new ArrayList<>(sections);
+        mMaxArticlesPerSection = maxArticlesPerSection;
+        mExecutor = new ThreadPoolExecutor(mSections.size(), mSections.size(),
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "section-" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public List<Section> getSections() {
+        return Collections.unmodifiableList(mSections);
+    }
+
+    /**
+     * Request the sections whose refresh interval has elapsed, or all of them if forced,
+     * and wait for them. The listener, if any, is notified as each of them completes.
+     * <p>
+     * Return the articles of all the sections, merged, or null if no section has ever been
+     * loaded successfully.
+     */
+    public List<Article> load(final Fetcher fetcher, boolean force, Listener listener)
+            throws InterruptedException {
+        long now = System.nanoTime();
+        CompletionService<FeedResult> completionService =
+                new ExecutorCompletionService<>(mExecutor);
+        Map<Future<FeedResult>, Section> requests = new HashMap<>();
+        for (final Section section : mSections) {
+            if (!force && !isStale(section, now)) {
+                continue;
+            }
+            requests.put(completionService.submit(new Callable<FeedResult>() {
+                @Override
+                public FeedResult call() throws Exception {
+                    return fetcher.fetch(section);
+                }
+            }), section);
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            Future<FeedResult> future = completionService.take();
+            Section section = requests.get(future);
+            FeedResult result;
+            try {
+                result = future.get();
+            } catch (ExecutionException e) {
+                result = FeedResult.failed();
+            }
+            onResult(section, result);
+            if (listener != null) {
+                listener.onSectionLoaded(section, getArticles());
+            }
+        }
+        return mArticles.isEmpty() ? null : getArticles();
+    }
+
+    /**
+     * Return the articles of all the sections loaded so far, merged.
+     */
+    public List<Article> getArticles() {
+        return mergeByDate(new ArrayList<>(mArticles.values()), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stop the worker threads. No further load can be made.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Merge the given lists of articles, newest first, keeping a single copy of the articles
+     * found in several lists, up to the given number of articles.
+     */
+    public static List<Article> mergeByDate(List<List<Article>> lists, int max) {
+        ArrayList<Article> all = new ArrayList<>();
+        for (List<Article> list : lists) {
+            all.addAll(list);
+        }
+        // A stable sort: articles published at the same time keep their order
+        Collections.sort(all, NEWEST_FIRST);
+        ArrayList<Article> merged = new ArrayList<>(Math.min(max, all.size()));
+        Set<String> keys = new HashSet<>();
+        for (Article article : all) {
+            if (merged.size() < max && keys.add(article.getKey())) {
+                merged.add(article);
+            }
+        }
+        return merged;
+    }
+
+    private boolean isStale(Section section, long now) {
+        Long loadTime = mLoadTimes.get(section.getName());
+        return loadTime == null
+                || now - loadTime >= TimeUnit.MILLISECONDS.toNanos(section.getRefreshInterval());
+    }
+
+    private void onResult(Section section, FeedResult result) {
+        if (result.getArticles() == null && !result.isNotModified()) {
+            // Failed: the section is requested again on the next load
+            return;
+        }
+        mLoadTimes.put(section.getName(), System.nanoTime());
+        List<Article> previous = mArticles.get(section.getName());
+        List<Article> fresh = result.getArticles();
+        if (previous == null) {
+            previous = Collections.emptyList();
+        }
+        if (fresh == null) {
+            fresh = Collections.emptyList();
+        }
+        mArticles.put(section.getName(),
+                mergeByDate(Arrays.asList(fresh, previous), mMaxArticlesPerSection));
+    }
+}
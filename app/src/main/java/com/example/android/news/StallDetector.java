@@ -0,0 +1,305 @@
+package com.example.android.news;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StallDetector keeps the statistics of the frames drawn by the main thread, and detects the
+ * stalls of the main thread, during which it draws no frame at all.
+ * <p>
+ * It is told of every frame by {@link #onFrame(long)}, in the main thread, and checked
+ * periodically by {@link #check(long)}, from another thread: when no frame has been drawn for
+ * longer than the stall threshold, the stack of the main thread is sampled, showing what it is
+ * busy with. The stall ends with the next frame.
+ * <p>
+ * The frames are counted for each {@link Action} going on when they are drawn, so that the
+ * frames dropped while scrolling can be told from the ones dropped by a load:
+ * <ul>
+ * <li>a janky frame took long enough for at least one frame to be dropped;</li>
+ * <li>a frozen frame took longer than {@link #FROZEN_FRAME_DURATION}.</li>
+ * </ul>
+ * Times are given by the caller, in nanoseconds from any fixed origin, as the times of the
+ * frames of the Choreographer. This class is thread safe, and does not depend on the Android
+ * framework.
+ */
+public class StallDetector {
+
+    /**
+     * What the user is waiting for, or doing, while the frames are drawn.
+     */
+    public enum Action {
+        // From the start of the activity until the first articles are on screen
+        INITIAL_LOAD,
+        // From a reload of the feed until its articles are on screen
+        RELOAD,
+        // While the list is scrolled, by the user or by a fling
+        SCROLL,
+        // Anything else
+        OTHER
+    }
+
+    /**
+     * Returns the current stack of the thread being watched.
+     */
+    public interface StackSampler {
+        StackTraceElement[] sample();
+    }
+
+    // Frames which took longer are frozen: the app does not respond anymore
+    public static final long FROZEN_FRAME_DURATION = 700; /* milliseconds */
+    // Stalls kept with their stack, the first ones
+    static final int MAX_STALLS = 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long UNKNOWN = -1;
+
+    private final long mFrameInterval;
+    private final long mStallThreshold;
+    private final StackSampler mSampler;
+
+    private final EnumSet<Action> mActions = EnumSet.noneOf(Action.class);
+    private final ActionStats[] mStats = new ActionStats[Action.values().length];
+    private final List<Stall> mStalls = new ArrayList<>();
+    private int mStallCount;
+    // Time of the last frame, UNKNOWN if no frame is expected
+    private long mLastFrameTime = UNKNOWN;
+    // Stall going on, if any
+    private Stall mStall;
+
+    /*
+     * Constructor. The interval of the frames of the display, and the time without a frame
+     * after which the main thread is stalled, are in nanoseconds.
+     */
+    public StallDetector(long frameInterval, long stallThreshold, StackSampler sampler) {
+        mFrameInterval = frameInterval;
+        mStallThreshold = stallThreshold;
+        mSampler = sampler;
+        for (Action action : Action.values()) {
+            mStats[action.ordinal()] = new ActionStats();
+        }
+    }
+
+    /**
+     * Record that the given action has started: the frames drawn until it ends are counted
+     * for it, and also for the other actions going on.
+     */
+    public synchronized void begin(Action action) {
+        mActions.add(action);
+    }
+
+    public synchronized void end(Action action) {
+        mActions.remove(action);
+    }
+
+    public synchronized boolean isGoingOn(Action action) {
+        return mActions.contains(action);
+    }
+
+    /**
+     * Record a frame drawn at the given time, which ends the stall going on, if any.
+     */
+    public synchronized void onFrame(long frameTime) {
+        if (mLastFrameTime != UNKNOWN) {
+            long duration = frameTime - mLastFrameTime;
+            if (mActions.isEmpty()) {
+                mStats[Action.OTHER.ordinal()].record(duration);
+            } else {
+                for (Action action : mActions) {
+                    mStats[action.ordinal()].record(duration);
+                }
+            }
+        }
+        if (mStall != null) {
+            mStall.mDuration = frameTime - mStall.mStartTime;
+            mStall = null;
+        }
+        mLastFrameTime = frameTime;
+    }
+
+    /**
+     * Record that no frame is expected until the next one, as when the activity is stopped,
+     * so that the time until then is not taken for a stall.
+     */
+    public synchronized void pause() {
+        mLastFrameTime = UNKNOWN;
+        mStall = null;
+    }
+
+    /**
+     * Return true if the main thread has been stalled since the last frame, as of the given
+     * time, and has just been found so: its stack is then sampled. Not to be called from
+     * the main thread.
+     */
+    public synchronized boolean check(long now) {
+        if (mLastFrameTime == UNKNOWN || mStall != null
+                || now - mLastFrameTime < mStallThreshold) {
+            return false;
+        }
+        Action action = mActions.isEmpty() ? Action.OTHER : mActions.iterator().next();
+        mStall = new Stall(action, mLastFrameTime,
+                mSampler != null ? mSampler.sample() : new StackTraceElement[0]);
+        mStallCount++;
+        mStats[action.ordinal()].mStalls++;
+        if (mStalls.size() < MAX_STALLS) {
+            mStalls.add(mStall);
+        }
+        return true;
+    }
+
+    public synchronized long getFrameCount(Action action) {
+        return mStats[action.ordinal()].mDurations.getCount();
+    }
+
+    public synchronized long getJankyFrameCount(Action action) {
+        return mStats[action.ordinal()].mJankyFrames;
+    }
+
+    public synchronized long getDroppedFrameCount(Action action) {
+        return mStats[action.ordinal()].mDroppedFrames;
+    }
+
+    public synchronized long getFrozenFrameCount(Action action) {
+        return mStats[action.ordinal()].mFrozenFrames;
+    }
+
+    // Durations of the frames, in microseconds
+    public synchronized Histogram getFrameDurations(Action action) {
+        return mStats[action.ordinal()].mDurations;
+    }
+
+    public synchronized int getStallCount() {
+        return mStallCount;
+    }
+
+    /**
+     * Return the first stalls detected, at most MAX_STALLS of them.
+     */
+    public synchronized List<Stall> getStalls() {
+        return new ArrayList<>(mStalls);
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public synchronized void reset() {
+        for (Action action : Action.values()) {
+            mStats[action.ordinal()] = new ActionStats();
+        }
+        mStalls.clear();
+        mStallCount = 0;
+    }
+
+    /**
+     * Write the report returned by {@link #toString()} to the given file, followed by the
+     * stacks of the stalls.
+     */
+    public void writeReport(File file) throws IOException {
+        StringBuilder report = new StringBuilder(toString());
+        for (Stall stall : getStalls()) {
+            report.append('\n').append(stall).append('\n');
+            for (StackTraceElement element : stall.getStack()) {
+                report.append("\tat ").append(element).append('\n');
+            }
+        }
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(report.toString().getBytes(UTF_8));
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Return a report of the frames and of the stalls, one line per action.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Action action : Action.values()) {
+            ActionStats stats = mStats[action.ordinal()];
+            Histogram durations = stats.mDurations;
+            text.append(String.format(Locale.US,
+                    "%s: %d frames, %d janky, %d dropped, %d frozen, %d stalls, "
+                            + "p50 %.1f ms, p90 %.1f ms, p99 %.1f ms%n",
+                    action.name().toLowerCase(Locale.US), durations.getCount(),
+                    stats.mJankyFrames, stats.mDroppedFrames, stats.mFrozenFrames,
+                    stats.mStalls, durations.getPercentile(50) / 1000.0,
+                    durations.getPercentile(90) / 1000.0,
+                    durations.getPercentile(99) / 1000.0));
+        }
+        return text.toString();
+    }
+
+    /**
+     * A stall of the main thread, with its stack when it was found stalled.
+     */
+    public static class Stall {
+        private final Action mAction;
+        private final long mStartTime;
+        private final StackTraceElement[] mStack;
+        private volatile long mDuration = UNKNOWN;
+
+        Stall(Action action, long startTime, StackTraceElement[] stack) {
+            mAction = action;
+            mStartTime = startTime;
+            mStack = stack;
+        }
+
+        public Action getAction() {
+            return mAction;
+        }
+
+        // Time of the last frame before the stall
+        public long getStartTime() {
+            return mStartTime;
+        }
+
+        // Time until the next frame, in nanoseconds, or -1 if the stall is going on
+        public long getDuration() {
+            return mDuration;
+        }
+
+        public StackTraceElement[] getStack() {
+            return mStack;
+        }
+
+        @Override
+        public String toString() {
+            return "Stall during " + mAction.name().toLowerCase(Locale.US) + ", "
+                    + (mDuration == UNKNOWN ? "going on"
+                    : TimeUnit.NANOSECONDS.toMillis(mDuration) + " ms");
+        }
+    }
+
+    /**
+     * Frames of an action.
+     */
+    private class ActionStats {
+        final Histogram mDurations = new Histogram();
+        long mJankyFrames;
+        long mDroppedFrames;
+        long mFrozenFrames;
+        int mStalls;
+
+        void record(long duration) {
+            mDurations.record(duration / 1000);
+            // Frames which should have been drawn in the meantime, rounded
+            long dropped = (duration + mFrameInterval / 2) / mFrameInterval - 1;
+            if (dropped > 0) {
+                mJankyFrames++;
+                mDroppedFrames += dropped;
+            }
+            if (duration > TimeUnit.MILLISECONDS.toNanos(FROZEN_FRAME_DURATION)) {
+                mFrozenFrames++;
+            }
+        }
+    }
+}
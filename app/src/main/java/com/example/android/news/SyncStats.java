@@ -0,0 +1,153 @@
+package com.example.android.news;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Records the outcome of the background syncs of the news feed, see {@link FeedSync}:
+ * when the last successful one happened, how long it took and what it fetched, and how many
+ * syncs have failed since then.
+ * <p>
+ * Statistics are persisted to a file if one is given, so that they survive the process.
+ * All methods are thread safe.
+ */
+public class SyncStats {
+
+    private static final String LAST_SYNC_TIME = "last-sync-time";
+    private static final String LAST_SYNC_DURATION = "last-sync-duration";
+    private static final String LAST_SYNC_ARTICLES = "last-sync-articles";
+    private static final String LAST_SYNC_THUMBNAILS = "last-sync-thumbnails";
+    private static final String SUCCESSES = "successes";
+    private static final String FAILURES = "failures";
+    private static final String CONSECUTIVE_FAILURES = "consecutive-failures";
+
+    private final File mFile;
+    private final Properties mStats = new Properties();
+
+    /*
+     * Constructor. The statistics are kept in memory only if file is null.
+     */
+    public SyncStats(File file) {
+        mFile = file;
+        if (file != null && file.exists()) {
+            InputStream input = null;
+            try {
+                input = new FileInputStream(file);
+                mStats.load(input);
+            } catch (IOException e) {
+                // Statistics are only informative: start over
+                mStats.clear();
+            } finally {
+                closeQuietly(input);
+            }
+        }
+    }
+
+    /**
+     * Record a successful sync, which ended at the given time (in milliseconds since the epoch)
+     * and took the given number of milliseconds.
+     */
+    public synchronized void recordSuccess(long time, long duration, int articles,
+                                           int thumbnails) {
+        put(LAST_SYNC_TIME, time);
+        put(LAST_SYNC_DURATION, duration);
+        put(LAST_SYNC_ARTICLES, articles);
+        put(LAST_SYNC_THUMBNAILS, thumbnails);
+        put(SUCCESSES, get(SUCCESSES) + 1);
+        put(CONSECUTIVE_FAILURES, 0);
+        save();
+    }
+
+    /**
+     * Record a failed sync.
+     */
+    public synchronized void recordFailure() {
+        put(FAILURES, get(FAILURES) + 1);
+        put(CONSECUTIVE_FAILURES, get(CONSECUTIVE_FAILURES) + 1);
+        save();
+    }
+
+    // Time of the end of the last successful sync, in milliseconds since the epoch, or 0
+    public synchronized long getLastSyncTime() {
+        return get(LAST_SYNC_TIME);
+    }
+
+    // Milliseconds taken by the last successful sync, or 0
+    public synchronized long getLastSyncDuration() {
+        return get(LAST_SYNC_DURATION);
+    }
+
+    // Number of articles stored by the last successful sync
+    public synchronized long getLastSyncArticles() {
+        return get(LAST_SYNC_ARTICLES);
+    }
+
+    // Number of thumbnails cached by the last successful sync
+    public synchronized long getLastSyncThumbnails() {
+        return get(LAST_SYNC_THUMBNAILS);
+    }
+
+    public synchronized long getSuccesses() {
+        return get(SUCCESSES);
+    }
+
+    public synchronized long getFailures() {
+        return get(FAILURES);
+    }
+
+    // Number of syncs failed since the last successful one
+    public synchronized long getConsecutiveFailures() {
+        return get(CONSECUTIVE_FAILURES);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "last sync: " + getLastSyncTime() + " (" + getLastSyncDuration() + " ms, "
+                + getLastSyncArticles() + " articles, " + getLastSyncThumbnails()
+                + " thumbnails), " + getSuccesses() + " successes, " + getFailures()
+                + " failures (" + getConsecutiveFailures() + " consecutive)";
+    }
+
+    private long get(String key) {
+        try {
+            return Long.parseLong(mStats.getProperty(key, "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void put(String key, long value) {
+        mStats.setProperty(key, Long.toString(value));
+    }
+
+    private void save() {
+        if (mFile == null) {
+            return;
+        }
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(mFile);
+            mStats.store(output, null);
+        } catch (IOException e) {
+            // Statistics that cannot be saved are only lost
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+}
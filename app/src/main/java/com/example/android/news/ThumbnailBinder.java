@@ -0,0 +1,172 @@
+package com.example.android.news;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Binds thumbnails to the rows of a list lazily: a thumbnail is only looked up, and downloaded
+ * if needed, when a row showing it is bound, and it is only referenced by the row as long as
+ * the row shows the same article.
+ * <p>
+ * Every row is tagged with its pending request, if any. When a recycled row is bound to another
+ * article, the request of the previous one is cancelled, so that its image can never end up
+ * in the row, and so that the downloads of the rows that flew by during a fast scroll are
+ * dropped before they start. Memory is thus held by the rows on screen and by the
+ * {@link ThumbnailCache}, whatever the length of the list.
+ * <p>
+ * ThumbnailBinder is not thread safe: it is meant to be used from the main thread only,
+ * and the main thread executor given to the constructor must run the results there.
+ */
+public class ThumbnailBinder<T> {
+
+    /**
+     * A row showing a thumbnail.
+     */
+    public interface Target<T> {
+        void showImage(T image);
+
+        void showPlaceholder();
+    }
+
+    /**
+     * Notified every time a request is done, successfully or not (but not if cancelled).
+     */
+    public interface Listener {
+        void onRequestDone();
+    }
+
+    private final ThumbnailDownloader<T> mDownloader;
+    private final ThumbnailCache<T> mCache;
+    private final Executor mMainThread;
+    // Pending request of each row
+    private final Map<Target<T>, Request> mRequests = new HashMap<>();
+    private Listener mListener;
+
+    /*
+     * Constructor. The downloader must share the given cache, so that the downloaded
+     * thumbnails are found in memory the next time they are bound.
+     */
+    public ThumbnailBinder(ThumbnailDownloader<T> downloader, ThumbnailCache<T> cache,
+                           Executor mainThread) {
+        mDownloader = downloader;
+        mCache = cache;
+        mMainThread = mainThread;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Show the thumbnail at the given URL in the given row: immediately if it is in memory,
+     * else as soon as it has been read from disk or downloaded, in the meantime showing the
+     * placeholder. A null URL shows the placeholder for good.
+     */
+    public void bind(Target<T> target, String url) {
+        Request previous = mRequests.get(target);
+        if (previous != null) {
+            if (previous.mUrl.equals(url)) {
+                // Rebound to the same thumbnail: let the request complete
+                return;
+            }
+            cancel(target);
+        }
+
+        T cached = url != null ? mCache.getFromMemory(url) : null;
+        if (cached != null) {
+            target.showImage(cached);
+            return;
+        }
+        target.showPlaceholder();
+        if (url == null) {
+            return;
+        }
+        URL sourceURL;
+        try {
+            sourceURL = new URL(url);
+        } catch (MalformedURLException e) {
+            return;
+        }
+
+        final Request request = new Request(target, url);
+        mRequests.put(target, request);
+        request.mFuture = mDownloader.submit(sourceURL, new ThumbnailDownloader.Callback<T>() {
+            @Override
+            public void onDownloaded(URL sourceURL, final T image) {
+                mMainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(request, image);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailed(URL sourceURL, Throwable error) {
+                mMainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(request, null);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancel the pending request of the given row, if any.
+     */
+    public void cancel(Target<T> target) {
+        Request request = mRequests.remove(target);
+        if (request != null) {
+            // A download already running is let complete, to be found in the cache later on
+            request.mFuture.cancel(false);
+        }
+    }
+
+    /**
+     * Cancel the pending requests of all the rows.
+     */
+    public void cancelAll() {
+        for (Request request : mRequests.values()) {
+            request.mFuture.cancel(false);
+        }
+        mRequests.clear();
+    }
+
+    /**
+     * Return the number of rows waiting for their thumbnail.
+     */
+    public int getPendingCount() {
+        return mRequests.size();
+    }
+
+    private void deliver(Request request, T image) {
+        if (mRequests.get(request.mTarget) != request) {
+            // The row has been bound to another article, or cancelled, in the meantime
+            return;
+        }
+        mRequests.remove(request.mTarget);
+        if (image != null) {
+            request.mTarget.showImage(image);
+        }
+        if (mListener != null) {
+            mListener.onRequestDone();
+        }
+    }
+
+    private class Request {
+        final Target<T> mTarget;
+        final String mUrl;
+        Future<T> mFuture;
+
+        Request(Target<T> target, String url) {
+            mTarget = target;
+            mUrl = url;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.android.news;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Two-tier cache of thumbnail images, keyed by thumbnail URL.
+ * <p>
+ * The first tier holds decoded images in memory and is bounded by the number of bytes
+ * they occupy. The second tier holds the encoded images, as downloaded, on disk.
+ * Since the URL of a thumbnail never changes its content, entries never need to be
+ * revalidated against the server.
+ */
+public class ThumbnailCache<T> {
+
+    /**
+     * Measures the number of bytes held in memory by a decoded image.
+     */
+    public interface Sizer<T> {
+        int sizeOf(T image);
+    }
+
+    /**
+     * Receives the images evicted from memory, e.g. to reuse their memory.
+     */
+    public interface Recycler<T> {
+        void recycle(T image);
+    }
+
+    private final MemoryLruCache<String, T> mMemoryCache;
+    private final DiskLruCache mDiskCache;
+    private final ThumbnailDownloader.Decoder<T> mDecoder;
+
+    /*
+     * Constructor. The disk tier is disabled if diskDirectory is null.
+     */
+    public ThumbnailCache(long memoryBytes, File diskDirectory, long diskBytes,
+                          Sizer<T> sizer, ThumbnailDownloader.Decoder<T> decoder)
+            throws IOException {
+        this(memoryBytes, diskDirectory, diskBytes, sizer, decoder, null);
+    }
+
+    /*
+     * Constructor. The images evicted from memory are handed to the given recycler,
+     * if not null.
+     */
+    public ThumbnailCache(long memoryBytes, File diskDirectory, long diskBytes,
+                          final Sizer<T> sizer, ThumbnailDownloader.Decoder<T> decoder,
+                          final Recycler<T> recycler) throws IOException {
+        mMemoryCache = new MemoryLruCache<String, T>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, T value) {
+                return sizer.sizeOf(value);
+            }
+
+            @Override
+            protected void entryEvicted(String key, T value) {
+                if (recycler != null) {
+                    recycler.recycle(value);
+                }
+            }
+        };
+        mDiskCache = diskDirectory != null ? new DiskLruCache(diskDirectory, diskBytes) : null;
+        mDecoder = decoder;
+    }
+
+    /**
+     * Return the decoded image for the given URL if it is held in memory, else null.
+     * This method never blocks on disk, so it can be called from the main thread.
+     */
+    public T getFromMemory(String url) {
+        return mMemoryCache.get(url);
+    }
+
+    /**
+     * Return the image for the given URL from memory, or else from disk, or null if it
+     * is in neither tier. Images read from disk are decoded and promoted to memory.
+     */
+    public T get(String url) throws IOException {
+        T image = mMemoryCache.get(url);
+        if (image != null || mDiskCache == null) {
+            return image;
+        }
+        byte[] encoded = mDiskCache.get(url);
+        if (encoded == null) {
+            return null;
+        }
+        image = mDecoder.decode(new ByteArrayInputStream(encoded));
+        if (image != null) {
+            mMemoryCache.put(url, image);
+        }
+        return image;
+    }
+
+    /**
+     * Store a freshly downloaded image in both tiers.
+     */
+    public void put(String url, byte[] encoded, T image) throws IOException {
+        if (image != null) {
+            mMemoryCache.put(url, image);
+        }
+        if (mDiskCache != null) {
+            mDiskCache.put(url, encoded);
+        }
+    }
+
+    public void evictMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    public MemoryLruCache<String, T> getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    public DiskLruCache getDiskCache() {
+        return mDiskCache;
+    }
+
+    @Override
+    public String toString() {
+        String stats = "memory: " + mMemoryCache.hitCount() + " hits, "
+                + mMemoryCache.missCount() + " misses, "
+                + mMemoryCache.evictionCount() + " evictions, "
+                + mMemoryCache.size() + "/" + mMemoryCache.maxSize() + " bytes";
+        if (mDiskCache != null) {
+            stats += "; disk: " + mDiskCache.hitCount() + " hits, "
+                    + mDiskCache.missCount() + " misses, "
+                    + mDiskCache.evictionCount() + " evictions, "
+                    + mDiskCache.size() + " bytes";
+        }
+        return stats;
+    }
+}
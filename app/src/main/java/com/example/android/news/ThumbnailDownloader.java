@@ -0,0 +1,566 @@
+package com.example.android.news;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThumbnailDownloader downloads thumbnail images in parallel on a dedicated pool of
+ * worker threads, so that the time spent fetching the images of a whole news feed is bounded
+ * by the slowest image rather than by the sum of all of them.
+ * <p>
+ * The total number of simultaneous downloads is bounded by the size of the pool, while
+ * the number of simultaneous downloads from the same host is bounded by a per-host limit.
+ * All pending and running downloads can be cancelled at once via {@link #cancel()}.
+ * <p>
+ * If a {@link ThumbnailCache} is given, it is consulted before any network request, and
+ * every downloaded image is stored into it. If {@link Metrics} are given, the downloads and
+ * the decoding of the images are timed.
+ * <p>
+ * Optionally, a download which fails on the network or on the server is retried according
+ * to a {@link RetryPolicy}, a download which is slow to complete is "hedged" with a second
+ * request for the same image, the first one to complete winning, and the downloads from a
+ * host which keeps failing are skipped for a while by a {@link CircuitBreaker}.
+ * <p>
+ * This class does not depend on the Android framework: the way the downloaded bytes are turned
+ * into an image is delegated to a {@link Decoder}.
+ */
+public class ThumbnailDownloader<T> {
+
+    /**
+     * Turns the body of a successful image response into an object of type T.
+     */
+    public interface Decoder<T> {
+        T decode(InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * Notified on a worker thread when a download submitted via
+     * {@link #submit(URL, Callback)} completes. Not called for cancelled downloads.
+     */
+    public interface Callback<T> {
+        void onDownloaded(URL sourceURL, T image);
+
+        void onFailed(URL sourceURL, Throwable error);
+    }
+
+    public static final int DEFAULT_CONCURRENCY = 6;
+    public static final int DEFAULT_PER_HOST_LIMIT = 4;
+
+    // Stands in for the metrics until some are given
+    private static final Metrics DISABLED_METRICS = new Metrics(false);
+
+    private final HttpClient mHttpClient;
+    private final Decoder<T> mDecoder;
+    private final ThumbnailCache<T> mCache;
+    private final int mPerHostLimit;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<String, Semaphore> mHostPermits = new HashMap<>();
+    private final Set<Future<T>> mPending =
+            Collections.newSetFromMap(new ConcurrentHashMap<Future<T>, Boolean>());
+    private final Map<String, CircuitBreaker> mHostBreakers = new HashMap<>();
+    private volatile boolean mCancelled = false;
+    private volatile Metrics mMetrics;
+    private volatile RetryPolicy mRetryPolicy = RetryPolicy.NEVER;
+    private volatile long mHedgeDelay = 0;
+    private volatile long mTimeout = 0;
+    // Guarded by mHostBreakers
+    private int mFailureThreshold = 0;
+    private long mOpenCircuitDuration;
+    // Runs the requests of the hedged downloads, created with the first of them
+    private ThreadPoolExecutor mHedgeExecutor;
+
+    public ThumbnailDownloader(Decoder<T> decoder) {
+        this(decoder, null, DEFAULT_CONCURRENCY, DEFAULT_PER_HOST_LIMIT);
+    }
+
+    public ThumbnailDownloader(Decoder<T> decoder, ThumbnailCache<T> cache) {
+        this(decoder, cache, DEFAULT_CONCURRENCY, DEFAULT_PER_HOST_LIMIT);
+    }
+
+    public ThumbnailDownloader(Decoder<T> decoder, int concurrency, int perHostLimit) {
+        this(decoder, null, concurrency, perHostLimit);
+    }
+
+    public ThumbnailDownloader(Decoder<T> decoder, ThumbnailCache<T> cache,
+                               int concurrency, int perHostLimit) {
+        this(new HttpClient(), decoder, cache, concurrency, perHostLimit);
+    }
+
+    /*
+     * Constructor. The cache may be null. The HTTP client should be the one of the other
+     * requests to the same hosts, so that they share its connections.
+     */
+    public ThumbnailDownloader(HttpClient httpClient, Decoder<T> decoder,
+                               ThumbnailCache<T> cache, int concurrency, int perHostLimit) {
+        if (concurrency < 1 || perHostLimit < 1) {
+            throw new IllegalArgumentException("Concurrency limits must be positive");
+        }
+        mHttpClient = httpClient;
+        mDecoder = decoder;
+        mCache = cache;
+        mPerHostLimit = perHostLimit;
+        mExecutor = new ThreadPoolExecutor(concurrency, concurrency,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                                "thumbnail-" + mCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Time the downloads and the decoding of the images with the given metrics,
+     * which may be null.
+     */
+    public void setMetrics(Metrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Retry the failed downloads according to the given policy. By default, they are not.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy != null ? retryPolicy : RetryPolicy.NEVER;
+    }
+
+    /**
+     * Send a second request for an image whose first request has not completed after the
+     * given delay, in milliseconds, or never if the delay is 0, which is the default.
+     * The slower of the two requests is abandoned.
+     */
+    public void setHedgeDelay(long hedgeDelay) {
+        if (hedgeDelay < 0) {
+            throw new IllegalArgumentException("Negative delay: " + hedgeDelay);
+        }
+        mHedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * Give up the downloads which have not completed after the given time, in milliseconds,
+     * retries and hedged requests included, or never if the timeout is 0, which is the
+     * default. The requests still running then are disconnected.
+     */
+    public void setTimeout(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Negative timeout: " + timeout);
+        }
+        mTimeout = timeout;
+    }
+
+    /**
+     * Skip the downloads from a host for the given duration, in milliseconds, once the given
+     * number of consecutive requests to it have failed, or never if the threshold is 0,
+     * which is the default. Skipped downloads fail with an IOException right away.
+     */
+    public void setCircuitBreaking(int failureThreshold, long openDuration) {
+        if (failureThreshold < 0 || openDuration < 0) {
+            throw new IllegalArgumentException("Invalid threshold or duration");
+        }
+        synchronized (mHostBreakers) {
+            mHostBreakers.clear();
+            mOpenCircuitDuration = openDuration;
+            mFailureThreshold = failureThreshold;
+        }
+    }
+
+    /**
+     * Schedule the download of the image at the given URL.
+     * The returned {@link Future} fails with an {@link IOException} if the image could not
+     * be retrieved, and is already cancelled if this downloader has been cancelled.
+     */
+    public Future<T> submit(URL sourceURL) {
+        return submit(sourceURL, null);
+    }
+
+    /**
+     * Schedule the download of the image at the given URL, and notify the given callback
+     * as soon as the image is available.
+     */
+    public Future<T> submit(final URL sourceURL, final Callback<T> callback) {
+        FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return download(sourceURL);
+            }
+        }) {
+            @Override
+            protected void done() {
+                mPending.remove(this);
+                if (callback == null || isCancelled()) {
+                    return;
+                }
+                try {
+                    callback.onDownloaded(sourceURL, get());
+                } catch (ExecutionException e) {
+                    callback.onFailed(sourceURL, e.getCause());
+                } catch (InterruptedException | CancellationException e) {
+                    // Nothing to report: the download has been abandoned
+                }
+            }
+        };
+        if (mCancelled) {
+            task.cancel(false);
+            return task;
+        }
+        mPending.add(task);
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // cancel() has been called concurrently
+            task.cancel(false);
+        }
+        return task;
+    }
+
+    /**
+     * Cancel every pending and running download. Workers blocked on the network are interrupted
+     * and no further download can be submitted to this instance.
+     */
+    public void cancel() {
+        mCancelled = true;
+        for (Future<T> future : mPending) {
+            future.cancel(true);
+        }
+        mPending.clear();
+        mExecutor.shutdownNow();
+        synchronized (this) {
+            if (mHedgeExecutor != null) {
+                mHedgeExecutor.shutdownNow();
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Let the downloads already submitted run to completion, then release the worker threads.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+        synchronized (this) {
+            if (mHedgeExecutor != null) {
+                mHedgeExecutor.shutdown();
+            }
+        }
+    }
+
+    /*
+     * Look the image up in the cache, then download it if needed,
+     * waiting for a free slot on its host first.
+     */
+    private T download(URL sourceURL) throws IOException, InterruptedException {
+        if (sourceURL == null) {
+            return null;
+        }
+
+        String key = sourceURL.toString();
+        if (mCache != null) {
+            try {
+                T cached = mCache.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                // A damaged cache entry is just a cache miss
+            }
+        }
+
+        long timeout = mTimeout;
+        Deadline deadline = timeout > 0 ? Deadline.after(timeout) : Deadline.NONE;
+        CircuitBreaker breaker = breakerFor(sourceURL.getHost());
+        Semaphore permits = permitsFor(sourceURL.getHost());
+        RetryPolicy retryPolicy = mRetryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            if (breaker != null && !breaker.allowRequest(now())) {
+                throw new IOException("Skipped image " + sourceURL + ": too many failures of "
+                        + sourceURL.getHost());
+            }
+            try {
+                T image = mHedgeDelay > 0 ? fetchHedged(sourceURL, permits, deadline)
+                        : fetch(sourceURL, permits, deadline);
+                if (breaker != null) {
+                    breaker.onSuccess();
+                }
+                return image;
+            } catch (IOException e) {
+                boolean transientFailure = !(e instanceof ResponseCodeException)
+                        || RetryPolicy.isRetryable(((ResponseCodeException) e).mCode);
+                if (breaker != null) {
+                    // The host is fine if it answers that the image does not exist
+                    if (transientFailure) {
+                        breaker.onFailure(now());
+                    } else {
+                        breaker.onSuccess();
+                    }
+                }
+                long delay = retryPolicy.getDelay(attempt);
+                if (!transientFailure || delay < 0 || delay >= deadline.getRemaining()) {
+                    throw e;
+                }
+                Thread.sleep(delay);
+            }
+        }
+    }
+
+    /*
+     * Wait for a free slot on the host of the image, then request it.
+     */
+    private T fetch(URL sourceURL, Semaphore permits, Deadline deadline)
+            throws IOException, InterruptedException {
+        permits.acquire();
+        try {
+            return fetch(sourceURL, deadline);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /*
+     * Send a request for the image and, if it has not completed after the hedge delay,
+     * a second one, provided that its host has a free slot for it. Both run on the hedge
+     * executor, while the calling worker waits for the first of them to succeed, or for
+     * both to fail. Every request holds a slot of the host until it ends, abandoned or not,
+     * so that the host never sees more requests than its limit.
+     */
+    private T fetchHedged(URL sourceURL, Semaphore permits, Deadline deadline)
+            throws IOException, InterruptedException {
+        CompletionService<T> requests = new ExecutorCompletionService<>(getHedgeExecutor());
+        List<Future<T>> futures = new ArrayList<>(2);
+        try {
+            permits.acquire();
+            futures.add(submit(requests, sourceURL, permits, deadline));
+            Future<T> completed = requests.poll(mHedgeDelay, TimeUnit.MILLISECONDS);
+            if (completed == null) {
+                if (permits.tryAcquire()) {
+                    futures.add(submit(requests, sourceURL, permits, deadline));
+                }
+                completed = requests.take();
+            }
+            try {
+                return completed.get();
+            } catch (ExecutionException e) {
+                if (futures.size() == 1) {
+                    throw asIOException(e);
+                }
+            }
+            // The first request to complete has failed: the other one may still succeed
+            try {
+                return requests.take().get();
+            } catch (ExecutionException e) {
+                throw asIOException(e);
+            }
+        } finally {
+            // A request blocked on the network only notices when its read times out, or
+            // when the deadline of the download expires, then closes its response
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /*
+     * Submit a request for the image, which releases the given slot of its host when it ends.
+     */
+    private Future<T> submit(CompletionService<T> requests, final URL sourceURL,
+                             final Semaphore permits, final Deadline deadline)
+            throws InterruptedException {
+        try {
+            return requests.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    try {
+                        return fetch(sourceURL, deadline);
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // cancel() has been called concurrently
+            permits.release();
+            throw new InterruptedException("Download of " + sourceURL + " cancelled");
+        }
+    }
+
+    /*
+     * Send a single request for the image and decode it.
+     */
+    private T fetch(URL sourceURL, Deadline deadline) throws IOException {
+        Metrics metrics = mMetrics != null ? mMetrics : DISABLED_METRICS;
+        Metrics.Stage failedStage = Metrics.Stage.THUMBNAIL_DOWNLOAD;
+        HttpClient.Response response = null;
+        try {
+            long start = metrics.start();
+            response = mHttpClient.get(sourceURL, null, deadline);
+
+            if (response.getCode() != 200) {
+                throw new ResponseCodeException(sourceURL, response.getCode());
+            }
+            InputStream inputStream = response.getBody();
+            if (mCache == null) {
+                // The image is decoded as it is downloaded: both are timed as the download
+                T image = mDecoder.decode(inputStream);
+                metrics.stop(Metrics.Stage.THUMBNAIL_DOWNLOAD, start);
+                return image;
+            }
+
+            // Keep the encoded bytes, which are what the disk cache stores
+            byte[] encoded = readFully(inputStream);
+            metrics.stop(Metrics.Stage.THUMBNAIL_DOWNLOAD, start);
+            failedStage = Metrics.Stage.THUMBNAIL_DECODE;
+            start = metrics.start();
+            T image = mDecoder.decode(new ByteArrayInputStream(encoded));
+            metrics.stop(Metrics.Stage.THUMBNAIL_DECODE, start);
+            if (image == null) {
+                metrics.recordError(Metrics.Stage.THUMBNAIL_DECODE);
+            }
+            try {
+                mCache.put(sourceURL.toString(), encoded, image);
+            } catch (IOException e) {
+                // Failing to cache the image must not fail its download
+            }
+            return image;
+
+        } catch (IOException e) {
+            metrics.recordError(failedStage);
+            throw e;
+
+        } finally {
+            // Reading what is left of the body lets the next image reuse the connection
+            if (response != null) {
+                response.close();
+            }
+        }
+    }
+
+    private static IOException asIOException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    /*
+     * Return the circuit breaker of the given host, or null if circuit breaking is disabled.
+     */
+    private CircuitBreaker breakerFor(String host) {
+        synchronized (mHostBreakers) {
+            if (mFailureThreshold == 0) {
+                return null;
+            }
+            CircuitBreaker breaker = mHostBreakers.get(host);
+            if (breaker == null) {
+                breaker = new CircuitBreaker(mFailureThreshold, mOpenCircuitDuration);
+                mHostBreakers.put(host, breaker);
+            }
+            return breaker;
+        }
+    }
+
+    private synchronized ThreadPoolExecutor getHedgeExecutor() {
+        if (mHedgeExecutor == null) {
+            // At most two requests per worker, the abandoned ones being bounded by the
+            // slots of their hosts: the ones beyond wait for a thread
+            int threads = 2 * mExecutor.getMaximumPoolSize();
+            mHedgeExecutor = new ThreadPoolExecutor(threads, threads,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    "thumbnail-request-" + mCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            mHedgeExecutor.allowCoreThreadTimeOut(true);
+            if (mCancelled) {
+                mHedgeExecutor.shutdownNow();
+            }
+        }
+        return mHedgeExecutor;
+    }
+
+    private Semaphore permitsFor(String host) {
+        synchronized (mHostPermits) {
+            Semaphore permits = mHostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(mPerHostLimit);
+                mHostPermits.put(host, permits);
+            }
+            return permits;
+        }
+    }
+
+    /**
+     * A response which is not successful.
+     */
+    private static class ResponseCodeException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int mCode;
+
+        ResponseCodeException(URL sourceURL, int code) {
+            super("Could not retrieve image " + sourceURL +
+                    ", server answered with response code: " + code);
+            mCode = code;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.news;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Encodes lists of articles with {@link ArticleCodec} and checks that they are decoded
+ * identical, from memory and from a file, and that damaged encodings are rejected.
+ */
+public class ArticleCodecTest {
+
+    private static final String[] SECTIONS = {"Science", "Technology", "Education"};
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void articlesSurviveTheRoundTrip() throws IOException {
+        List<Article> articles = feed(300);
+        // Articles missing some fields, and publication times out of order
+        articles.add(new Article(null, "\u00dcn\u00efc\u00f6d\u00e9 \u201cquotes\u201d \u7269\u7406",
+                null, PublicationDate.UNKNOWN, null, "https://www.theguardian.com/no-id", null));
+        articles.add(new Article("old/1", "", "", 0, "", "", ""));
+        articles.add(new Article("future/1", "Title", "Author",
+                PublicationDate.parse("2100-01-01T00:00:00Z"), "Science", "link", null));
+        articles.add(new Article("ancient/1", "Title", "Author", -86400000L * 365 * 100,
+                "Science", "link", null));
+
+        byte[] encoded = ArticleCodec.encode(articles);
+        assertArticlesEqual(articles, ArticleCodec.decode(ByteBuffer.wrap(encoded)));
+
+        assertTrue(ArticleCodec.decode(ByteBuffer.wrap(
+                ArticleCodec.encode(Collections.<Article>emptyList()))).isEmpty());
+    }
+
+    @Test
+    public void repeatedStringsAreWrittenOnce() throws IOException {
+        List<Article> articles = feed(300);
+        List<Article> decoded =
+                ArticleCodec.decode(ByteBuffer.wrap(ArticleCodec.encode(articles)));
+        // Interned: every section, and every author, is a single instance
+        assertSame(decoded.get(0).getSection(), decoded.get(15).getSection());
+        assertSame(decoded.get(0).getAuthor(), decoded.get(15).getAuthor());
+
+        // Below the size of the fields alone as text, dates in ISO-8601
+        int textBytes = 0;
+        for (Article article : articles) {
+            textBytes += article.getId().length() + article.getTitle().length()
+                    + article.getAuthor().length() + article.getPublicationDate().length()
+                    + article.getSection().length() + article.getLink().length()
+                    + article.getThumbnailUrl().length();
+        }
+        int encodedBytes = ArticleCodec.encode(articles).length;
+        assertTrue(encodedBytes + " bytes", encodedBytes < textBytes);
+        // Sections, authors and dates take a few bytes per article
+        int uniqueBytes = 0;
+        for (Article article : articles) {
+            uniqueBytes += article.getId().length() + article.getTitle().length()
+                    + article.getLink().length() + article.getThumbnailUrl().length();
+        }
+        assertTrue(encodedBytes + " bytes", encodedBytes < uniqueBytes + articles.size() * 16);
+    }
+
+    @Test
+    public void snapshotFileIsReadBack() throws IOException {
+        File file = new File(mFolder.getRoot(), "articles.snapshot");
+        List<Article> articles = feed(100);
+        ArticleCodec.write(articles, file);
+        assertArticlesEqual(articles, ArticleCodec.read(file));
+
+        // Replaced as a whole, with no temporary file left behind
+        ArticleCodec.write(articles.subList(0, 10), file);
+        assertArticlesEqual(articles.subList(0, 10), ArticleCodec.read(file));
+        assertEquals(1, mFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void damagedEncodingsAreRejected() {
+        byte[] encoded = ArticleCodec.encode(feed(10));
+        List<byte[]> damaged = new ArrayList<>();
+        // Truncated anywhere
+        for (int length = 0; length < encoded.length; length += 7) {
+            damaged.add(Arrays.copyOf(encoded, length));
+        }
+        // Another format
+        byte[] magic = encoded.clone();
+        magic[0] = 'X';
+        damaged.add(magic);
+        // Another version, which comes right after the magic number
+        byte[] version = encoded.clone();
+        version[4] = ArticleCodec.VERSION + 1;
+        damaged.add(version);
+
+        for (byte[] bytes : damaged) {
+            try {
+                ArticleCodec.decode(ByteBuffer.wrap(bytes));
+                fail("Decoded " + bytes.length + " damaged bytes");
+            } catch (IOException expected) {
+            }
+        }
+
+        try {
+            ArticleCodec.read(new File(mFolder.getRoot(), "missing"));
+            fail("Read a missing file");
+        } catch (IOException expected) {
+        }
+    }
+
+    /*
+     * Return a feed of the given number of articles, newest first, one minute apart.
+     */
+    private static List<Article> feed(int count) {
+        long time = PublicationDate.parse("2017-06-20T14:41:01Z");
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String section = SECTIONS[i % SECTIONS.length];
+            String id = section.toLowerCase(Locale.US) + "/2017/jun/20/article-" + i;
+            articles.add(new Article(id, "Title of the article number " + i,
+                    "Author " + (i % 5), time - i * 60000L, section,
+                    "https://www.theguardian.com/" + id,
+                    "https://media.guim.co.uk/" + i + "/500.jpg"));
+        }
+        return articles;
+    }
+
+    private static void assertArticlesEqual(List<Article> expected, List<Article> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Article a = expected.get(i);
+            Article b = actual.get(i);
+            assertEquals(a.getId(), b.getId());
+            assertEquals(a.getTitle(), b.getTitle());
+            assertEquals(a.getAuthor(), b.getAuthor());
+            assertEquals(a.getPublicationTime(), b.getPublicationTime());
+            assertEquals(a.getSection(), b.getSection());
+            assertEquals(a.getLink(), b.getLink());
+            assertEquals(a.getThumbnailUrl(), b.getThumbnailUrl());
+        }
+    }
+}
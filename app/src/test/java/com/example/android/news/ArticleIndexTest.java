@@ -0,0 +1,114 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Searches articles with {@link ArticleIndex}: prefixes of several words, case and accents,
+ * articles added again, and articles dropped once the index is full.
+ */
+public class ArticleIndexTest {
+
+    private static final long TIME = PublicationDate.parse("2017-06-20T14:41:01Z");
+
+    @Test
+    public void everyWordIsAPrefix() {
+        ArticleIndex index = new ArticleIndex(100);
+        index.add(article("1", "Quantum computing reaches a milestone", "Ian Sample", 1));
+        index.add(article("2", "Quantum dots light up new screens", "Alex Hern", 2));
+        index.add(article("3", "Computers learn to play Go", "Samuel Gibbs", 3));
+
+        assertEquals(Arrays.asList("2", "1"), ids(index.search("quant", 10)));
+        assertEquals(Arrays.asList("1"), ids(index.search("quant comp", 10)));
+        assertEquals(Arrays.asList("3", "1"), ids(index.search("comp", 10)));
+        // Authors and sections are searched too
+        assertEquals(Arrays.asList("3", "1"), ids(index.search("sam", 10)));
+        assertEquals(3, index.search("science", 10).size());
+        assertTrue(index.search("quantum go", 10).isEmpty());
+        assertTrue(index.search("z", 10).isEmpty());
+        assertTrue(index.search("  -- ", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+    }
+
+    @Test
+    public void caseAndAccentsAreIgnored() {
+        ArticleIndex index = new ArticleIndex(100);
+        index.add(article("1", "New species found off the coast of \u00cele d'Ouessant",
+                "Nicola Davis", 1));
+        index.add(article("2", "CAF\u00c9 CULTURE", "Nicola Davis", 2));
+
+        assertEquals(Arrays.asList("1"), ids(index.search("ile ouess", 10)));
+        assertEquals(Arrays.asList("1"), ids(index.search("\u00ceLE", 10)));
+        assertEquals(Arrays.asList("2"), ids(index.search("cafe", 10)));
+        assertEquals(Arrays.asList("2"), ids(index.search("caf\u00e9 cul", 10)));
+        assertEquals(Arrays.asList("coral", "reefs", "face", "ocean", "heatwave"),
+                ArticleIndex.tokenize("Coral reefs face... ocean \"heatwave\""));
+    }
+
+    @Test
+    public void articleAddedAgainReplacesTheOldOne() {
+        ArticleIndex index = new ArticleIndex(100);
+        index.add(article("1", "Exam season: live updates", "Sally Weale", 1));
+        long version = index.getVersion();
+        index.add(article("1", "Exam season: results are out", "Sally Weale", 1));
+
+        assertEquals(1, index.size());
+        assertTrue(index.getVersion() != version);
+        assertTrue(index.search("live", 10).isEmpty());
+        assertEquals(Arrays.asList("1"), ids(index.search("exam res", 10)));
+    }
+
+    @Test
+    public void oldestArticlesAreDropped() {
+        ArticleIndex index = new ArticleIndex(10);
+        for (int i = 0; i < 35; i++) {
+            index.add(article(String.valueOf(i), "Headline number " + i, "Author", i));
+        }
+        assertEquals(10, index.size());
+        List<String> expected = new ArrayList<>();
+        for (int i = 34; i >= 25; i--) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, ids(index.search("headline", 100)));
+        assertTrue(index.search("24", 10).isEmpty());
+        assertEquals(Arrays.asList("30"), ids(index.search("30", 10)));
+        // The words of the dropped articles are gone once the index has been built again
+        assertTrue(index.getWordCount() < 3 + 20);
+    }
+
+    @Test
+    public void newestResultsComeFirst() {
+        ArticleIndex index = new ArticleIndex(1000);
+        // Added in no particular order of publication
+        for (int i = 0; i < 500; i++) {
+            int minutes = (i * 7919) % 500;
+            index.add(article(String.valueOf(minutes), "Climate report", "Author", minutes));
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 499; i >= 480; i--) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, ids(index.search("climate rep", 20)));
+        assertEquals(500, index.search("c", 1000).size());
+        assertTrue(index.search("climate", 0).isEmpty());
+    }
+
+    private static Article article(String id, String title, String author, int minutes) {
+        return new Article(id, title, author, TIME + minutes * 60000L, "Science",
+                "https://www.theguardian.com/" + id, null);
+    }
+
+    private static List<String> ids(List<Article> articles) {
+        List<String> ids = new ArrayList<>();
+        for (Article article : articles) {
+            ids.add(article.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.android.news;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Refreshes a list of articles through {@link ArticleListDiffer}, and counts the rows that
+ * the updates it dispatches make the RecyclerView bind again, as opposed to clearing the list
+ * and adding all the articles back, which binds every row again.
+ */
+public class ArticleListDifferTest {
+
+    private static final int ITEM_COUNT = 30;
+
+    // Work waiting to be run by the test, as a background thread or a main thread would
+    private final BlockingQueue<Runnable> mBackground = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Runnable> mMainThread = new LinkedBlockingQueue<>();
+    private final BindCounter mCounter = new BindCounter();
+    private final ArticleListDiffer mDiffer = new ArticleListDiffer(mCounter,
+            new QueueExecutor(mBackground), new QueueExecutor(mMainThread));
+
+    @Test
+    public void refreshWithTwoNewArticlesBindsTwoRows() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 2; i < ITEM_COUNT + 2; i++) {
+            articles.add(article(i, "Title " + i));
+        }
+        mDiffer.submitList(articles);
+        assertEquals(ITEM_COUNT, mCounter.mBound);
+        assertSame(articles, mDiffer.getList());
+
+        // Two articles published since the last load, at the top of the feed
+        List<Article> refreshed = new ArrayList<>();
+        refreshed.add(article(0, "Title 0"));
+        refreshed.add(article(1, "Title 1"));
+        for (int i = 2; i < ITEM_COUNT + 2; i++) {
+            // Loaded again: same contents, different objects
+            refreshed.add(article(i, "Title " + i));
+        }
+        mCounter.reset();
+        mDiffer.submitList(refreshed);
+        // Nothing changes on screen until the differences have been computed
+        assertSame(articles, mDiffer.getList());
+        runAll(mBackground);
+        runAll(mMainThread);
+
+        assertSame(refreshed, mDiffer.getList());
+        assertEquals(2, mCounter.mInserted);
+        assertEquals(0, mCounter.mRemoved);
+        assertEquals(0, mCounter.mChanged);
+        // Rather than every row, as clearing the list and adding all the articles back would
+        assertEquals(2, mCounter.mBound);
+    }
+
+    @Test
+    public void changedArticleBindsItsRowOnly() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            articles.add(article(i, "Title " + i));
+        }
+        mDiffer.submitList(articles);
+
+        List<Article> refreshed = new ArrayList<>(articles);
+        refreshed.set(5, article(5, "Updated title"));
+        mCounter.reset();
+        mDiffer.submitList(refreshed);
+        runAll(mBackground);
+        runAll(mMainThread);
+
+        assertEquals(1, mCounter.mChanged);
+        assertEquals(1, mCounter.mBound);
+    }
+
+    @Test
+    public void stableIdsAreTheSameAcrossLoads() {
+        Article article = article(7, "Title 7");
+        long id = article.getStableId();
+        assertEquals(id, article.getStableId());
+        assertEquals(id, article(7, "Updated title").getStableId());
+        assertNotEquals(id, article(8, "Title 7").getStableId());
+        assertEquals(Article.NO_STABLE_ID, new Article(null, "Title", "Author",
+                PublicationDate.UNKNOWN, "Science", null, null).getStableId());
+    }
+
+    @Test
+    public void supersededListIsNeverShown() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            articles.add(article(i, "Title " + i));
+        }
+        mDiffer.submitList(articles);
+
+        List<Article> first = new ArrayList<>(articles);
+        first.add(article(ITEM_COUNT, "Title " + ITEM_COUNT));
+        List<Article> second = new ArrayList<>(first);
+        second.add(article(ITEM_COUNT + 1, "Title " + (ITEM_COUNT + 1)));
+        final int[] committed = new int[2];
+        mDiffer.submitList(first, new Runnable() {
+            @Override
+            public void run() {
+                committed[0]++;
+            }
+        });
+        // Submitted before the differences of the first list are dispatched
+        mDiffer.submitList(second, new Runnable() {
+            @Override
+            public void run() {
+                committed[1]++;
+            }
+        });
+        assertSame(second, mDiffer.getLatestList());
+        mCounter.reset();
+        runAll(mBackground);
+        runAll(mMainThread);
+
+        assertSame(second, mDiffer.getList());
+        assertEquals(0, committed[0]);
+        assertEquals(1, committed[1]);
+        // The updates lead from the list on screen to the second list, in one go
+        assertEquals(2, mCounter.mInserted);
+    }
+
+    private static void runAll(BlockingQueue<Runnable> queue) {
+        Runnable runnable;
+        while ((runnable = queue.poll()) != null) {
+            runnable.run();
+        }
+    }
+
+    private static Article article(int id, String title) {
+        return new Article("physics/" + id, title, "Author",
+                PublicationDate.parse("2017-06-20T14:41:01Z"), "Science",
+                "https://www.theguardian.com/physics/" + id,
+                "https://media.guim.co.uk/" + id + ".jpg");
+    }
+
+    private static class QueueExecutor implements Executor {
+        private final BlockingQueue<Runnable> mQueue;
+
+        QueueExecutor(BlockingQueue<Runnable> queue) {
+            mQueue = queue;
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            mQueue.add(runnable);
+        }
+    }
+
+    /*
+     * Counts the rows that a RecyclerView would bind again for the dispatched updates:
+     * the inserted and the changed ones.
+     */
+    private static class BindCounter implements ListUpdateCallback {
+        int mInserted;
+        int mRemoved;
+        int mChanged;
+        int mBound;
+
+        void reset() {
+            mInserted = 0;
+            mRemoved = 0;
+            mChanged = 0;
+            mBound = 0;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            mInserted += count;
+            mBound += count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            mRemoved += count;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            mChanged += count;
+            mBound += count;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes the rows of articles with {@link ArticleRows}, and checks that the rows prepared in
+ * advance are the ones found when the list is bound.
+ */
+public class ArticleRowsTest {
+
+    private static final int SCIENCE_COLOR = 0xff005689;
+
+    private final ArticleRows mRows =
+            new ArticleRows(Collections.singletonMap("Science", SCIENCE_COLOR));
+
+    @Test
+    public void preparedRowsAreFound() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            articles.add(article("Science", "Author " + i));
+        }
+        mRows.prepare(articles);
+        ArticleRow row = mRows.get(articles.get(7));
+        for (Article article : articles) {
+            mRows.get(article);
+        }
+        assertEquals(51, mRows.hitCount());
+        assertEquals(0, mRows.missCount());
+        assertSame(row, mRows.get(articles.get(7)));
+
+        // Made on the spot otherwise, once
+        Article other = article("Science", "Someone else");
+        assertSame(mRows.get(other), mRows.get(other));
+        assertEquals(1, mRows.missCount());
+
+        mRows.clear();
+        assertTrue(row != mRows.get(articles.get(7)));
+    }
+
+    @Test
+    public void rowsHoldWhatIsShown() {
+        ArticleRow science = mRows.get(article("Science", "Ian Sample"));
+        assertEquals("Gravitational waves detected", science.getTitle());
+        assertEquals("Ian Sample", science.getAuthorLine());
+        assertEquals(SCIENCE_COLOR, science.getSectionColor());
+        assertEquals(PublicationDate.formatForDisplay(
+                PublicationDate.parse("2017-06-20T14:41:01Z")), science.getDate());
+
+        // Unknown sections have no color, and missing fields are shown empty
+        ArticleRow empty = mRows.get(new Article(null, null, null, PublicationDate.UNKNOWN,
+                "Sport", null, null));
+        assertEquals(ArticleRow.NO_COLOR, empty.getSectionColor());
+        assertEquals("", empty.getTitle());
+        assertEquals("", empty.getAuthorLine());
+        assertEquals("Sport", empty.getSection());
+
+        StringBuilder authors = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            authors.append("Author ").append(i).append(", ");
+        }
+        String line = mRows.get(article("Science", authors.toString())).getAuthorLine();
+        assertTrue(line, line.length() <= ArticleRow.MAX_AUTHOR_LENGTH);
+        assertTrue(line, line.startsWith("Author 0, Author 1") && line.endsWith("\u2026"));
+    }
+
+    @Test
+    public void rowsOfUnreachableArticlesAreDropped() throws InterruptedException {
+        for (int batch = 0; batch < 20; batch++) {
+            List<Article> articles = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                articles.add(article("Science", "Author " + i));
+            }
+            mRows.prepare(articles);
+        }
+        // The articles of the last batch are gone too
+        for (int i = 0; i < 50 && mRows.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(0, mRows.size());
+    }
+
+    private static Article article(String section, String author) {
+        return new Article("science/1", "Gravitational waves detected", author,
+                PublicationDate.parse("2017-06-20T14:41:01Z"), section,
+                "https://www.theguardian.com/science/1", null);
+    }
+}
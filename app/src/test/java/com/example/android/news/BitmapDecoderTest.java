@@ -0,0 +1,79 @@
+package com.example.android.news;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the memory retained by the thumbnails of a feed when they are decoded at full
+ * resolution, and when they are decoded by {@link BitmapDecoder} at the size of the
+ * thumbnail view.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 25)
+public class BitmapDecoderTest {
+
+    private static final int FEED_SIZE = 30;
+    // Size at which the API serves thumbnails
+    private static final int SOURCE_WIDTH = 500;
+    private static final int SOURCE_HEIGHT = 300;
+    // Size of the thumbnail view (72dp x 52dp) on an xhdpi screen
+    private static final int VIEW_WIDTH = 144;
+    private static final int VIEW_HEIGHT = 104;
+
+    @Test
+    public void downsampledFeedRetainsFewerBytes() throws Exception {
+        byte[] jpeg = jpeg(SOURCE_WIDTH, SOURCE_HEIGHT);
+        BitmapDecoder decoder = new BitmapDecoder(VIEW_WIDTH, VIEW_HEIGHT, true, null);
+
+        long fullBytes = 0;
+        long downsampledBytes = 0;
+        for (int i = 0; i < FEED_SIZE; i++) {
+            Bitmap full = BitmapFactory.decodeStream(new ByteArrayInputStream(jpeg));
+            fullBytes += full.getByteCount();
+
+            Bitmap downsampled = decoder.decode(new ByteArrayInputStream(jpeg));
+            downsampledBytes += downsampled.getByteCount();
+            // Never smaller than the view, so that it is not blurred when scaled up
+            assertTrue(downsampled.getWidth() >= VIEW_WIDTH);
+            assertTrue(downsampled.getHeight() >= VIEW_HEIGHT);
+            assertEquals(Bitmap.Config.RGB_565, downsampled.getConfig());
+        }
+
+        assertEquals(FEED_SIZE * SOURCE_WIDTH * SOURCE_HEIGHT * 4, fullBytes);
+        // Half the width, half the height, half the bytes per pixel
+        assertTrue(downsampledBytes * 8 <= fullBytes);
+    }
+
+    @Test
+    public void sampleSizeKeepsImageAtLeastAsLargeAsTarget() {
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(500, 300, 500, 300));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(500, 300, 300, 200));
+        assertEquals(2, BitmapDecoder.calculateInSampleSize(500, 300, 144, 104));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(500, 300, 216, 156));
+        assertEquals(4, BitmapDecoder.calculateInSampleSize(500, 300, 108, 75));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(100, 60, 216, 156));
+        assertEquals(1, BitmapDecoder.calculateInSampleSize(500, 300, 0, 0));
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+}
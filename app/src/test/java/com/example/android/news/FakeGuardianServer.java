@@ -0,0 +1,801 @@
+package com.example.android.news;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Local stand-in for the content API of The Guardian, which serves "search" responses and
+ * thumbnail images from an HTTP server in the process of the tests, so that the loads of the
+ * feed can be measured repeatedly without the rate limits and the variations of the real API.
+ * <p>
+ * The search responses are synthetic: every section holds {@link #setTotalResults(int) a
+ * number of results}, or {@link #setSection(String, int, long, long) its own}, published at
+ * regular intervals. A search merges the results of its sections, newest first, keeps the
+ * ones between its "from-date" and "to-date" parameters, and pages them by its "page-size"
+ * and "page" parameters, answering "400 Bad Request" past the last page, as the API does.
+ * Their thumbnails are served by the server itself: every thumbnail is the same image, which
+ * carries its name in a comment, so that no two of them are the same bytes. A recorded
+ * response may be served instead, whose thumbnails are taken to the server too. Responses are
+ * compressed when the request accepts gzip, and carry {@link #setETag(String) an ETag} if
+ * one is set, as the API does.
+ * <p>
+ * How the responses are served is scripted by a {@link Profile}, one for the searches and one
+ * for the thumbnails, which a section or a thumbnail may override: the latency of the
+ * response, the bandwidth of its body, and the share of the requests which fail with a server
+ * error, or whose body is cut in the middle. The failing requests are spread evenly over the
+ * requests, in the order they come, rather than picked at random, so that a run always meets
+ * the same number of them. The first requests of a section or a thumbnail may also fail in a
+ * given way, see {@link Fault}. The searches of a section may also be
+ * {@link #hold(String) held back}, so that a load can be kept in flight.
+ */
+public class FakeGuardianServer {
+
+    /**
+     * Ways in which a request fails, see {@link Profile#withFault(Fault, int)}.
+     */
+    public enum Fault {
+        // Answered by "503 Service Unavailable"
+        SERVER_ERROR,
+        // The connection is closed before any response
+        RESET,
+        // The connection is closed after half of the body
+        TRUNCATED,
+        // Not answered until the server is stopped
+        STALLED,
+        // Half of the body, then nothing more until the server is stopped
+        STALLED_BODY,
+        // Answered with an empty body, which is neither a search response nor an image
+        EMPTY_BODY
+    }
+
+    /**
+     * How the responses of the server are sent. Profiles are immutable: every "with" method
+     * returns a new profile.
+     */
+    public static final class Profile {
+
+        // Responses sent at once, at full speed, without any failure
+        public static final Profile FAST = new Profile(0, 0, 0, 0, 0, 0, null, 0);
+
+        private final long mMinLatency;
+        private final long mMaxLatency;
+        private final long mBandwidth;
+        private final double mErrorRate;
+        private final double mTruncationRate;
+        private final long mPause;
+        private final Fault mFault;
+        private final int mFaultCount;
+
+        private Profile(long minLatency, long maxLatency, long bandwidth, double errorRate,
+                        double truncationRate, long pause, Fault fault, int faultCount) {
+            mMinLatency = minLatency;
+            mMaxLatency = maxLatency;
+            mBandwidth = bandwidth;
+            mErrorRate = errorRate;
+            mTruncationRate = truncationRate;
+            mPause = pause;
+            mFault = fault;
+            mFaultCount = faultCount;
+        }
+
+        /**
+         * Return this profile, with a time before the response headers taken at random
+         * between the given ones, in milliseconds.
+         */
+        public Profile withLatency(long minLatency, long maxLatency) {
+            if (minLatency < 0 || maxLatency < minLatency) {
+                throw new IllegalArgumentException("Invalid latency range");
+            }
+            return new Profile(minLatency, maxLatency, mBandwidth, mErrorRate, mTruncationRate,
+                    mPause, mFault, mFaultCount);
+        }
+
+        /**
+         * Return this profile, with bodies sent at the given number of bytes per second,
+         * 0 for as fast as possible.
+         */
+        public Profile withBandwidth(long bandwidth) {
+            return new Profile(mMinLatency, mMaxLatency, bandwidth, mErrorRate, mTruncationRate,
+                    mPause, mFault, mFaultCount);
+        }
+
+        /**
+         * Return this profile, with the given share of the requests answered by
+         * "503 Service Unavailable".
+         */
+        public Profile withErrors(double errorRate) {
+            return new Profile(mMinLatency, mMaxLatency, mBandwidth, checkRate(errorRate),
+                    mTruncationRate, mPause, mFault, mFaultCount);
+        }
+
+        /**
+         * Return this profile, with the given share of the responses closed after half of
+         * their body.
+         */
+        public Profile withTruncation(double truncationRate) {
+            return new Profile(mMinLatency, mMaxLatency, mBandwidth, mErrorRate,
+                    checkRate(truncationRate), mPause, mFault, mFaultCount);
+        }
+
+        /**
+         * Return this profile, with bodies which stop for the given time, in milliseconds,
+         * after their first half.
+         */
+        public Profile withPause(long pause) {
+            return new Profile(mMinLatency, mMaxLatency, mBandwidth, mErrorRate,
+                    mTruncationRate, pause, mFault, mFaultCount);
+        }
+
+        /**
+         * Return this profile, with the given number of the first requests of each section,
+         * or of each thumbnail, failing in the given way, {@link Integer#MAX_VALUE} for all
+         * of them.
+         */
+        public Profile withFault(Fault fault, int count) {
+            return new Profile(mMinLatency, mMaxLatency, mBandwidth, mErrorRate,
+                    mTruncationRate, mPause, fault, count);
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Invalid rate: " + rate);
+            }
+            return rate;
+        }
+    }
+
+    /**
+     * Called by the server as every search arrives, before it is answered.
+     */
+    public interface Listener {
+        void onSearch(GuardianQuery query);
+    }
+
+    /*
+     * Results of a section: their number, the time of the newest one before the newest result
+     * of the server, and the time between two of them.
+     */
+    private static final class Section {
+        final int mTotalResults;
+        final long mOffset;
+        final long mInterval;
+
+        Section(int totalResults, long offset, long interval) {
+            mTotalResults = totalResults;
+            mOffset = offset;
+            mInterval = interval;
+        }
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String THUMBNAIL_PATH = "/thumbnails/";
+    // Host of the thumbnails of the recorded responses
+    private static final String MEDIA_URL = "https://media.guim.co.uk/";
+    // Publication time of the newest synthetic result, and time between two results
+    private static final long NEWEST_TIME = PublicationDate.parse("2017-06-20T10:00:00Z");
+    private static final long RESULT_INTERVAL = 7 * 60 * 1000; /* milliseconds */
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    // Bytes sent at once when the bandwidth is limited
+    private static final int CHUNK_SIZE = 1024;
+
+    private static final String[] TOPICS = {"quantum", "dark matter", "gravitational waves",
+            "superconductors", "neutrinos", "fusion", "exoplanets", "graphene", "lasers",
+            "particle physics", "black holes", "climate"};
+    private static final String[] AUTHORS = {"Ian Sample", "Hannah Devlin", "Nicola Davis",
+            "Alex Hern", "Damian Carrington", "Richard Adams"};
+    private static final String RESULT = "{\"id\":\"%1$s/2017/jun/%2$d\",\"type\":\"article\","
+            + "\"sectionId\":\"%1$s\",\"sectionName\":\"%3$s\","
+            + "\"webPublicationDate\":\"%4$s\",\"webTitle\":\"%5$s\","
+            + "\"webUrl\":\"https://www.theguardian.com/%1$s/2017/jun/%2$d\","
+            + "\"apiUrl\":\"https://content.guardianapis.com/%1$s/2017/jun/%2$d\","
+            + "\"fields\":{\"thumbnail\":\"%6$s\"},"
+            + "\"tags\":[{\"id\":\"profile/%2$d\",\"type\":\"contributor\","
+            + "\"webTitle\":\"%7$s\"}]}";
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final Random mRandom;
+    private final byte[] mThumbnail;
+    private volatile Profile mSearchProfile = Profile.FAST;
+    private volatile Profile mThumbnailProfile = Profile.FAST;
+    private final Map<String, Profile> mSectionProfiles = new ConcurrentHashMap<>();
+    private final Map<String, Profile> mNamedThumbnailProfiles = new ConcurrentHashMap<>();
+    private volatile int mTotalResults = 1000;
+    // Sections with results of their own, in the order they were set
+    private volatile Map<String, Section> mSections = Collections.emptyMap();
+    private volatile byte[] mRecordedResponse;
+    private volatile String mETag;
+    private volatile Listener mListener;
+    // Released when the searches of a section held back may be answered, by section
+    private final Map<String, CountDownLatch> mHeldSections = new ConcurrentHashMap<>();
+    // Released when the server stops, so that the stalled requests end
+    private final CountDownLatch mStopped = new CountDownLatch(1);
+
+    private final AtomicLong mSearchCount = new AtomicLong();
+    private final AtomicLong mThumbnailCount = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> mSectionSearchCounts =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> mNamedThumbnailCounts =
+            new ConcurrentHashMap<>();
+    private final AtomicLong mNotModifiedCount = new AtomicLong();
+    private final AtomicLong mErrorCount = new AtomicLong();
+    private final AtomicLong mTruncatedCount = new AtomicLong();
+    private final AtomicLong mBytesSent = new AtomicLong();
+    private final AtomicInteger mThumbnailsInFlight = new AtomicInteger();
+    private final AtomicInteger mMaxThumbnailsInFlight = new AtomicInteger();
+    // Client side addresses of the requests, one per connection
+    private final Set<InetSocketAddress> mConnections =
+            Collections.synchronizedSet(new HashSet<InetSocketAddress>());
+
+    /*
+     * Constructor of a server on a free port of the loopback interface, started at once.
+     * The latencies are drawn from a generator of the given seed.
+     */
+    public FakeGuardianServer(long seed) throws IOException {
+        mRandom = new Random(seed);
+        mThumbnail = drawThumbnail();
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // One thread per request, so that a slow response does not hold the other ones
+        mServer.setExecutor(mExecutor);
+        mServer.createContext(GuardianQuery.SEARCH_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mConnections.add(exchange.getRemoteAddress());
+                long request = mSearchCount.incrementAndGet();
+                GuardianQuery query = GuardianQuery.parse(exchange.getRequestURI().toString());
+                String[] sections = sections(query);
+                // The profile of the first section which has one, or else the one of every
+                // search, counting the requests of the first section
+                Profile profile = null;
+                long sectionRequest = 0;
+                for (String section : sections) {
+                    long count = increment(mSectionSearchCounts, section);
+                    if (profile == null && (sectionRequest == 0
+                            || mSectionProfiles.containsKey(section))) {
+                        profile = mSectionProfiles.get(section);
+                        sectionRequest = count;
+                    }
+                }
+                Listener listener = mListener;
+                if (listener != null) {
+                    listener.onSearch(query);
+                }
+                awaitRelease(sections);
+
+                String eTag = mETag;
+                if (eTag != null) {
+                    if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        mNotModifiedCount.incrementAndGet();
+                        sendStatus(exchange, 304);
+                        return;
+                    }
+                    exchange.getResponseHeaders().set("ETag", eTag);
+                }
+                byte[] body = mRecordedResponse;
+                if (body == null) {
+                    body = getSearchResponse(query);
+                }
+                if (body == null) {
+                    sendStatus(exchange, 400);
+                    return;
+                }
+                respond(exchange, profile != null ? profile : mSearchProfile, request,
+                        sectionRequest, "application/json", body);
+            }
+        });
+        mServer.createContext(THUMBNAIL_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mConnections.add(exchange.getRemoteAddress());
+                long request = mThumbnailCount.incrementAndGet();
+                String name = exchange.getRequestURI().getPath()
+                        .substring(THUMBNAIL_PATH.length());
+                long nameRequest = increment(mNamedThumbnailCounts, name);
+                Profile profile = mNamedThumbnailProfiles.get(name);
+                int inFlight = mThumbnailsInFlight.incrementAndGet();
+                int max;
+                do {
+                    max = mMaxThumbnailsInFlight.get();
+                } while (inFlight > max && !mMaxThumbnailsInFlight.compareAndSet(max, inFlight));
+                try {
+                    respond(exchange, profile != null ? profile : mThumbnailProfile, request,
+                            nameRequest, "image/jpeg", getThumbnail(name));
+                } finally {
+                    mThumbnailsInFlight.decrementAndGet();
+                }
+            }
+        });
+        mServer.start();
+    }
+
+    /**
+     * Return the base URL of the server, which stands for the base URL of the API.
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    /**
+     * Return the query of the search of the server, without any parameter.
+     */
+    public GuardianQuery getSearchQuery() {
+        return new GuardianQuery(getUrl() + GuardianQuery.SEARCH_PATH);
+    }
+
+    /**
+     * Return the URL of the thumbnail of the given name.
+     */
+    public String getThumbnailUrl(String name) {
+        return getUrl() + THUMBNAIL_PATH + name;
+    }
+
+    /**
+     * Return the image served as the thumbnail of the given name: the same for every name,
+     * with the name in a comment.
+     */
+    public byte[] getThumbnail(String name) {
+        byte[] comment = name.getBytes(UTF_8);
+        int length = 2 + comment.length;
+        ByteArrayOutputStream image = new ByteArrayOutputStream(mThumbnail.length + 2 + length);
+        // Start of image, then a comment segment, then the rest of the image
+        image.write(mThumbnail, 0, 2);
+        image.write(0xff);
+        image.write(0xfe);
+        image.write(length >> 8);
+        image.write(length & 0xff);
+        image.write(comment, 0, comment.length);
+        image.write(mThumbnail, 2, mThumbnail.length - 2);
+        return image.toByteArray();
+    }
+
+    public void setSearchProfile(Profile profile) {
+        mSearchProfile = profile;
+    }
+
+    /**
+     * Serve the searches of the given section with the given profile, rather than the one
+     * of every search.
+     */
+    public void setSearchProfile(String section, Profile profile) {
+        mSectionProfiles.put(section, profile);
+    }
+
+    public void setThumbnailProfile(Profile profile) {
+        mThumbnailProfile = profile;
+    }
+
+    /**
+     * Serve the thumbnail of the given name with the given profile, rather than the one of
+     * every thumbnail.
+     */
+    public void setThumbnailProfile(String name, Profile profile) {
+        mNamedThumbnailProfiles.put(name, profile);
+    }
+
+    /**
+     * Set the number of synthetic results of every section which has none of its own.
+     */
+    public void setTotalResults(int totalResults) {
+        mTotalResults = totalResults;
+    }
+
+    /**
+     * Publish the given number of results in the given section, the newest one the given
+     * time before the newest result of the server, and the next ones the given interval
+     * apart, in milliseconds. Searches without any section cover the sections set this way,
+     * or Science alone if there are none.
+     */
+    public synchronized void setSection(String section, int totalResults, long offset,
+                                        long interval) {
+        Map<String, Section> sections = new LinkedHashMap<>(mSections);
+        sections.put(section, new Section(totalResults, offset, interval));
+        mSections = sections;
+    }
+
+    /**
+     * Serve the given response to every search, whatever its parameters, rather than
+     * synthetic ones, or synthetic ones again if null.
+     */
+    public void setRecordedResponse(byte[] response) {
+        mRecordedResponse = response == null ? null : new String(response, UTF_8)
+                .replace(MEDIA_URL, getUrl() + THUMBNAIL_PATH).getBytes(UTF_8);
+    }
+
+    /**
+     * Serve the given resource of the tests to every search, see
+     * {@link #setRecordedResponse(byte[])}.
+     */
+    public void setRecordedResponse(String resourceName) throws IOException {
+        InputStream input = getClass().getClassLoader().getResourceAsStream(resourceName);
+        if (input == null) {
+            throw new IOException("Missing resource " + resourceName);
+        }
+        try {
+            setRecordedResponse(readFully(input));
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Send the given ETag with every search response, and answer "304 Not Modified" to the
+     * searches which have it already, or neither if null.
+     */
+    public void setETag(String eTag) {
+        mETag = eTag;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Hold the searches of the given section back, as they come, until the section is
+     * released, see {@link #release(String)}.
+     */
+    public void hold(String section) {
+        mHeldSections.put(section, new CountDownLatch(1));
+    }
+
+    /**
+     * Answer the searches of the given section which are held back, and the next ones at once.
+     */
+    public void release(String section) {
+        CountDownLatch latch = mHeldSections.remove(section);
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    public long getSearchCount() {
+        return mSearchCount.get();
+    }
+
+    // Searches which cover the given section
+    public long getSearchCount(String section) {
+        return count(mSectionSearchCounts, section);
+    }
+
+    public long getThumbnailCount() {
+        return mThumbnailCount.get();
+    }
+
+    public long getThumbnailCount(String name) {
+        return count(mNamedThumbnailCounts, name);
+    }
+
+    // Searches answered by "304 Not Modified"
+    public long getNotModifiedCount() {
+        return mNotModifiedCount.get();
+    }
+
+    // Requests answered by a server error
+    public long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    // Responses cut in the middle of their body
+    public long getTruncatedCount() {
+        return mTruncatedCount.get();
+    }
+
+    // Bytes of the bodies sent, compressed or not
+    public long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    // Most thumbnail requests served at once so far
+    public int getMaxThumbnailsInFlight() {
+        return mMaxThumbnailsInFlight.get();
+    }
+
+    // Connections the requests have come through so far
+    public int getConnectionCount() {
+        return mConnections.size();
+    }
+
+    /**
+     * Stop the server at once, ending the responses held back or stalled, and the ones being
+     * sent. The server may be stopped more than once.
+     */
+    public void stop() {
+        mStopped.countDown();
+        for (String section : mHeldSections.keySet()) {
+            release(section);
+        }
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Return the body of the synthetic response to the given search, before compression, or
+     * null if the search asks for a page past the last one.
+     */
+    public byte[] getSearchResponse(GuardianQuery query) {
+        final String[] sections = sections(query);
+        int pageSize = Integer.parseInt(value(query, "page-size", "" + DEFAULT_PAGE_SIZE));
+        int page = Integer.parseInt(value(query, "page", "1"));
+        String fromDate = query.getParameter("from-date");
+        long fromTime = fromDate == null ? Long.MIN_VALUE : PublicationDate.parse(fromDate);
+        String toDate = query.getParameter("to-date");
+        long toTime = toDate == null ? Long.MAX_VALUE : PublicationDate.parse(toDate);
+
+        // Time, section and index of the results, newest first, then in the order of the
+        // sections of the search
+        List<long[]> results = new ArrayList<>();
+        for (int s = 0; s < sections.length; s++) {
+            Section section = section(sections[s]);
+            for (int i = 0; i < section.mTotalResults; i++) {
+                long time = NEWEST_TIME - section.mOffset - i * section.mInterval;
+                if (time < fromTime) {
+                    break;
+                }
+                if (time <= toTime) {
+                    results.add(new long[]{time, s, i});
+                }
+            }
+        }
+        Collections.sort(results, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                if (a[0] != b[0]) {
+                    return a[0] > b[0] ? -1 : 1;
+                }
+                return a[1] != b[1] ? (a[1] < b[1] ? -1 : 1) : (a[2] < b[2] ? -1 : 1);
+            }
+        });
+
+        int total = results.size();
+        int from = (page - 1) * pageSize;
+        if (page > 1 && from >= total) {
+            return null;
+        }
+        StringBuilder body = new StringBuilder();
+        for (int r = from; r < Math.min(from + pageSize, total); r++) {
+            String section = sections[(int) results.get(r)[1]];
+            int i = (int) results.get(r)[2];
+            if (body.length() > 0) {
+                body.append(',');
+            }
+            body.append(String.format(RESULT, section, i,
+                    Character.toUpperCase(section.charAt(0)) + section.substring(1),
+                    PublicationDate.format(results.get(r)[0]),
+                    "New results in " + TOPICS[i % TOPICS.length] + ", number " + i,
+                    getThumbnailUrl(section + "/" + i + ".jpg"),
+                    AUTHORS[i % AUTHORS.length]));
+        }
+        return ("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\","
+                + "\"total\":" + total + ",\"startIndex\":" + (from + 1)
+                + ",\"pageSize\":" + pageSize + ",\"currentPage\":" + page
+                + ",\"pages\":" + ((total + pageSize - 1) / pageSize)
+                + ",\"orderBy\":\"newest\",\"results\":[" + body + "]}}").getBytes(UTF_8);
+    }
+
+    private Section section(String section) {
+        Section results = mSections.get(section);
+        return results != null ? results : new Section(mTotalResults, 0, RESULT_INTERVAL);
+    }
+
+    // Sections of the given search, the ones with results of their own or Science if none
+    private String[] sections(GuardianQuery query) {
+        String sections = query.getParameter("section");
+        if (sections != null && !sections.isEmpty()) {
+            return sections.split("[|,]");
+        }
+        Set<String> ownSections = mSections.keySet();
+        return ownSections.isEmpty() ? new String[]{"science"}
+                : ownSections.toArray(new String[ownSections.size()]);
+    }
+
+    /*
+     * Wait until none of the given sections is held back.
+     */
+    private void awaitRelease(String[] sections) throws InterruptedIOException {
+        for (String section : sections) {
+            CountDownLatch latch = mHeldSections.get(section);
+            if (latch != null) {
+                await(latch);
+            }
+        }
+    }
+
+    /*
+     * Send the given body, as scripted by the given profile for the given request, counted
+     * from 1, which is the given request of its section or thumbnail.
+     */
+    private void respond(HttpExchange exchange, Profile profile, long request, long ownRequest,
+                         String contentType, byte[] body) throws IOException {
+        try {
+            sleep(latency(profile));
+            Fault fault = ownRequest <= profile.mFaultCount ? profile.mFault : null;
+            if (fault == Fault.STALLED) {
+                await(mStopped);
+                return;
+            }
+            if (fault == Fault.RESET) {
+                // Closed without any response
+                return;
+            }
+            if (fault == Fault.SERVER_ERROR || isScripted(request, profile.mErrorRate)) {
+                mErrorCount.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            if (fault == Fault.EMPTY_BODY) {
+                body = new byte[0];
+            }
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")
+                    && !contentType.startsWith("image/") && body.length > 0) {
+                body = gzip(body);
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+
+            boolean truncated = fault == Fault.TRUNCATED || fault == Fault.STALLED_BODY
+                    || isScripted(request, profile.mTruncationRate);
+            int half = body.length / 2;
+            int length = truncated ? half : body.length;
+            OutputStream output = exchange.getResponseBody();
+            long start = System.nanoTime();
+            for (int offset = 0; offset < length; ) {
+                if (offset == half && profile.mPause > 0) {
+                    sleep(profile.mPause);
+                    start += TimeUnit.MILLISECONDS.toNanos(profile.mPause);
+                }
+                int count = Math.min(CHUNK_SIZE, (offset < half ? half : length) - offset);
+                output.write(body, offset, count);
+                output.flush();
+                mBytesSent.addAndGet(count);
+                offset += count;
+                if (profile.mBandwidth > 0) {
+                    long due = TimeUnit.SECONDS.toNanos(offset) / profile.mBandwidth;
+                    sleep(TimeUnit.NANOSECONDS.toMillis(due - (System.nanoTime() - start)));
+                }
+            }
+            if (fault == Fault.STALLED_BODY) {
+                await(mStopped);
+            } else if (truncated) {
+                mTruncatedCount.incrementAndGet();
+            }
+        } finally {
+            // Closing a response whose body is incomplete closes its connection
+            exchange.close();
+        }
+    }
+
+    private long latency(Profile profile) {
+        if (profile.mMaxLatency == profile.mMinLatency) {
+            return profile.mMinLatency;
+        }
+        synchronized (mRandom) {
+            return profile.mMinLatency
+                    + (long) (mRandom.nextDouble() * (profile.mMaxLatency - profile.mMinLatency));
+        }
+    }
+
+    /*
+     * Return true if the given request, counted from 1, is one of the given share of the
+     * requests: one every 1 / rate requests, starting from the last of the first ones.
+     */
+    static boolean isScripted(long request, double rate) {
+        return (long) Math.floor(request * rate) > (long) Math.floor((request - 1) * rate);
+    }
+
+    private static String value(GuardianQuery query, String name, String defaultValue) {
+        String value = query.getParameter(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    // Count one more request of the given key, and return the count
+    private static long increment(ConcurrentMap<String, AtomicLong> counts, String key) {
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            counts.putIfAbsent(key, new AtomicLong());
+            count = counts.get(key);
+        }
+        return count.incrementAndGet();
+    }
+
+    private static long count(Map<String, AtomicLong> counts, String key) {
+        AtomicLong count = counts.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void sendStatus(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+        exchange.close();
+    }
+
+    private static void await(CountDownLatch latch) throws InterruptedIOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            // The server is stopping
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // The server is stopping
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /*
+     * Return a JPEG image of the size of the thumbnails of the API.
+     */
+    private static byte[] drawThumbnail() throws IOException {
+        BufferedImage image = new BufferedImage(500, 300, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(0x005689), 500, 300,
+                new Color(0xffbb00)));
+        graphics.fillRect(0, 0, 500, 300);
+        graphics.dispose();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, "jpg", output)) {
+            throw new IOException("No JPEG encoder");
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(output);
+        gzip.write(data);
+        gzip.close();
+        return output.toByteArray();
+    }
+}
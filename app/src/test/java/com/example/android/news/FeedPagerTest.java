@@ -0,0 +1,178 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls through a long feed of several sections, served one page at a time by a
+ * {@link FakeGuardianServer}, and checks that {@link FeedPager} requests every page once, in
+ * order, up to the end of the feed, and that the pages merged into the feed leave no article
+ * out, whether the feed starts with the first page of the whole feed, or with the first page
+ * of each section.
+ */
+public class FeedPagerTest {
+
+    private static final int PAGE_SIZE = 30;
+    private static final int PREFETCH_DISTANCE = 10;
+    private static final int VISIBLE_ROWS = 8;
+    // Number of scroll events it takes for a requested page to arrive
+    private static final int PAGE_LATENCY = 5;
+
+    // Sections of the feed, published at different rates
+    private static final String[] SECTIONS = {"Science", "Technology", "Education",
+            "Environment"};
+    private static final int[] ARTICLE_COUNTS = {600, 300, 100, 200};
+    private static final long[] INTERVALS = {1, 2, 12, 5}; /* hours */
+    private static final long HOUR = 60 * 60 * 1000; /* milliseconds */
+    private static final long NEWEST = PublicationDate.parse("2017-06-20T10:00:00Z");
+
+    private FakeGuardianServer mServer;
+    private final List<GuardianQuery> mRequestedPages = new ArrayList<>();
+    private FeedPager mPager;
+    // Every article of the feed, newest first, as a single page
+    private List<Article> mFeed;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        int feedSize = 0;
+        for (int i = 0; i < SECTIONS.length; i++) {
+            // A minute apart from the articles of the other sections
+            mServer.setSection(SECTIONS[i].toLowerCase(Locale.US), ARTICLE_COUNTS[i],
+                    i * 60 * 1000, INTERVALS[i] * HOUR);
+            feedSize += ARTICLE_COUNTS[i];
+        }
+        mFeed = QueryUtils.fetchNewsArticles(feedQuery().withPageSize(feedSize).toUrl(), null)
+                .getArticles();
+        mPager = new FeedPager(feedQuery(), PAGE_SIZE, PREFETCH_DISTANCE,
+                new FeedPager.Callbacks() {
+                    @Override
+                    public void onLoadPage(GuardianQuery page) {
+                        mRequestedPages.add(page);
+                    }
+                });
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void scrollingThroughTheFeedRequestsEveryPageOnce() {
+        long searches = mServer.getSearchCount();
+        // The first page comes from the feed loader
+        List<Article> feed = scrollToTheEnd(QueryUtils.fetchNewsArticles(
+                feedQuery().withPageSize(PAGE_SIZE).withPage(1).toUrl(), null).getArticles());
+
+        assertSameArticles(mFeed, feed);
+        assertTrue(feed.size() > 1000);
+        assertTrue(mPager.isEndReached());
+        assertFalse(mPager.isLoading());
+        // Every page has been requested exactly once, in order, from the same time
+        assertEquals(1 + mRequestedPages.size(), mServer.getSearchCount() - searches);
+        String until = mRequestedPages.get(0).getParameter("to-date");
+        for (int i = 0; i < mRequestedPages.size(); i++) {
+            assertEquals(String.valueOf(i + 1), mRequestedPages.get(i).getParameter("page"));
+            assertEquals(until, mRequestedPages.get(i).getParameter("to-date"));
+        }
+    }
+
+    @Test
+    public void pagesFollowingTheSectionsLeaveNoArticleOut() {
+        // The feed loader delivers the first page of each section, merged by date
+        List<List<Article>> sections = new ArrayList<>();
+        for (String section : SECTIONS) {
+            sections.add(QueryUtils.fetchNewsArticles(feedQuery()
+                    .withSections(section.toLowerCase(Locale.US)).withPageSize(PAGE_SIZE)
+                    .toUrl(), null).getArticles());
+        }
+        List<Article> head = SectionFanOut.mergeByDate(sections, Integer.MAX_VALUE);
+        assertEquals(SECTIONS.length * PAGE_SIZE, head.size());
+        // The sections published less often reach much further back than Science, whose
+        // articles from then on are not in the feed yet
+        long scienceOldest = NEWEST - (PAGE_SIZE - 1) * INTERVALS[0] * HOUR;
+        assertEquals(scienceOldest, FeedPager.completeUntil(head));
+
+        List<Article> feed = scrollToTheEnd(head);
+        assertEquals(PublicationDate.format(scienceOldest),
+                mRequestedPages.get(0).getParameter("to-date"));
+        assertSameArticles(mFeed, feed);
+        assertTrue(mPager.isEndReached());
+    }
+
+    @Test
+    public void scrollEventsDoNotRequestThePageInFlightAgain() {
+        assertEquals(PublicationDate.UNKNOWN,
+                FeedPager.completeUntil(Collections.<Article>emptyList()));
+        mPager.reset(PublicationDate.UNKNOWN);
+
+        for (int i = 0; i < 100; i++) {
+            mPager.onScroll(PAGE_SIZE - VISIBLE_ROWS, VISIBLE_ROWS, PAGE_SIZE);
+        }
+        assertEquals(1, mRequestedPages.size());
+        assertEquals("1", mRequestedPages.get(0).getParameter("page"));
+        assertNull(mRequestedPages.get(0).getParameter("to-date"));
+
+        // A short page marks the end of the feed
+        mPager.onPageLoaded(PAGE_SIZE - 1);
+        mPager.onScroll(2 * PAGE_SIZE - VISIBLE_ROWS - 1, VISIBLE_ROWS, 2 * PAGE_SIZE - 1);
+        assertEquals(1, mRequestedPages.size());
+        assertTrue(mPager.isEndReached());
+    }
+
+    /*
+     * Scroll through the feed made of the given articles until its end, loading the pages
+     * requested on the way as the app does: a few scroll events later, merged into the feed
+     * by date. Return the feed.
+     */
+    private List<Article> scrollToTheEnd(List<Article> head) {
+        List<Article> feed = head;
+        mPager.reset(FeedPager.completeUntil(feed));
+        int deliveredPages = 0;
+        int eventsSinceRequest = 0;
+        for (int position = 0; position + VISIBLE_ROWS <= feed.size(); position++) {
+            // Deliver the page in flight once its latency has elapsed
+            if (mRequestedPages.size() > deliveredPages && ++eventsSinceRequest > PAGE_LATENCY) {
+                assertTrue(mPager.isLoading());
+                GuardianQuery page = mRequestedPages.get(deliveredPages++);
+                eventsSinceRequest = 0;
+                List<Article> articles = QueryUtils.fetchNewsArticles(page.toUrl(), null)
+                        .getArticles();
+                if (articles == null) {
+                    mPager.onPageFailed();
+                } else {
+                    mPager.onPageLoaded(articles.size());
+                    feed = SectionFanOut.mergeByDate(Arrays.asList(feed, articles),
+                            Integer.MAX_VALUE);
+                }
+            }
+            mPager.onScroll(position, VISIBLE_ROWS, feed.size());
+        }
+        return feed;
+    }
+
+    private GuardianQuery feedQuery() {
+        return mServer.getSearchQuery().with("order-by", "newest");
+    }
+
+    private static void assertSameArticles(List<Article> expected, List<Article> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+        }
+    }
+}
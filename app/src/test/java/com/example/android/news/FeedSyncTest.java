@@ -0,0 +1,190 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link FeedSync} against a {@link FakeGuardianServer}, and checks that it leaves the
+ * store and the thumbnail cache ready for the next start of the app.
+ */
+public class FeedSyncTest {
+
+    private static final String[] SECTIONS = {"Science", "Technology"};
+    private static final int ARTICLES_PER_SECTION = 5;
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    return output.toByteArray();
+                }
+            };
+
+    private static final ThumbnailCache.Sizer<byte[]> SIZER = new ThumbnailCache.Sizer<byte[]>() {
+        @Override
+        public int sizeOf(byte[] image) {
+            return image.length;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeGuardianServer mServer;
+    // Saved into the store by the app while the next feed request is served, if any
+    private final AtomicReference<Article> mSavedByApp = new AtomicReference<>();
+    private final MemoryStore mStore = new MemoryStore();
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        mServer.setTotalResults(ARTICLES_PER_SECTION);
+        mServer.setListener(new FakeGuardianServer.Listener() {
+            @Override
+            public void onSearch(GuardianQuery query) {
+                Article savedByApp = mSavedByApp.getAndSet(null);
+                if (savedByApp != null) {
+                    mStore.mergeAndSave(Collections.singletonList(savedByApp));
+                }
+            }
+        });
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void syncWarmsStoreAndThumbnailCache() throws Exception {
+        File diskDirectory = mFolder.newFolder("thumbnails");
+        ThumbnailCache<byte[]> cache =
+                new ThumbnailCache<>(100 * 1024, diskDirectory, 100 * 1024, SIZER, BYTES);
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, cache);
+        File statsFile = new File(mFolder.getRoot(), "sync.properties");
+        FeedSync sync = new FeedSync(sections(), mStore, downloader, 4, null,
+                new SyncStats(statsFile));
+
+        assertTrue(sync.sync());
+
+        List<Article> stored = mStore.loadArticles();
+        assertEquals(SECTIONS.length * ARTICLES_PER_SECTION, stored.size());
+        assertEquals("2017-06-20T10:00:00Z", stored.get(0).getPublicationDate());
+        // The thumbnails of the first articles are on disk, ready for the next start
+        ThumbnailCache<byte[]> nextStart =
+                new ThumbnailCache<>(100 * 1024, diskDirectory, 100 * 1024, SIZER, BYTES);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(nextStart.get(stored.get(i).getThumbnailUrl()));
+        }
+        assertNull(nextStart.get(stored.get(4).getThumbnailUrl()));
+
+        // The statistics survive the process
+        SyncStats stats = new SyncStats(statsFile);
+        assertEquals(1, stats.getSuccesses());
+        assertEquals(stored.size(), stats.getLastSyncArticles());
+        assertEquals(4, stats.getLastSyncThumbnails());
+        assertTrue(stats.getLastSyncTime() > 0);
+        assertTrue(stats.getLastSyncDuration() >= 0);
+
+        // The next sync only asks for what is new, and keeps the stored articles
+        assertTrue(sync.sync());
+        assertEquals(stored.size(), mStore.loadArticles().size());
+        sync.shutdown();
+        downloader.shutdown();
+    }
+
+    @Test
+    public void failedSyncIsRecordedAndKeepsStore() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES);
+        SyncStats stats = new SyncStats(null);
+        FeedSync sync = new FeedSync(sections(), mStore, downloader, 4, null, stats);
+        assertTrue(sync.sync());
+        List<Article> stored = mStore.loadArticles();
+
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST.withErrors(1));
+        assertFalse(sync.sync());
+        assertFalse(sync.sync());
+        assertEquals(stored, mStore.loadArticles());
+        assertEquals(1, stats.getSuccesses());
+        assertEquals(2, stats.getFailures());
+        assertEquals(2, stats.getConsecutiveFailures());
+
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST);
+        assertTrue(sync.sync());
+        assertEquals(0, stats.getConsecutiveFailures());
+        sync.shutdown();
+        downloader.shutdown();
+    }
+
+    @Test
+    public void articlesSavedDuringSyncAreKept() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES);
+        FeedSync sync = new FeedSync(sections(), mStore, downloader, 0, null,
+                new SyncStats(null));
+        Article loaded = new Article("science/loaded", "Title", "Author",
+                PublicationDate.parse("2017-06-25T10:00:00Z"), "Science",
+                "https://www.theguardian.com/science/loaded", null);
+        mSavedByApp.set(loaded);
+
+        assertTrue(sync.sync());
+        List<Article> stored = mStore.loadArticles();
+        assertEquals(SECTIONS.length * ARTICLES_PER_SECTION + 1, stored.size());
+        assertEquals(loaded.getKey(), stored.get(0).getKey());
+        sync.shutdown();
+        downloader.shutdown();
+    }
+
+    private List<SectionFanOut.Section> sections() {
+        List<SectionFanOut.Section> sections = new ArrayList<>();
+        for (String name : SECTIONS) {
+            sections.add(new SectionFanOut.Section(name, mServer.getSearchQuery()
+                    .with("q", "physics").withSections(name.toLowerCase(Locale.US)), 0));
+        }
+        return sections;
+    }
+
+    /*
+     * Stands in for the database of the articles.
+     */
+    private static class MemoryStore implements FeedSync.Store {
+        private List<Article> mArticles = Collections.emptyList();
+
+        @Override
+        public synchronized List<Article> loadArticles() {
+            return new ArrayList<>(mArticles);
+        }
+
+        @Override
+        public synchronized List<Article> mergeAndSave(List<Article> articles) {
+            mArticles = SectionFanOut.mergeByDate(Arrays.asList(articles, mArticles),
+                    ArticleStore.MAX_ARTICLES);
+            return new ArrayList<>(mArticles);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the bucketing and the percentiles of {@link Histogram}.
+ */
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramReadsZero() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 2 * Histogram.SUB_BUCKETS - 1; value++) {
+            histogram.record(value);
+        }
+        // 31 values: the median is the 16th, the 90th percentile the 28th
+        assertEquals(16, histogram.getPercentile(50));
+        assertEquals(28, histogram.getPercentile(90));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(31, histogram.getPercentile(100));
+        assertEquals(16, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void bucketsBoundTheRelativeError() {
+        Random random = new Random(42);
+        int previous = -1;
+        for (int i = 0; i < 100000; i++) {
+            long value = i < 1000 ? i : random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = Histogram.bucketOf(value);
+            long highest = Histogram.highestValueOf(bucket);
+            long lowest = bucket == 0 ? 0 : Histogram.highestValueOf(bucket - 1) + 1;
+            assertTrue(value + " in bucket " + bucket, lowest <= value && value <= highest);
+            assertTrue(value + " in bucket " + bucket,
+                    highest - lowest <= lowest / Histogram.SUB_BUCKETS);
+            if (i < 1000) {
+                // Buckets grow with the values
+                assertTrue(bucket >= previous);
+                previous = bucket;
+            }
+        }
+        assertEquals(Long.MAX_VALUE,
+                Histogram.highestValueOf(Histogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentilesOfUniformDistribution() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(1, histogram.getMin());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 1e-9);
+        assertWithin(5000, histogram.getPercentile(50));
+        assertWithin(9000, histogram.getPercentile(90));
+        assertWithin(9900, histogram.getPercentile(99));
+        // Never beyond the largest value recorded
+        assertEquals(10000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws Exception {
+        final Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i % 1000 + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(1002, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    /*
+     * Check that the percentile read is the exact one, or above it by less than the width
+     * of its bucket.
+     */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " read as " + actual, actual >= expected
+                && actual - expected < expected / Histogram.SUB_BUCKETS);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads a news feed and its thumbnails from a {@link FakeGuardianServer}, which counts the
+ * connections it accepts, and checks that {@link HttpClient} reuses them across requests.
+ */
+public class HttpClientTest {
+
+    private static final int RESULT_COUNT = 30;
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    return output.toByteArray();
+                }
+            };
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        mServer.setTotalResults(RESULT_COUNT);
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void feedLoadReusesConnections() throws Exception {
+        FeedResult feed = QueryUtils.fetchNewsArticles(mServer.getSearchQuery()
+                .with("q", "physics").withPageSize(RESULT_COUNT).toUrl(), null);
+        assertEquals(RESULT_COUNT, feed.getArticles().size());
+
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(
+                QueryUtils.getHttpClient(), BYTES, null,
+                ThumbnailDownloader.DEFAULT_CONCURRENCY,
+                ThumbnailDownloader.DEFAULT_PER_HOST_LIMIT);
+        List<Future<byte[]>> thumbnails = new ArrayList<>();
+        for (Article article : feed.getArticles()) {
+            thumbnails.add(downloader.submit(new URL(article.getThumbnailUrl())));
+        }
+        for (int i = 0; i < RESULT_COUNT; i++) {
+            assertArrayEquals(mServer.getThumbnail("science/" + i + ".jpg"),
+                    thumbnails.get(i).get(10, TimeUnit.SECONDS));
+        }
+        downloader.shutdown();
+
+        assertEquals(1, mServer.getSearchCount());
+        assertEquals(RESULT_COUNT, mServer.getThumbnailCount());
+        // At most one connection per simultaneous download, whatever the number of thumbnails
+        assertTrue(mServer.getConnectionCount() <= ThumbnailDownloader.DEFAULT_PER_HOST_LIMIT);
+    }
+
+    @Test
+    public void unreadResponseLeavesConnectionReusable() throws Exception {
+        final List<RequestTimings> timings = new ArrayList<>();
+        HttpClient client = new HttpClient(1000, 1000);
+        client.setListener(new HttpClient.Listener() {
+            @Override
+            public void onResponseClosed(URL url, int responseCode, RequestTimings requestTimings) {
+                timings.add(requestTimings);
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            HttpClient.Response response = client.get(
+                    new URL(mServer.getThumbnailUrl("1.jpg")), null);
+            assertEquals(200, response.getCode());
+            // Closed without reading the body
+            response.close();
+        }
+
+        assertEquals(3, mServer.getThumbnailCount());
+        assertEquals(1, mServer.getConnectionCount());
+        assertEquals(3, timings.size());
+        for (RequestTimings requestTimings : timings) {
+            assertTrue(requestTimings.getTotal() >= 0);
+            assertTrue(requestTimings.getBody() >= 0);
+        }
+    }
+}
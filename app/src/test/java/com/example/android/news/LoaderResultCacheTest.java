@@ -0,0 +1,62 @@
+package com.example.android.news;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks when {@link LoaderResultCache} asks for a load, as the loader is started again and
+ * its loads are started, finished and cancelled. How {@link NewsLoader} uses it is tested by
+ * {@link NewsLoaderTest}.
+ */
+public class LoaderResultCacheTest {
+
+    private static final long TIME_TO_LIVE = NewsLoader.RESULT_TIME_TO_LIVE;
+
+    private final LoaderResultCache<List<Article>> mCache =
+            new LoaderResultCache<>(TIME_TO_LIVE);
+    private final List<Article> mResult = Collections.emptyList();
+
+    @Test
+    public void resultIsKeptUntilItIsStale() {
+        assertTrue(mCache.shouldLoad(0));
+        mCache.onLoadStarted();
+        // Overlapping starts share the load in flight
+        assertFalse(mCache.shouldLoad(TIME_TO_LIVE));
+
+        mCache.onLoadFinished(mResult, 1000);
+        assertSame(mResult, mCache.getResult());
+        assertFalse(mCache.shouldLoad(1000 + TIME_TO_LIVE - 1));
+        assertTrue(mCache.shouldLoad(1000 + TIME_TO_LIVE));
+
+        // Whatever its age once invalidated, until the next load
+        mCache.invalidate();
+        assertTrue(mCache.shouldLoad(1000));
+        mCache.onLoadStarted();
+        mCache.onLoadFinished(mResult, 2000);
+        assertFalse(mCache.shouldLoad(2000));
+    }
+
+    @Test
+    public void onlyTheLastLoadCanceledEndsTheLoading() {
+        mCache.onLoadFinished(mResult, 0);
+        int replaced = mCache.onLoadStarted();
+        int last = mCache.onLoadStarted();
+
+        // The load replaced by the last one ends after the last one has started
+        mCache.onLoadCanceled(replaced);
+        assertTrue(mCache.isLoading());
+        assertFalse(mCache.shouldLoad(TIME_TO_LIVE));
+
+        // An abandoned load does not prevent the next one, and keeps the last result
+        mCache.onLoadCanceled(last);
+        assertFalse(mCache.isLoading());
+        assertTrue(mCache.shouldLoad(TIME_TO_LIVE));
+        assertSame(mResult, mCache.getResult());
+    }
+}
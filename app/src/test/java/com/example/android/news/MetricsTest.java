@@ -0,0 +1,182 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Loads the feed and its thumbnails from a {@link FakeGuardianServer} whose responses are
+ * slowed down at known points, and checks that {@link Metrics} puts the time, and the errors,
+ * in the right stages.
+ */
+public class MetricsTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Delays of the server, before the response headers and in the middle of the body
+    private static final long HEADERS_DELAY = 60; /* milliseconds */
+    private static final long BODY_DELAY = 40; /* milliseconds */
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    // Like BitmapDecoder, return null for what is not an image
+                    return output.size() == 0 ? null : output.toByteArray();
+                }
+            };
+
+    private static final ThumbnailCache.Sizer<byte[]> SIZER = new ThumbnailCache.Sizer<byte[]>() {
+        @Override
+        public int sizeOf(byte[] image) {
+            return image.length;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeGuardianServer mServer;
+    private final Metrics mMetrics = QueryUtils.getMetrics();
+
+    @Before
+    public void startServer() throws IOException {
+        mMetrics.reset();
+        mMetrics.setEnabled(true);
+        mServer = new FakeGuardianServer(1);
+        mServer.setTotalResults(2);
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST
+                .withLatency(HEADERS_DELAY, HEADERS_DELAY).withPause(BODY_DELAY));
+        // The "empty" thumbnail cannot be decoded
+        mServer.setThumbnailProfile("empty.jpg", FakeGuardianServer.Profile.FAST
+                .withFault(FakeGuardianServer.Fault.EMPTY_BODY, Integer.MAX_VALUE));
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+        mMetrics.reset();
+    }
+
+    @Test
+    public void feedStagesAreTimed() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(2, QueryUtils.fetchNewsArticles(search(), null).getArticles().size());
+        }
+        for (Metrics.Stage stage : new Metrics.Stage[]{Metrics.Stage.URL,
+                Metrics.Stage.CONNECT, Metrics.Stage.FIRST_BYTE, Metrics.Stage.BODY,
+                Metrics.Stage.PARSE}) {
+            assertEquals(stage.name(), 5, mMetrics.getHistogram(stage).getCount());
+            assertEquals(stage.name(), 0, mMetrics.getErrors(stage));
+        }
+        // The delays of the server show in the stages where they happen. The client may only
+        // see the headers some time after the server has sent them, and started its delay.
+        assertTrue(mMetrics.getHistogram(Metrics.Stage.FIRST_BYTE).getMin()
+                >= HEADERS_DELAY * 1000);
+        assertTrue(mMetrics.getHistogram(Metrics.Stage.BODY).getMin() >= BODY_DELAY * 1000 / 2);
+        assertTrue(mMetrics.getHistogram(Metrics.Stage.CONNECT).getPercentile(50)
+                < HEADERS_DELAY * 1000);
+        // The body is parsed as it arrives, but the wait for its bytes is not parsing
+        assertTrue(mMetrics.getHistogram(Metrics.Stage.PARSE).getMax()
+                < BODY_DELAY * 1000 / 2);
+
+        String json = mMetrics.toJson();
+        assertTrue(json, json.contains("\"first_byte\":{\"count\":5,\"errors\":0,"));
+    }
+
+    @Test
+    public void errorsAreCountedInTheirStage() {
+        assertNull(QueryUtils.fetchNewsArticles("not a URL", null).getArticles());
+        assertEquals(1, mMetrics.getErrors(Metrics.Stage.URL));
+
+        // Every attempt of a request which is retried fails
+        int attempts = QueryUtils.FEED_RETRY_POLICY.getMaxAttempts();
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST.withErrors(1));
+        assertNull(QueryUtils.fetchNewsArticles(search(), null).getArticles());
+        assertEquals(attempts, mMetrics.getErrors(Metrics.Stage.FIRST_BYTE));
+
+        // The article before the malformed part is kept
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST);
+        serveMalformedResponse();
+        assertEquals(1, QueryUtils.fetchNewsArticles(search(), null).getArticles().size());
+        assertEquals(1, mMetrics.getErrors(Metrics.Stage.PARSE));
+
+        // Nothing listens on the port of a stopped server
+        String stopped = search();
+        mServer.stop();
+        assertNull(QueryUtils.fetchNewsArticles(stopped, null).getArticles());
+        assertEquals(attempts, mMetrics.getErrors(Metrics.Stage.CONNECT));
+    }
+
+    @Test
+    public void thumbnailStagesAreTimed() throws Exception {
+        ThumbnailCache<byte[]> cache = new ThumbnailCache<>(100 * 1024,
+                mFolder.newFolder("thumbnails"), 100 * 1024, SIZER, BYTES);
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, cache);
+        downloader.setMetrics(mMetrics);
+
+        for (int i = 0; i < 4; i++) {
+            downloader.submit(new URL(mServer.getThumbnailUrl(i + ".jpg"))).get();
+        }
+        // Cached: neither downloaded nor decoded again
+        downloader.submit(new URL(mServer.getThumbnailUrl("0.jpg"))).get();
+        assertNull(downloader.submit(new URL(mServer.getThumbnailUrl("empty.jpg"))).get());
+        try {
+            downloader.submit(new URL(mServer.getUrl() + "/missing/0.jpg")).get();
+            fail();
+        } catch (ExecutionException expected) {
+            // 404
+        }
+        downloader.shutdown();
+
+        assertEquals(5, mMetrics.getHistogram(Metrics.Stage.THUMBNAIL_DOWNLOAD).getCount());
+        assertEquals(1, mMetrics.getErrors(Metrics.Stage.THUMBNAIL_DOWNLOAD));
+        assertEquals(5, mMetrics.getHistogram(Metrics.Stage.THUMBNAIL_DECODE).getCount());
+        assertEquals(1, mMetrics.getErrors(Metrics.Stage.THUMBNAIL_DECODE));
+    }
+
+    @Test
+    public void nothingIsRecordedWhileDisabled() {
+        mMetrics.setEnabled(false);
+        QueryUtils.fetchNewsArticles(search(), null);
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST.withErrors(1));
+        QueryUtils.fetchNewsArticles(search(), null);
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            assertEquals(stage.name(), 0, mMetrics.getHistogram(stage).getCount());
+            assertEquals(stage.name(), 0, mMetrics.getErrors(stage));
+        }
+    }
+
+    private String search() {
+        return mServer.getSearchQuery().toUrl();
+    }
+
+    /*
+     * Serve a response whose second result is malformed.
+     */
+    private void serveMalformedResponse() {
+        String response = new String(mServer.getSearchResponse(mServer.getSearchQuery()),
+                UTF_8);
+        mServer.setRecordedResponse((response.substring(0, response.indexOf(",{\"id\""))
+                + ",{\"type\":}]}}").getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.android.news;
+
+import android.support.v4.content.Loader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Takes a {@link NewsLoader} of a feed served by {@link FakeGuardianServer} through rotations,
+ * returns from the browser and refreshes, as its activity does, and counts its loads and the
+ * searches that reach the server. The clock of the loader is the one of Robolectric, which
+ * the tests move forward.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class NewsLoaderTest {
+
+    private static final long TIME_TO_LIVE = NewsLoader.RESULT_TIME_TO_LIVE;
+    // Refresh interval of a section which is only requested again by a refresh
+    private static final long COLD_SECTION_REFRESH_INTERVAL = 60 * 60 * 1000; /* milliseconds */
+    // Time allowed to a load, or to a search to reach the server
+    private static final long TIMEOUT = 10000; /* milliseconds */
+
+    private FakeGuardianServer mServer;
+    private CountingLoader mLoader;
+    // Results delivered by the loader, in order
+    private final List<List<Article>> mDeliveries = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(1);
+    }
+
+    @After
+    public void tearDown() {
+        if (mLoader != null) {
+            mLoader.reset();
+        }
+        mServer.stop();
+    }
+
+    @Test
+    public void rotationsAndResumesOnlyLoadOnceTheResultIsStale() throws Exception {
+        startLoader(section("science", 0));
+        long searches = mServer.getSearchCount();
+        int loads = mLoader.mLoads;
+        int deliveries = mDeliveries.size();
+        List<Article> result = mDeliveries.get(deliveries - 1);
+
+        // Rotations, and trips to the browser and back, within the time to live
+        for (int i = 0; i < 10; i++) {
+            restartLoader(20 * 1000);
+        }
+        assertEquals(searches, mServer.getSearchCount());
+        assertEquals(loads, mLoader.mLoads);
+        // Every start has shown the last result instantly
+        assertEquals(deliveries + 10, mDeliveries.size());
+        assertSame(result, mDeliveries.get(mDeliveries.size() - 1));
+
+        // Back after a long while: the result is stale
+        restartLoader(TIME_TO_LIVE);
+        awaitIdle();
+        assertEquals(loads + 1, mLoader.mLoads);
+        assertEquals(searches + 1, mServer.getSearchCount());
+    }
+
+    @Test
+    public void overlappingStartsShareTheLoadInFlight() throws Exception {
+        startLoader(section("science", 0));
+        long searches = mServer.getSearchCount();
+        mServer.hold("science");
+        restartLoader(TIME_TO_LIVE);
+        awaitSearches(searches + 1);
+        int loads = mLoader.mLoads;
+
+        // Rotated twice while the request is on its way, long after the last result
+        restartLoader(TIME_TO_LIVE);
+        restartLoader(TIME_TO_LIVE);
+        mServer.release("science");
+        awaitIdle();
+        assertEquals(loads, mLoader.mLoads);
+        assertEquals(searches + 1, mServer.getSearchCount());
+    }
+
+    @Test
+    public void refreshLoadsWhateverTheAgeOfTheResult() throws Exception {
+        startLoader(section("science", 0));
+        long searches = mServer.getSearchCount();
+        int loads = mLoader.mLoads;
+
+        mLoader.refresh();
+        awaitIdle();
+        assertEquals(loads + 1, mLoader.mLoads);
+        assertEquals(searches + 1, mServer.getSearchCount());
+    }
+
+    @Test
+    public void canceledLoadDoesNotEndTheLoadReplacingIt() throws Exception {
+        // Science is requested by every load, Technology only by the refreshes
+        startLoader(section("science", 0),
+                section("technology", COLD_SECTION_REFRESH_INTERVAL));
+        long searches = mServer.getSearchCount();
+
+        // A load of Science kept in flight, then replaced by a refresh, which waits for it
+        mServer.hold("science");
+        restartLoader(TIME_TO_LIVE);
+        awaitSearches(searches + 1);
+        mServer.hold("technology");
+        mLoader.refresh();
+
+        // The first load ends, canceled, and the refresh is kept in flight by Technology
+        mServer.release("science");
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mLoader.mCancellations == 0 || mServer.getSearchCount() < searches + 2) {
+            await(deadline, "Load not replaced");
+        }
+        int loads = mLoader.mLoads;
+
+        // Started again while the refresh is in flight, long after the last result
+        restartLoader(TIME_TO_LIVE);
+        assertEquals(loads, mLoader.mLoads);
+        mServer.release("technology");
+        awaitIdle();
+        assertEquals(loads, mLoader.mLoads);
+    }
+
+    private SectionFanOut.Section section(String id, long refreshInterval) {
+        return new SectionFanOut.Section(id,
+                mServer.getSearchQuery().withSections(id).withPageSize(10), refreshInterval);
+    }
+
+    /*
+     * Start a loader of the given sections, and wait until it has delivered the articles of
+     * the network, after the stored ones if there are any.
+     */
+    private void startLoader(SectionFanOut.Section... sections) throws InterruptedException {
+        mLoader = new CountingLoader(Arrays.asList(sections));
+        mLoader.registerListener(0, new Loader.OnLoadCompleteListener<List<Article>>() {
+            @Override
+            public void onLoadComplete(Loader<List<Article>> loader, List<Article> data) {
+                mDeliveries.add(data);
+            }
+        });
+        mLoader.startLoading();
+        awaitIdle();
+    }
+
+    /*
+     * Stop the loader, as when its activity is stopped, and start it again after the given
+     * time.
+     */
+    private void restartLoader(long time) {
+        mLoader.stopLoading();
+        Robolectric.getForegroundThreadScheduler().advanceBy(time, TimeUnit.MILLISECONDS);
+        mLoader.startLoading();
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    /*
+     * Wait until every load started has delivered its result, or been canceled.
+     */
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mLoader.mLoads > mLoader.mResults + mLoader.mCancellations) {
+            await(deadline, "Load not done");
+        }
+    }
+
+    private void awaitSearches(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mServer.getSearchCount() < count) {
+            await(deadline, "Search not sent");
+        }
+    }
+
+    /*
+     * Let the loads go on for a while, and run what they posted to the main thread.
+     */
+    private static void await(long deadline, String message) throws InterruptedException {
+        if (System.currentTimeMillis() > deadline) {
+            throw new AssertionError(message);
+        }
+        Thread.sleep(10);
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    /*
+     * NewsLoader, which counts its loads, and how they end, in the main thread.
+     */
+    private static class CountingLoader extends NewsLoader {
+        int mLoads;
+        int mResults;
+        int mCancellations;
+
+        CountingLoader(List<SectionFanOut.Section> sections) {
+            super(RuntimeEnvironment.application, sections);
+        }
+
+        @Override
+        protected void onForceLoad() {
+            super.onForceLoad();
+            mLoads++;
+        }
+
+        @Override
+        public void deliverResult(List<Article> data) {
+            // Only called with the result of a load: the last result is delivered again by
+            // NewsLoader itself
+            mResults++;
+            super.deliverResult(data);
+        }
+
+        @Override
+        public void onCanceled(List<Article> data) {
+            mCancellations++;
+            super.onCanceled(data);
+        }
+    }
+}
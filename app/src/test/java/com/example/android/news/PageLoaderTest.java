@@ -0,0 +1,129 @@
+package com.example.android.news;
+
+import android.os.Bundle;
+import android.support.v4.app.FragmentActivity;
+import android.support.v4.app.LoaderManager;
+import android.support.v4.content.Loader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls through the pages of a feed served by {@link FakeGuardianServer} as
+ * {@link MainActivity} does: the requests of a {@link FeedPager} are loaded by
+ * {@link PageLoader} through the LoaderManager of an activity, and their results are handed
+ * back to the pager.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 25)
+public class PageLoaderTest {
+
+    private static final int PAGE_LOADER_ID = 1;
+    private static final int PAGE_SIZE = 10;
+    private static final int PREFETCH_DISTANCE = 3;
+    // Time allowed to the load of a page
+    private static final long TIMEOUT = 10000; /* milliseconds */
+
+    private FakeGuardianServer mServer;
+    private FragmentActivity mActivity;
+    private FeedPager mPager;
+    // Results delivered to the activity, in order
+    private final List<List<Article>> mPages = new ArrayList<>();
+
+    private final LoaderManager.LoaderCallbacks<List<Article>> mLoaderCallbacks =
+            new LoaderManager.LoaderCallbacks<List<Article>>() {
+                @Override
+                public Loader<List<Article>> onCreateLoader(int id, Bundle args) {
+                    return new PageLoader(mActivity, args);
+                }
+
+                @Override
+                public void onLoadFinished(Loader<List<Article>> loader, List<Article> data) {
+                    mPages.add(data);
+                    if (data == null) {
+                        mPager.onPageFailed();
+                    } else {
+                        mPager.onPageLoaded(data.size());
+                    }
+                }
+
+                @Override
+                public void onLoaderReset(Loader<List<Article>> loader) {
+                }
+            };
+
+    @Before
+    public void setUp() throws Exception {
+        mServer = new FakeGuardianServer(1);
+        mActivity = Robolectric.setupActivity(FragmentActivity.class);
+        mPager = new FeedPager(mServer.getSearchQuery().withSections("science"), PAGE_SIZE,
+                PREFETCH_DISTANCE, new FeedPager.Callbacks() {
+                    @Override
+                    public void onLoadPage(GuardianQuery page) {
+                        PageLoader.load(mActivity.getSupportLoaderManager(), PAGE_LOADER_ID,
+                                page, mLoaderCallbacks);
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void everyPageIsDeliveredOnceInOrder() throws Exception {
+        for (int page = 1; page <= 3; page++) {
+            // The end of the list is reached, and scrolled again while the page is in flight
+            int itemCount = page * PAGE_SIZE;
+            mPager.onScroll(itemCount - 1, 1, itemCount);
+            mPager.onScroll(itemCount - 1, 1, itemCount);
+            assertTrue(mPager.isLoading());
+            waitForPages(page);
+
+            // The page requested, rather than the one before it again
+            List<Article> articles = mPages.get(page - 1);
+            assertEquals(PAGE_SIZE, articles.size());
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                int result = (page - 1) * PAGE_SIZE + i;
+                assertTrue(articles.get(i).getLink(),
+                        articles.get(i).getLink().endsWith("/jun/" + result));
+            }
+            assertFalse(mPager.isLoading());
+            assertEquals(page + 1, mPager.getNextPage());
+        }
+        assertEquals(3, mServer.getSearchCount());
+        assertEquals(3, mPages.size());
+        assertFalse(mPager.isEndReached());
+    }
+
+    /*
+     * Run the tasks posted to the main thread, as the results of the loaders are, until the
+     * given number of pages have been delivered.
+     */
+    private void waitForPages(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (mPages.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Page " + count + " not delivered");
+            }
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+        // Nothing else is delivered meanwhile
+        assertEquals(count, mPages.size());
+    }
+}
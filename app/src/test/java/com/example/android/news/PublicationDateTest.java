@@ -0,0 +1,87 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks {@link PublicationDate} against the SimpleDateFormat it replaces, over random
+ * datetimes of the last and the next centuries.
+ */
+public class PublicationDateTest {
+
+    private static final String ISO_8601 = "yyyy-MM-dd'T'HH:mm:ss'Z'";
+
+    private final Locale mDefaultLocale = Locale.getDefault();
+
+    @After
+    public void restoreLocale() {
+        Locale.setDefault(mDefaultLocale);
+    }
+
+    @Test
+    public void parseAndFormatAgreeWithSimpleDateFormat() throws Exception {
+        DateFormat format = new SimpleDateFormat(ISO_8601, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(42);
+        long from = format.parse("1900-01-01T00:00:00Z").getTime();
+        long to = format.parse("2100-01-01T00:00:00Z").getTime();
+        for (int i = 0; i < 100000; i++) {
+            long time = (from + (long) (random.nextDouble() * (to - from))) / 1000 * 1000;
+            String datetime = format.format(new Date(time));
+            assertEquals(datetime, time, PublicationDate.parse(datetime));
+            assertEquals(datetime, PublicationDate.format(time));
+        }
+        // Leap days
+        assertEquals(format.parse("2016-02-29T23:59:59Z").getTime(),
+                PublicationDate.parse("2016-02-29T23:59:59Z"));
+        assertEquals(format.parse("2000-02-29T12:00:00Z").getTime(),
+                PublicationDate.parse("2000-02-29T12:00:00Z"));
+    }
+
+    @Test
+    public void fractionsAndOffsetsAreAccepted() {
+        long time = PublicationDate.parse("2017-06-20T14:41:01Z");
+        assertEquals(time + 250, PublicationDate.parse("2017-06-20T14:41:01.25Z"));
+        assertEquals(time + 123, PublicationDate.parse("2017-06-20T14:41:01.123456Z"));
+        assertEquals(time, PublicationDate.parse("2017-06-20T15:41:01+01:00"));
+        assertEquals(time, PublicationDate.parse("2017-06-20T09:11:01-05:30"));
+    }
+
+    @Test
+    public void malformedDatesAreUnknown() {
+        String[] malformed = {null, "", "2017-06-20", "2017-06-20T14:41:01", "2017-06-20 14:41:01Z",
+                "2017-13-20T14:41:01Z", "2017-02-29T14:41:01Z", "2017-06-20T24:00:00Z",
+                "2017-06-20T14:41:01.Z", "2017-06-20T14:41:01+0100", "2017-06-20T14:41:01Zulu",
+                "20I7-06-20T14:41:01Z"};
+        for (String datetime : malformed) {
+            assertEquals(datetime, PublicationDate.UNKNOWN, PublicationDate.parse(datetime));
+        }
+        assertNull(PublicationDate.format(PublicationDate.UNKNOWN));
+        assertEquals("", PublicationDate.formatForDisplay(PublicationDate.UNKNOWN));
+    }
+
+    @Test
+    public void displayFollowsTheLocale() {
+        // Late in the evening in UTC: the date shown is the one of the API, whatever the zone
+        long time = PublicationDate.parse("2017-06-20T23:30:00Z");
+        Locale.setDefault(Locale.US);
+        assertEquals("06/20/17", PublicationDate.formatForDisplay(time));
+        Locale.setDefault(Locale.ITALY);
+        assertEquals("20/06/17", PublicationDate.formatForDisplay(time));
+
+        Article article = new Article("physics/1", "Title", "Author", time, "Science",
+                "https://www.theguardian.com/physics/1", null);
+        assertEquals("20/06/17", article.getDate());
+        assertEquals("2017-06-20T23:30:00Z", article.getPublicationDate());
+    }
+}
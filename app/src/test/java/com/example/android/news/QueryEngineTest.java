@@ -0,0 +1,168 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs many concurrent queries of the feed through a {@link QueryEngine}, against a
+ * {@link FakeGuardianServer} which counts the requests, and checks that equivalent queries
+ * share a single request and its cached results.
+ */
+public class QueryEngineTest {
+
+    private static final long TIME_TO_LIVE = 60000; /* milliseconds */
+    private static final int LOADERS = 16;
+
+    private static final QueryEngine.Fetcher FETCHER = new QueryEngine.Fetcher() {
+        @Override
+        public FeedResult fetch(String url, HttpValidators validators, Deadline deadline) {
+            return QueryUtils.fetchNewsArticles(url, validators, deadline);
+        }
+    };
+
+    private FakeGuardianServer mServer;
+    private ExecutorService mLoaders;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        // A single result in each section
+        mServer.setTotalResults(1);
+        mLoaders = Executors.newFixedThreadPool(LOADERS);
+    }
+
+    @After
+    public void stopServer() {
+        mLoaders.shutdownNow();
+        mServer.stop();
+    }
+
+    @Test
+    public void equivalentQueriesShareOneRequest() throws Exception {
+        final QueryEngine engine = new QueryEngine(FETCHER, TIME_TO_LIVE, 10);
+        mServer.hold("science");
+        List<Future<FeedResult>> results = new ArrayList<>();
+        for (int i = 0; i < LOADERS; i++) {
+            // The same query, with its parameters in different orders
+            final GuardianQuery query = i % 2 == 0
+                    ? base().with("q", "physics").withSections("science", "technology")
+                    .withPage(1)
+                    : base().withPage(1).withSections("technology", "science")
+                    .with("q", " physics ");
+            results.add(mLoaders.submit(new Callable<FeedResult>() {
+                @Override
+                public FeedResult call() {
+                    return engine.fetch(query, null, Deadline.after(10000), 0);
+                }
+            }));
+        }
+        // Answer once all the loaders are waiting for the first one
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (engine.coalescedCount() < LOADERS - 1 && System.nanoTime() < giveUp) {
+            Thread.sleep(5);
+        }
+        mServer.release("science");
+
+        FeedResult first = results.get(0).get(10, TimeUnit.SECONDS);
+        assertEquals(2, first.getArticles().size());
+        for (Future<FeedResult> result : results) {
+            assertSame(first, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, mServer.getSearchCount());
+        assertEquals(1, engine.requestCount());
+        assertEquals(LOADERS - 1, engine.coalescedCount());
+
+        // Then served from the cache, until it is stale
+        GuardianQuery query = base().with("q", "physics").withSections("technology|science")
+                .withPage(1).with("api-key", "other");
+        assertSame(first, engine.fetch(query, null, Deadline.NONE, TIME_TO_LIVE - 1));
+        assertEquals(1, mServer.getSearchCount());
+        assertEquals(1, engine.hitCount());
+        FeedResult fresh = engine.fetch(query, null, Deadline.NONE, TIME_TO_LIVE);
+        assertEquals(2, mServer.getSearchCount());
+        assertNotEquals(first, fresh);
+
+        // Another page is another query
+        engine.fetch(query.withPage(2), null, Deadline.NONE, TIME_TO_LIVE);
+        assertEquals(3, mServer.getSearchCount());
+        engine.invalidate();
+        engine.fetch(query, null, Deadline.NONE, TIME_TO_LIVE);
+        assertEquals(4, mServer.getSearchCount());
+    }
+
+    @Test
+    public void waitingQueryGivesUpAtItsDeadline() throws Exception {
+        final QueryEngine engine = new QueryEngine(FETCHER, TIME_TO_LIVE, 10);
+        mServer.hold("science");
+        Future<FeedResult> sent = mLoaders.submit(new Callable<FeedResult>() {
+            @Override
+            public FeedResult call() {
+                return engine.fetch(base(), null, Deadline.after(10000), 0);
+            }
+        });
+        long giveUp = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (mServer.getSearchCount() == 0 && System.nanoTime() < giveUp) {
+            Thread.sleep(5);
+        }
+
+        long start = System.nanoTime();
+        assertNull(engine.fetch(base(), null, Deadline.after(200), 0).getArticles());
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue("Waited " + elapsed + " ms", elapsed < 1000);
+
+        // The request itself goes on
+        mServer.release("science");
+        assertEquals(1, sent.get(10, TimeUnit.SECONDS).getArticles().size());
+        assertEquals(1, mServer.getSearchCount());
+    }
+
+    @Test
+    public void queriesAreNormalized() {
+        GuardianQuery query = GuardianQuery.parse("https://content.guardianapis.com/search"
+                + "?q=physics%20AND%20NOT%20obituary&tag=science/physics|education/physics"
+                + "&section=science|technology&show-fields=thumbnail,byline&api-key=test");
+        assertEquals("physics AND NOT obituary", query.getParameter("q"));
+        assertEquals(query.toUrl(), GuardianQuery.parse(query.toUrl()).toUrl());
+
+        GuardianQuery reordered = new GuardianQuery("https://content.guardianapis.com/search")
+                .with("show-fields", "byline,thumbnail")
+                .withSections("technology", "science")
+                .with("tag", "education/physics|science/physics")
+                .with("q", "physics  AND NOT obituary")
+                .with("api-key", "another");
+        assertEquals(query.getCacheKey(), reordered.getCacheKey());
+        assertEquals(query, reordered);
+        assertTrue(!query.getCacheKey().contains("api-key"));
+
+        // Search terms keep their case, and their order
+        assertNotEquals(query, query.with("q", "PHYSICS and not obituary"));
+        assertNotEquals(query, query.with("q", "obituary AND NOT physics"));
+        assertNotEquals(query, query.withPage(2));
+        assertNotEquals(query, query.withSections("science"));
+
+        long time = PublicationDate.parse("2017-06-20T10:00:00Z");
+        assertEquals("2017-06-20T10:00:01Z", query.since(time).getParameter("from-date"));
+        assertSame(query, query.since(PublicationDate.UNKNOWN));
+        assertNull(query.with("page", null).getParameter("page"));
+    }
+
+    private GuardianQuery base() {
+        return mServer.getSearchQuery();
+    }
+}
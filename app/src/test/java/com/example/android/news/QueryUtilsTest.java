@@ -0,0 +1,93 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the conditional and compressed feed requests of {@link QueryUtils} against a
+ * {@link FakeGuardianServer} which honors ETags and gzip.
+ */
+public class QueryUtilsTest {
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        mServer.setTotalResults(30);
+        mServer.setETag("\"v1\"");
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void unchangedFeedIsNeitherTransferredNorParsed() throws Exception {
+        HttpValidators validators = new HttpValidators(null);
+
+        FeedResult first = QueryUtils.fetchNewsArticles(query().toUrl(), validators);
+        assertFalse(first.isNotModified());
+        assertEquals(30, first.getArticles().size());
+        assertEquals(mServer.getThumbnailUrl("science/7.jpg"),
+                first.getArticles().get(7).getThumbnailUrl());
+        // The body has travelled compressed
+        assertEquals(mServer.getBytesSent(), first.getBytesOnWire());
+        assertTrue(first.getBytesOnWire() < mServer.getSearchResponse(query()).length);
+
+        FeedResult second = QueryUtils.fetchNewsArticles(query().toUrl(), validators);
+        assertTrue(second.isNotModified());
+        assertNull(second.getArticles());
+        assertEquals(0, second.getBytesOnWire());
+        assertEquals(1, mServer.getNotModifiedCount());
+
+        // Once the feed changes, it is transferred again
+        mServer.setETag("\"v2\"");
+        mServer.setTotalResults(31);
+        FeedResult third = QueryUtils.fetchNewsArticles(query().toUrl(), validators);
+        assertFalse(third.isNotModified());
+        assertEquals(31, third.getArticles().size());
+        assertEquals(3, mServer.getSearchCount());
+        assertEquals(1, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void requestsWithoutValidatorsAreUnconditional() throws Exception {
+        QueryUtils.fetchNewsArticles(query().toUrl(), new HttpValidators(null));
+        FeedResult result = QueryUtils.fetchNewsArticles(query().toUrl(), null);
+        assertFalse(result.isNotModified());
+        assertEquals(30, result.getArticles().size());
+        assertEquals(2, mServer.getSearchCount());
+        assertEquals(0, mServer.getNotModifiedCount());
+    }
+
+    @Test
+    public void refreshWithNothingNewTransfersAnEmptyPage() throws Exception {
+        mServer.setTotalResults(1);
+        FeedResult first = QueryUtils.fetchNewsArticles(query().toUrl(), null);
+        List<Article> articles = first.getArticles();
+        assertEquals(1, articles.size());
+
+        long newest = ArticleStore.newestPublicationTime(articles);
+        assertEquals("2017-06-20T10:00:00Z", PublicationDate.format(newest));
+        long bytesSent = mServer.getBytesSent();
+        FeedResult refresh = QueryUtils.fetchNewsArticles(query().since(newest).toUrl(), null);
+        assertEquals(0, refresh.getArticles().size());
+        assertEquals(mServer.getBytesSent() - bytesSent, refresh.getBytesOnWire());
+        assertTrue(refresh.getBytesOnWire() < first.getBytesOnWire());
+    }
+
+    private GuardianQuery query() {
+        return mServer.getSearchQuery().with("q", "physics").withPageSize(50);
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Loads the feed and its thumbnails from a {@link FakeGuardianServer} which fails, resets the
+ * connection or stalls on purpose, and checks that the retries, the hedged requests, the
+ * circuit breakers and the deadline of the load keep it short.
+ */
+public class ResilienceTest {
+
+    // How each section of the feed is served, see startServer()
+    private static final String[] SECTIONS = {"ok", "flaky", "reset", "stalled", "cut"};
+    private static final long LOAD_DEADLINE = 1500; /* milliseconds */
+    // Time allowed to the threads of the load to notice that the deadline has expired
+    private static final long SCHEDULING_SLACK = 250; /* milliseconds */
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    return output.toByteArray();
+                }
+            };
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        mServer.setTotalResults(1);
+        // Overloaded twice, then fine
+        mServer.setSearchProfile("flaky", fault(FakeGuardianServer.Fault.SERVER_ERROR, 2));
+        mServer.setSearchProfile("reset", fault(FakeGuardianServer.Fault.RESET, 1));
+        mServer.setSearchProfile("dropped", fault(FakeGuardianServer.Fault.TRUNCATED, 1));
+        mServer.setSearchProfile("stalled",
+                fault(FakeGuardianServer.Fault.STALLED, Integer.MAX_VALUE));
+        // The beginning of the response, then nothing more
+        mServer.setSearchProfile("cut",
+                fault(FakeGuardianServer.Fault.STALLED_BODY, Integer.MAX_VALUE));
+
+        // Only the first request for a slow image is slow
+        mServer.setThumbnailProfile("slow.jpg", fault(FakeGuardianServer.Fault.STALLED, 1));
+        mServer.setThumbnailProfile("stalled.jpg",
+                fault(FakeGuardianServer.Fault.STALLED, Integer.MAX_VALUE));
+        mServer.setThumbnailProfile("flaky.jpg",
+                fault(FakeGuardianServer.Fault.SERVER_ERROR, 1));
+        for (int i = 0; i < 4; i++) {
+            mServer.setThumbnailProfile("lagging" + i + ".jpg",
+                    FakeGuardianServer.Profile.FAST.withLatency(300, 300));
+            mServer.setThumbnailProfile("broken" + i + ".jpg",
+                    fault(FakeGuardianServer.Fault.SERVER_ERROR, Integer.MAX_VALUE));
+        }
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void failedRequestsAreRetried() {
+        FeedResult flaky = QueryUtils.fetchNewsArticles(query("flaky"), null);
+        assertEquals(1, flaky.getArticles().size());
+        assertEquals(3, mServer.getSearchCount("flaky"));
+
+        FeedResult reset = QueryUtils.fetchNewsArticles(query("reset"), null);
+        assertEquals(1, reset.getArticles().size());
+
+        // A body cut by the network is not taken for a malformed one
+        FeedResult dropped = QueryUtils.fetchNewsArticles(query("dropped"), null);
+        assertTrue(dropped.isComplete());
+        assertEquals(1, dropped.getArticles().size());
+        assertEquals(2, mServer.getSearchCount("dropped"));
+    }
+
+    @Test
+    public void loadEndsByItsDeadline() throws Exception {
+        List<SectionFanOut.Section> sections = new ArrayList<>();
+        for (String name : SECTIONS) {
+            sections.add(new SectionFanOut.Section(name, GuardianQuery.parse(query(name)), 0));
+        }
+        SectionFanOut fanOut = new SectionFanOut(sections, 10);
+        long start = System.nanoTime();
+        final Deadline deadline = Deadline.after(LOAD_DEADLINE);
+        List<Article> articles = fanOut.load(new SectionFanOut.Fetcher() {
+            @Override
+            public FeedResult fetch(SectionFanOut.Section section) {
+                return QueryUtils.fetchNewsArticles(section.getQuery().toUrl(), null, deadline);
+            }
+        }, true, null);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        fanOut.shutdown();
+
+        assertTrue("Load took " + elapsed + " ms", elapsed < LOAD_DEADLINE + SCHEDULING_SLACK);
+        // Every section but the stalled one, and the cut one, whose body never ends: only
+        // malformed responses are kept in part, not the ones whose transfer fails
+        List<String> loaded = new ArrayList<>();
+        for (Article article : articles) {
+            loaded.add(article.getSection());
+        }
+        assertEquals(3, articles.size());
+        assertTrue(loaded.toString(), !loaded.contains("Stalled"));
+        assertTrue(loaded.toString(), !loaded.contains("Cut"));
+    }
+
+    @Test
+    public void expiredDeadlineFailsRightAway() throws Exception {
+        long start = System.nanoTime();
+        assertNull(QueryUtils.fetchNewsArticles(query("ok"), null, Deadline.after(0))
+                .getArticles());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, mServer.getSearchCount("ok"));
+        try {
+            new HttpClient().get(new URL(query("ok")), null, Deadline.after(0));
+            fail("Request sent after its deadline");
+        } catch (SocketTimeoutException expected) {
+        }
+    }
+
+    @Test
+    public void slowThumbnailIsHedged() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES);
+        downloader.setHedgeDelay(100);
+        long start = System.nanoTime();
+        byte[] image = downloader.submit(image("slow.jpg")).get(5, TimeUnit.SECONDS);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertArrayEquals(mServer.getThumbnail("slow.jpg"), image);
+        assertTrue("Download took " + elapsed + " ms", elapsed < 1000);
+        assertEquals(2, mServer.getThumbnailCount("slow.jpg"));
+
+        // A quick download is not hedged
+        assertNotNull(downloader.submit(image("quick.jpg")).get(5, TimeUnit.SECONDS));
+        assertEquals(1, mServer.getThumbnailCount("quick.jpg"));
+        downloader.cancel();
+    }
+
+    @Test
+    public void hedgedRequestsStayWithinThePerHostLimit() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(
+                new HttpClient(), BYTES, null, 4, 2);
+        downloader.setHedgeDelay(50);
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(downloader.submit(image("lagging" + i + ".jpg")));
+        }
+        for (int i = 0; i < 4; i++) {
+            assertArrayEquals(mServer.getThumbnail("lagging" + i + ".jpg"),
+                    futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        // No slot was left for the hedged requests
+        assertEquals(2, mServer.getMaxThumbnailsInFlight());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, mServer.getThumbnailCount("lagging" + i + ".jpg"));
+        }
+        downloader.cancel();
+    }
+
+    @Test
+    public void stalledThumbnailEndsByItsDeadline() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES);
+        downloader.setHedgeDelay(100);
+        downloader.setTimeout(500);
+        long start = System.nanoTime();
+        try {
+            downloader.submit(image("stalled.jpg")).get(5, TimeUnit.SECONDS);
+            fail("Stalled image downloaded");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue("Download took " + elapsed + " ms", elapsed < 500 + SCHEDULING_SLACK);
+        assertEquals(2, mServer.getThumbnailCount("stalled.jpg"));
+        downloader.cancel();
+    }
+
+    @Test
+    public void failingHostIsSkipped() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES);
+        downloader.setRetryPolicy(new RetryPolicy(2, 10, 10));
+        downloader.setCircuitBreaking(4, 60000);
+
+        // Retried once
+        assertArrayEquals(mServer.getThumbnail("flaky.jpg"),
+                downloader.submit(image("flaky.jpg")).get(5, TimeUnit.SECONDS));
+        assertEquals(2, mServer.getThumbnailCount("flaky.jpg"));
+
+        // Two downloads of two attempts each open the circuit: the next ones are skipped
+        for (int i = 0; i < 4; i++) {
+            Future<byte[]> future = downloader.submit(image("broken" + i + ".jpg"));
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                fail("Broken image downloaded");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(2, mServer.getThumbnailCount("broken0.jpg"));
+        assertEquals(2, mServer.getThumbnailCount("broken1.jpg"));
+        assertEquals(0, mServer.getThumbnailCount("broken2.jpg"));
+        assertEquals(0, mServer.getThumbnailCount("broken3.jpg"));
+        downloader.cancel();
+    }
+
+    @Test
+    public void circuitBreakerLetsATrialThrough() {
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000);
+        long now = 0;
+        breaker.onFailure(now);
+        assertTrue(breaker.allowRequest(now));
+        breaker.onFailure(now);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(!breaker.allowRequest(now + 999));
+
+        // A single trial once open long enough, which opens the circuit again if it fails
+        assertTrue(breaker.allowRequest(now + 1000));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(!breaker.allowRequest(now + 1001));
+        breaker.onFailure(now + 1100);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(!breaker.allowRequest(now + 2000));
+
+        // A trial which succeeds closes it
+        assertTrue(breaker.allowRequest(now + 2100));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest(now + 2101));
+    }
+
+    @Test
+    public void retryDelaysAreJitteredBackoffs() {
+        RetryPolicy policy = new RetryPolicy(4, 100, 300, new Random(42));
+        long[] maxDelays = {100, 200, 300};
+        for (int i = 0; i < 1000; i++) {
+            for (int attempt = 1; attempt < 4; attempt++) {
+                long delay = policy.getDelay(attempt);
+                assertTrue(delay + " ms", delay >= 0 && delay <= maxDelays[attempt - 1]);
+            }
+            assertEquals(-1, policy.getDelay(4));
+        }
+        assertEquals(-1, RetryPolicy.NEVER.getDelay(1));
+        assertTrue(RetryPolicy.isRetryable(503));
+        assertTrue(RetryPolicy.isRetryable(429));
+        assertTrue(!RetryPolicy.isRetryable(404));
+    }
+
+    private String query(String section) {
+        return mServer.getSearchQuery().withSections(section).toUrl();
+    }
+
+    private URL image(String name) throws IOException {
+        return new URL(mServer.getThumbnailUrl(name));
+    }
+
+    private static FakeGuardianServer.Profile fault(FakeGuardianServer.Fault fault, int count) {
+        return FakeGuardianServer.Profile.FAST.withFault(fault, count);
+    }
+}
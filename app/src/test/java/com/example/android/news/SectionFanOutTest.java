@@ -0,0 +1,144 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads a feed whose sections are served by a {@link FakeGuardianServer} with different
+ * delays, and checks that {@link SectionFanOut} requests them concurrently, reports each of
+ * them as soon as it arrives, and merges them by publication date.
+ */
+public class SectionFanOutTest {
+
+    private static final String[] SECTIONS = {"Science", "Technology", "Education"};
+    // Response delay of each section, in milliseconds
+    private static final int[] DELAYS = {0, 300, 600};
+    private static final int ARTICLES_PER_SECTION = 3;
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        mServer.setTotalResults(ARTICLES_PER_SECTION);
+        for (int i = 0; i < SECTIONS.length; i++) {
+            mServer.setSearchProfile(id(SECTIONS[i]), FakeGuardianServer.Profile.FAST
+                    .withLatency(DELAYS[i], DELAYS[i]));
+        }
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void sectionsArriveAsSoonAsTheyAreServed() throws Exception {
+        SectionFanOut fanOut = new SectionFanOut(sections(0), 100);
+        final List<String> arrivals = new ArrayList<>();
+        final List<Long> arrivalTimes = new ArrayList<>();
+        final List<Integer> sizes = new ArrayList<>();
+        final long start = System.nanoTime();
+
+        List<Article> articles = fanOut.load(fetcher(), false, new SectionFanOut.Listener() {
+            @Override
+            public void onSectionLoaded(SectionFanOut.Section section, List<Article> merged) {
+                arrivals.add(section.getName());
+                arrivalTimes.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                sizes.add(merged.size());
+            }
+        });
+        long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The fastest section is shown long before the slowest one is in
+        assertEquals(Arrays.asList(SECTIONS), arrivals);
+        assertTrue(arrivalTimes + " ms", arrivalTimes.get(0) < DELAYS[2]);
+        // The sections are requested concurrently: the delays do not add up
+        assertTrue(total + " ms", total < DELAYS[1] + DELAYS[2]);
+        // Each section brings its articles, merged with the ones of the sections before
+        assertEquals(Arrays.asList(3, 6, 9), sizes);
+
+        assertEquals(SECTIONS.length * ARTICLES_PER_SECTION, articles.size());
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < articles.size(); i++) {
+            assertTrue(keys.add(articles.get(i).getKey()));
+            if (i > 0) {
+                assertTrue(articles.get(i - 1).getPublicationTime()
+                        >= articles.get(i).getPublicationTime());
+            }
+        }
+        fanOut.shutdown();
+    }
+
+    @Test
+    public void sectionsAreOnlyRequestedOnceTheirRefreshIntervalHasElapsed() throws Exception {
+        // Science is refreshed every time, the other sections once an hour
+        List<SectionFanOut.Section> sections = sections(TimeUnit.HOURS.toMillis(1));
+        sections.set(0, new SectionFanOut.Section("Science", query("Science"), 0));
+        SectionFanOut fanOut = new SectionFanOut(sections, 100);
+
+        fanOut.load(fetcher(), false, null);
+        List<Article> articles = fanOut.load(fetcher(), false, null);
+        assertEquals(2, mServer.getSearchCount("science"));
+        assertEquals(1, mServer.getSearchCount("technology"));
+        assertEquals(1, mServer.getSearchCount("education"));
+        // The sections not requested again are served from memory
+        assertEquals(SECTIONS.length * ARTICLES_PER_SECTION, articles.size());
+
+        // Unless all of them are forced
+        fanOut.load(fetcher(), true, null);
+        assertEquals(2, mServer.getSearchCount("technology"));
+        fanOut.shutdown();
+    }
+
+    @Test
+    public void failedLoadReturnsNull() throws Exception {
+        SectionFanOut fanOut = new SectionFanOut(sections(0), 100);
+        assertNull(fanOut.load(new SectionFanOut.Fetcher() {
+            @Override
+            public FeedResult fetch(SectionFanOut.Section section) {
+                return FeedResult.failed();
+            }
+        }, false, null));
+        fanOut.shutdown();
+    }
+
+    private SectionFanOut.Fetcher fetcher() {
+        return new SectionFanOut.Fetcher() {
+            @Override
+            public FeedResult fetch(SectionFanOut.Section section) {
+                return QueryUtils.fetchNewsArticles(section.getQuery().toUrl(), null);
+            }
+        };
+    }
+
+    private List<SectionFanOut.Section> sections(long refreshInterval) {
+        List<SectionFanOut.Section> sections = new ArrayList<>();
+        for (String name : SECTIONS) {
+            sections.add(new SectionFanOut.Section(name, query(name), refreshInterval));
+        }
+        return sections;
+    }
+
+    private GuardianQuery query(String section) {
+        return mServer.getSearchQuery().with("q", "physics").withSections(id(section));
+    }
+
+    private static String id(String section) {
+        return section.toLowerCase(Locale.US);
+    }
+}
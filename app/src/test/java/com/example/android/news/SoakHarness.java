@@ -0,0 +1,270 @@
+package com.example.android.news;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads the feed from a {@link FakeGuardianServer} over and over, from several threads at
+ * once, for a given time, and reports the throughput, the durations of the loads, and how
+ * much the heap has grown.
+ * <p>
+ * Every load goes through the whole pipeline of the app: a page of a section of the feed is
+ * fetched and parsed by {@link QueryUtils#fetchNewsArticles}, then the thumbnails of its
+ * articles are downloaded and decoded by a {@link ThumbnailDownloader}, without any cache.
+ * The loads take turns through the sections and the first pages of the feed.
+ * <p>
+ * The heap is measured after a garbage collection at the start and at the end of the run,
+ * so that what the loads keep for good shows as growth, and sampled in between for its peak.
+ */
+public class SoakHarness {
+
+    private static final String[] SECTIONS = {"science", "technology", "education",
+            "environment"};
+    private static final int PAGES = 5;
+    private static final int PAGE_SIZE = MainActivity.PAGE_SIZE;
+    private static final long LOAD_DEADLINE = 10000; /* milliseconds */
+    private static final long HEAP_SAMPLE_INTERVAL = 100; /* milliseconds */
+
+    // Decodes the thumbnails on the JVM, where BitmapFactory is not available
+    private static final ThumbnailDownloader.Decoder<BufferedImage> IMAGE_IO =
+            new ThumbnailDownloader.Decoder<BufferedImage>() {
+                @Override
+                public BufferedImage decode(InputStream inputStream) throws IOException {
+                    BufferedImage image = ImageIO.read(inputStream);
+                    if (image == null) {
+                        throw new IOException("Not an image");
+                    }
+                    return image;
+                }
+            };
+
+    private final GuardianQuery mQuery;
+    private final int mThreadCount;
+    private final long mDuration;
+
+    /*
+     * Constructor of a run of the given number of threads, for the given time in milliseconds.
+     */
+    public SoakHarness(FakeGuardianServer server, int threadCount, long duration) {
+        mQuery = server.getSearchQuery()
+                .with("show-fields", "thumbnail")
+                .with("show-tags", "contributor")
+                .with("order-by", "newest")
+                .withPageSize(PAGE_SIZE);
+        mThreadCount = threadCount;
+        mDuration = duration;
+    }
+
+    /**
+     * Run the loads until the time is up, and return their report.
+     */
+    public Report run() throws InterruptedException {
+        final Report report = new Report();
+        final ThumbnailDownloader<BufferedImage> downloader = new ThumbnailDownloader<>(
+                QueryUtils.getHttpClient(), IMAGE_IO, null,
+                ThumbnailDownloader.DEFAULT_CONCURRENCY,
+                ThumbnailDownloader.DEFAULT_PER_HOST_LIMIT);
+        ScheduledExecutorService heapSampler = Executors.newSingleThreadScheduledExecutor();
+
+        report.mStartHeap = usedHeapAfterGc();
+        heapSampler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                report.sampleHeap();
+            }
+        }, 0, HEAP_SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(mDuration);
+        final AtomicInteger loads = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < mThreadCount; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                        load(loads.getAndIncrement(), downloader, report);
+                    }
+                }
+            }, "soak-" + t);
+            threads.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            report.mElapsed = System.nanoTime() - start;
+            heapSampler.shutdownNow();
+            downloader.cancel();
+        }
+        report.mEndHeap = usedHeapAfterGc();
+        return report;
+    }
+
+    /*
+     * Load the given page of the feed and its thumbnails.
+     */
+    private void load(int load, ThumbnailDownloader<BufferedImage> downloader, Report report) {
+        long start = System.nanoTime();
+        String url = mQuery.withSections(SECTIONS[load % SECTIONS.length])
+                .withPage(1 + load / SECTIONS.length % PAGES).toUrl();
+        FeedResult result = QueryUtils.fetchNewsArticles(url, null,
+                Deadline.after(LOAD_DEADLINE));
+        report.mFeedTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        report.mLoads.incrementAndGet();
+        List<Article> articles = result.getArticles();
+        if (articles == null) {
+            report.mFailedLoads.incrementAndGet();
+            return;
+        }
+        if (!result.isComplete()) {
+            report.mPartialLoads.incrementAndGet();
+        }
+        report.mArticles.addAndGet(articles.size());
+
+        List<Future<BufferedImage>> thumbnails = new ArrayList<>();
+        for (Article article : articles) {
+            URL thumbnailUrl = QueryUtils.createURL(article.getThumbnailUrl());
+            if (thumbnailUrl != null) {
+                thumbnails.add(downloader.submit(thumbnailUrl));
+            }
+        }
+        for (Future<BufferedImage> thumbnail : thumbnails) {
+            try {
+                thumbnail.get();
+                report.mThumbnails.incrementAndGet();
+            } catch (ExecutionException e) {
+                report.mFailedThumbnails.incrementAndGet();
+            } catch (InterruptedException e) {
+                // The run is over
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        report.mLoadTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        // A single request may leave garbage behind, such as objects waiting for finalization
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Results of a run.
+     */
+    public static class Report {
+
+        private static final double MEGABYTE = 1024 * 1024;
+
+        // Durations of the feed requests, and of the whole loads, in microseconds
+        private final Histogram mFeedTimes = new Histogram();
+        private final Histogram mLoadTimes = new Histogram();
+        private final AtomicLong mLoads = new AtomicLong();
+        private final AtomicLong mFailedLoads = new AtomicLong();
+        private final AtomicLong mPartialLoads = new AtomicLong();
+        private final AtomicLong mArticles = new AtomicLong();
+        private final AtomicLong mThumbnails = new AtomicLong();
+        private final AtomicLong mFailedThumbnails = new AtomicLong();
+        private final AtomicLong mPeakHeap = new AtomicLong();
+        private volatile long mElapsed;
+        private volatile long mStartHeap;
+        private volatile long mEndHeap;
+
+        public long getLoadCount() {
+            return mLoads.get();
+        }
+
+        // Loads whose feed request failed, even after its retries
+        public long getFailedLoadCount() {
+            return mFailedLoads.get();
+        }
+
+        // Loads whose response was cut, of which the first articles were kept
+        public long getPartialLoadCount() {
+            return mPartialLoads.get();
+        }
+
+        public long getArticleCount() {
+            return mArticles.get();
+        }
+
+        public long getThumbnailCount() {
+            return mThumbnails.get();
+        }
+
+        public long getFailedThumbnailCount() {
+            return mFailedThumbnails.get();
+        }
+
+        // Loads per second
+        public double getThroughput() {
+            return mLoads.get() / (mElapsed / 1e9);
+        }
+
+        public Histogram getFeedTimes() {
+            return mFeedTimes;
+        }
+
+        public Histogram getLoadTimes() {
+            return mLoadTimes;
+        }
+
+        // Bytes of the heap left in use by the run
+        public long getHeapGrowth() {
+            return mEndHeap - mStartHeap;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d loads in %.1f s, %.1f loads/s, %d failed, %d partial%n"
+                            + "%d articles, %d thumbnails, %d failed%n"
+                            + "feed: %s%n"
+                            + "load: %s%n"
+                            + "heap: %.1f MB at start, %.1f MB at end, %.1f MB at peak",
+                    mLoads.get(), mElapsed / 1e9, getThroughput(), mFailedLoads.get(),
+                    mPartialLoads.get(), mArticles.get(), mThumbnails.get(),
+                    mFailedThumbnails.get(), durations(mFeedTimes), durations(mLoadTimes),
+                    mStartHeap / MEGABYTE, mEndHeap / MEGABYTE, mPeakHeap.get() / MEGABYTE);
+        }
+
+        private void sampleHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            long peak;
+            do {
+                peak = mPeakHeap.get();
+            } while (used > peak && !mPeakHeap.compareAndSet(peak, used));
+        }
+
+        private static String durations(Histogram histogram) {
+            return String.format(Locale.US, "p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    histogram.getPercentile(50) / 1000.0, histogram.getPercentile(90) / 1000.0,
+                    histogram.getPercentile(99) / 1000.0, histogram.getMax() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads the feed from a {@link FakeGuardianServer}, checks that it serves the responses as
+ * scripted, and soaks the whole pipeline with a {@link SoakHarness}: for a few seconds by
+ * default, or for the number of seconds of the "soak.duration" system property.
+ */
+public class SoakTest {
+
+    private static final long SOAK_DURATION = Long.getLong("soak.duration", 3) * 1000;
+    private static final int SOAK_THREADS = 4;
+    // Heap allowed to be left in use after a soak: the search index and the connection pool
+    private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws Exception {
+        mServer = new FakeGuardianServer(42);
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void scriptedProfilesAreFollowed() throws Exception {
+        // The third search fails, and is retried
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST.withErrors(1 / 3.0));
+        GuardianQuery feed = mServer.getSearchQuery().withSections("science", "technology")
+                .withPageSize(20);
+        String query = feed.withPage(2).toUrl();
+        for (int i = 0; i < 4; i++) {
+            FeedResult result = QueryUtils.fetchNewsArticles(query, null);
+            assertTrue(result.isComplete());
+            List<Article> articles = result.getArticles();
+            assertEquals(20, articles.size());
+            assertEquals("Science", articles.get(0).getSection());
+            assertEquals("Technology", articles.get(1).getSection());
+        }
+        assertEquals(5, mServer.getSearchCount());
+        assertEquals(1, mServer.getErrorCount());
+
+        // Cut in the middle, every time: retried, then given up
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST.withTruncation(1));
+        FeedResult cut = QueryUtils.fetchNewsArticles(query, null);
+        assertNull(cut.getArticles());
+        assertEquals(QueryUtils.FEED_RETRY_POLICY.getMaxAttempts(), mServer.getTruncatedCount());
+
+        // Only the results published after the given time: 5 of each section
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST);
+        long newest = PublicationDate.parse("2017-06-20T10:00:00Z");
+        FeedResult since = QueryUtils.fetchNewsArticles(
+                feed.since(newest - 30 * 60 * 1000).toUrl(), null);
+        assertEquals(10, since.getArticles().size());
+
+        // 4 kB per second
+        mServer.setThumbnailProfile(FakeGuardianServer.Profile.FAST
+                .withLatency(50, 100).withBandwidth(4096));
+        long start = System.nanoTime();
+        InputStream thumbnail = new URL(since.getArticles().get(0).getThumbnailUrl())
+                .openStream();
+        long length = 0;
+        while (thumbnail.read() != -1) {
+            length++;
+        }
+        thumbnail.close();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsed + " ms", elapsed >= 50 + (length - 1024) * 1000 / 4096);
+    }
+
+    @Test
+    public void recordedResponsesAreServed() throws Exception {
+        mServer.setRecordedResponse("search-response.json");
+        FeedResult result = QueryUtils.fetchNewsArticles(
+                mServer.getSearchQuery().withPage(9).toUrl(), null);
+        List<Article> articles = result.getArticles();
+        assertNotNull(articles);
+        assertEquals("Gravitational waves detected from a third black hole merger",
+                articles.get(0).getTitle());
+        String thumbnailUrl = articles.get(0).getThumbnailUrl();
+        assertTrue(thumbnailUrl, thumbnailUrl.startsWith(mServer.getUrl()));
+        new URL(thumbnailUrl).openStream().close();
+        assertEquals(1, mServer.getThumbnailCount());
+    }
+
+    @Test
+    public void soak() throws Exception {
+        // A mobile network, whose requests fail now and then
+        mServer.setSearchProfile(FakeGuardianServer.Profile.FAST
+                .withLatency(20, 80).withBandwidth(256 * 1024).withErrors(0.05));
+        mServer.setThumbnailProfile(FakeGuardianServer.Profile.FAST
+                .withLatency(10, 40).withBandwidth(512 * 1024));
+        SoakHarness.Report report = new SoakHarness(mServer, SOAK_THREADS, SOAK_DURATION).run();
+        // The report is the message of every assertion, so that a failure shows the whole run
+        String summary = report.toString();
+
+        assertTrue(summary, report.getLoadCount() > 0);
+        assertEquals(summary, 0, report.getFailedLoadCount());
+        assertEquals(summary, 0, report.getPartialLoadCount());
+        assertEquals(summary, report.getLoadCount() * MainActivity.PAGE_SIZE,
+                report.getArticleCount());
+        assertEquals(summary, report.getArticleCount(), report.getThumbnailCount());
+        assertEquals(summary, 0, report.getFailedThumbnailCount());
+        assertTrue(summary, report.getHeapGrowth() < MAX_HEAP_GROWTH);
+    }
+}
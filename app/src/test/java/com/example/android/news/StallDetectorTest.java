@@ -0,0 +1,144 @@
+package com.example.android.news;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds {@link StallDetector} with the frames of a simulated 60 Hz display, and checks the
+ * janky and frozen frames it counts, and the stalls it detects.
+ */
+public class StallDetectorTest {
+
+    private static final long FRAME = TimeUnit.SECONDS.toNanos(1) / 60;
+    private static final long THRESHOLD = TimeUnit.SECONDS.toNanos(1);
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final AtomicInteger mSamples = new AtomicInteger();
+    private final StallDetector mDetector = new StallDetector(FRAME, THRESHOLD,
+            new StallDetector.StackSampler() {
+                @Override
+                public StackTraceElement[] sample() {
+                    mSamples.incrementAndGet();
+                    return new StackTraceElement[]{
+                            new StackTraceElement("com.example.Slow", "parse", "Slow.java", 42)};
+                }
+            });
+
+    // Simulated time of the display, in nanoseconds
+    private long mNow = 1000;
+
+    @Test
+    public void framesAreCountedForTheActionsGoingOn() {
+        frames(10, FRAME);
+        assertEquals(9, mDetector.getFrameCount(StallDetector.Action.OTHER));
+        assertEquals(0, mDetector.getJankyFrameCount(StallDetector.Action.OTHER));
+
+        mDetector.begin(StallDetector.Action.SCROLL);
+        frames(5, FRAME);
+        // Two frames dropped
+        frames(1, 3 * FRAME);
+        mDetector.begin(StallDetector.Action.RELOAD);
+        frames(1, TimeUnit.MILLISECONDS.toNanos(800));
+        mDetector.end(StallDetector.Action.SCROLL);
+        frames(2, FRAME);
+        mDetector.end(StallDetector.Action.RELOAD);
+
+        assertEquals(7, mDetector.getFrameCount(StallDetector.Action.SCROLL));
+        assertEquals(2, mDetector.getJankyFrameCount(StallDetector.Action.SCROLL));
+        assertEquals(2 + 47, mDetector.getDroppedFrameCount(StallDetector.Action.SCROLL));
+        assertEquals(1, mDetector.getFrozenFrameCount(StallDetector.Action.SCROLL));
+        assertEquals(3, mDetector.getFrameCount(StallDetector.Action.RELOAD));
+        assertEquals(1, mDetector.getJankyFrameCount(StallDetector.Action.RELOAD));
+        assertEquals(1, mDetector.getFrozenFrameCount(StallDetector.Action.RELOAD));
+        assertEquals(9, mDetector.getFrameCount(StallDetector.Action.OTHER));
+        assertEquals(0, mDetector.getFrameCount(StallDetector.Action.INITIAL_LOAD));
+    }
+
+    @Test
+    public void stallsAreSampledOnce() {
+        mDetector.begin(StallDetector.Action.INITIAL_LOAD);
+        frames(3, FRAME);
+        long lastFrame = mNow;
+        assertFalse(mDetector.check(mNow + THRESHOLD - 1));
+        assertTrue(mDetector.check(mNow + THRESHOLD));
+        assertFalse(mDetector.check(mNow + 2 * THRESHOLD));
+        assertEquals(1, mSamples.get());
+
+        List<StallDetector.Stall> stalls = mDetector.getStalls();
+        assertEquals(1, stalls.size());
+        StallDetector.Stall stall = stalls.get(0);
+        assertEquals(StallDetector.Action.INITIAL_LOAD, stall.getAction());
+        assertEquals(lastFrame, stall.getStartTime());
+        assertEquals(-1, stall.getDuration());
+        assertEquals("parse", stall.getStack()[0].getMethodName());
+
+        // Ended by the next frame
+        frames(1, 3 * THRESHOLD);
+        assertEquals(3 * THRESHOLD, stall.getDuration());
+        assertTrue(mDetector.check(mNow + THRESHOLD));
+        assertEquals(2, mDetector.getStallCount());
+        assertEquals(2, mSamples.get());
+    }
+
+    @Test
+    public void noStallWhilePaused() {
+        assertFalse(mDetector.check(mNow + THRESHOLD));
+        frames(2, FRAME);
+        mDetector.pause();
+        assertFalse(mDetector.check(mNow + 10 * THRESHOLD));
+
+        // The first frame after the pause only restarts the count
+        mNow += 10 * THRESHOLD;
+        mDetector.onFrame(mNow);
+        assertEquals(1, mDetector.getFrameCount(StallDetector.Action.OTHER));
+        assertEquals(0, mDetector.getStallCount());
+        assertEquals(0, mSamples.get());
+    }
+
+    @Test
+    public void firstStallsAreKept() throws Exception {
+        for (int i = 0; i < StallDetector.MAX_STALLS + 5; i++) {
+            frames(1, FRAME);
+            assertTrue(mDetector.check(mNow + THRESHOLD));
+            frames(1, THRESHOLD);
+        }
+        assertEquals(StallDetector.MAX_STALLS + 5, mDetector.getStallCount());
+        assertEquals(StallDetector.MAX_STALLS, mDetector.getStalls().size());
+
+        File file = mFolder.newFile("jank.txt");
+        mDetector.writeReport(file);
+        String report = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+        assertTrue(report, report.startsWith("initial_load: 0 frames"));
+        assertTrue(report, report.contains("other: 49 frames, 25 janky"));
+        assertTrue(report, report.contains("Stall during other, 1000 ms"));
+        assertTrue(report, report.contains("\tat com.example.Slow.parse(Slow.java:42)"));
+
+        mDetector.reset();
+        assertEquals(0, mDetector.getStallCount());
+        assertEquals(0, mDetector.getFrameCount(StallDetector.Action.OTHER));
+    }
+
+    /*
+     * Draw the given number of frames, the given time apart.
+     */
+    private void frames(int count, long interval) {
+        for (int i = 0; i < count; i++) {
+            mNow += interval;
+            mDetector.onFrame(mNow);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Flings through a long list whose few rows are recycled, and checks that
+ * {@link ThumbnailBinder} never shows in a row the thumbnail of an article it has been
+ * bound to before.
+ */
+public class ThumbnailBinderTest {
+
+    private static final int ITEM_COUNT = 2000;
+    private static final int ROWS = 8;
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    return output.toByteArray();
+                }
+            };
+
+    private static final ThumbnailCache.Sizer<byte[]> SIZER = new ThumbnailCache.Sizer<byte[]>() {
+        @Override
+        public int sizeOf(byte[] image) {
+            return image.length;
+        }
+    };
+
+    private FakeGuardianServer mServer;
+    // Results of the thumbnail requests, waiting to be run by the test, as a main thread would
+    private final BlockingQueue<Runnable> mMainThread = new LinkedBlockingQueue<>();
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(42);
+        // Uneven latencies, so that responses come back out of order
+        mServer.setThumbnailProfile(FakeGuardianServer.Profile.FAST.withLatency(0, 4));
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void flingNeverBindsWrongImageToRecycledRow() throws Exception {
+        ThumbnailCache<byte[]> cache = new ThumbnailCache<>(100 * 1024, null, 0, SIZER, BYTES);
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, cache);
+        ThumbnailBinder<byte[]> binder = new ThumbnailBinder<>(downloader, cache,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable runnable) {
+                        mMainThread.add(runnable);
+                    }
+                });
+
+        Row[] rows = new Row[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Row();
+        }
+
+        // Down to the end of the list, then halfway back up
+        List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < ITEM_COUNT; position++) {
+            positions.add(position);
+        }
+        for (int position = ITEM_COUNT - 1; position >= ITEM_COUNT / 2; position--) {
+            positions.add(position);
+        }
+        for (int position : positions) {
+            Row row = rows[position % ROWS];
+            row.mBound = mServer.getThumbnail(nameFor(position));
+            binder.bind(row, url(position));
+            // Only the rows on screen wait for a thumbnail
+            assertTrue(binder.getPendingCount() <= ROWS);
+            runPendingResults();
+        }
+
+        // The fling is over: let the rows on screen get their thumbnails
+        while (binder.getPendingCount() > 0) {
+            Runnable result = mMainThread.poll(10, TimeUnit.SECONDS);
+            assertNotNull("Thumbnail request never completed", result);
+            result.run();
+        }
+        runPendingResults();
+
+        for (Row row : rows) {
+            assertEquals(0, row.mWrongImages);
+            assertArrayEquals(row.mBound, row.mShown);
+        }
+        // The requests of the rows that flew by were mostly dropped before reaching the network
+        assertTrue(mServer.getThumbnailCount() < positions.size());
+        downloader.cancel();
+    }
+
+    @Test
+    public void memoryStaysBoundedWhileScrollingThroughTheFeed() throws Exception {
+        // Thumbnails are about the same size, the first ones the smallest
+        long memoryBytes = 16 * mServer.getThumbnail(nameFor(0)).length;
+        ThumbnailCache<byte[]> cache = new ThumbnailCache<>(memoryBytes, null, 0, SIZER, BYTES);
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, cache);
+        ThumbnailBinder<byte[]> binder = new ThumbnailBinder<>(downloader, cache,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable runnable) {
+                        mMainThread.add(runnable);
+                    }
+                });
+        Row[] rows = new Row[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = new Row();
+        }
+
+        // Scrolled slowly enough for every row to get its thumbnail
+        int itemCount = 1200;
+        for (int position = 0; position < itemCount; position++) {
+            Row row = rows[position % ROWS];
+            row.mBound = mServer.getThumbnail(nameFor(position));
+            binder.bind(row, url(position));
+            while (binder.getPendingCount() > 0) {
+                Runnable result = mMainThread.poll(10, TimeUnit.SECONDS);
+                assertNotNull("Thumbnail request never completed", result);
+                result.run();
+            }
+            assertArrayEquals(row.mBound, row.mShown);
+
+            // Whatever the number of rows bound so far, the thumbnails held are the ones in
+            // the cache, and the ones shown by the few rows
+            assertTrue(cache.getMemoryCache().size() <= memoryBytes);
+        }
+        assertEquals(itemCount, mServer.getThumbnailCount());
+        assertTrue(cache.getMemoryCache().evictionCount() >= itemCount - 16);
+        downloader.cancel();
+    }
+
+    @Test
+    public void rowBoundToCachedThumbnailShowsItImmediately() throws Exception {
+        ThumbnailCache<byte[]> cache = new ThumbnailCache<>(100 * 1024, null, 0, SIZER, BYTES);
+        byte[] image = mServer.getThumbnail(nameFor(1));
+        cache.put(url(1), image, image);
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, cache);
+        ThumbnailBinder<byte[]> binder = new ThumbnailBinder<>(downloader, cache,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable runnable) {
+                        mMainThread.add(runnable);
+                    }
+                });
+
+        Row row = new Row();
+        row.mBound = image;
+        binder.bind(row, url(1));
+        assertArrayEquals(image, row.mShown);
+        assertEquals(0, binder.getPendingCount());
+        assertEquals(0, mServer.getThumbnailCount());
+        downloader.cancel();
+    }
+
+    private void runPendingResults() {
+        Runnable result;
+        while ((result = mMainThread.poll()) != null) {
+            result.run();
+        }
+    }
+
+    private String url(int position) {
+        return mServer.getThumbnailUrl(nameFor(position));
+    }
+
+    private static String nameFor(int position) {
+        return position + ".jpg";
+    }
+
+    /*
+     * A recycled row, which records the thumbnails shown in it.
+     */
+    private static class Row implements ThumbnailBinder.Target<byte[]> {
+        // Thumbnail of the article the row is bound to
+        byte[] mBound;
+        byte[] mShown;
+        int mWrongImages;
+
+        @Override
+        public void showImage(byte[] image) {
+            if (!Arrays.equals(mBound, image)) {
+                mWrongImages++;
+            }
+            mShown = image;
+        }
+
+        @Override
+        public void showPlaceholder() {
+            mShown = null;
+        }
+    }
+}
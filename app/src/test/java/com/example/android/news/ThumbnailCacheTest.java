@@ -0,0 +1,144 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the two tiers of {@link ThumbnailCache}, and that a second load of the same
+ * thumbnails through a cached {@link ThumbnailDownloader} does not hit the network.
+ */
+public class ThumbnailCacheTest {
+
+    private static final int IMAGE_COUNT = 10;
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    return output.toByteArray();
+                }
+            };
+
+    private static final ThumbnailCache.Sizer<byte[]> SIZER = new ThumbnailCache.Sizer<byte[]>() {
+        @Override
+        public int sizeOf(byte[] image) {
+            return image.length;
+        }
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void secondLoadPerformsNoImageRequests() throws Exception {
+        File directory = mFolder.newFolder("thumbnails");
+        ThumbnailCache<byte[]> cache = newCache(directory, 1024 * 1024);
+
+        loadAll(cache);
+        assertEquals(IMAGE_COUNT, mServer.getThumbnailCount());
+
+        // Same process: served from memory
+        loadAll(cache);
+        assertEquals(IMAGE_COUNT, mServer.getThumbnailCount());
+        assertEquals(IMAGE_COUNT, cache.getMemoryCache().hitCount());
+
+        // New process: memory is empty, served from disk
+        ThumbnailCache<byte[]> reopened = newCache(directory, 1024 * 1024);
+        loadAll(reopened);
+        assertEquals(IMAGE_COUNT, mServer.getThumbnailCount());
+        assertEquals(IMAGE_COUNT, reopened.getDiskCache().hitCount());
+        assertEquals(0, reopened.getDiskCache().missCount());
+    }
+
+    @Test
+    public void memoryTierIsBoundedByBytes() {
+        MemoryLruCache<String, byte[]> cache = new MemoryLruCache<String, byte[]>(250) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        // Make "a" the most recently used entry, so that "b" is evicted first
+        assertNotNull(cache.get("a"));
+        cache.put("c", new byte[100]);
+
+        assertEquals(200, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+    }
+
+    @Test
+    public void diskTierIsBoundedByBytesAndKeepsUsageOrder() throws Exception {
+        File directory = mFolder.newFolder("disk");
+        DiskLruCache cache = new DiskLruCache(directory, 250);
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        assertNotNull(cache.get("a"));
+        cache.close();
+
+        // The usage order is recovered from the journal
+        DiskLruCache reopened = new DiskLruCache(directory, 250);
+        reopened.put("c", new byte[100]);
+        assertEquals(200, reopened.size());
+        assertEquals(1, reopened.evictionCount());
+        assertNull(reopened.get("b"));
+        assertArrayEquals(new byte[100], reopened.get("a"));
+        assertNotNull(reopened.get("c"));
+        reopened.close();
+    }
+
+    private ThumbnailCache<byte[]> newCache(File directory, long bytes) throws IOException {
+        return new ThumbnailCache<>(bytes, directory, bytes, SIZER, BYTES);
+    }
+
+    private void loadAll(ThumbnailCache<byte[]> cache) throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, cache);
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            futures.add(downloader.submit(new URL(mServer.getThumbnailUrl(i + ".jpg"))));
+        }
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            assertArrayEquals(mServer.getThumbnail(i + ".jpg"), futures.get(i).get());
+        }
+        downloader.shutdown();
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.android.news;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that {@link ThumbnailDownloader} fetches images in parallel, against a
+ * {@link FakeGuardianServer} which delays every image response.
+ */
+public class ThumbnailDownloaderTest {
+
+    private static final long IMAGE_DELAY = 200; /* milliseconds */
+    private static final int IMAGE_COUNT = 12;
+
+    private static final ThumbnailDownloader.Decoder<byte[]> BYTES =
+            new ThumbnailDownloader.Decoder<byte[]>() {
+                @Override
+                public byte[] decode(InputStream inputStream) throws IOException {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        output.write(buffer, 0, read);
+                    }
+                    return output.toByteArray();
+                }
+            };
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = new FakeGuardianServer(1);
+        mServer.setThumbnailProfile(FakeGuardianServer.Profile.FAST
+                .withLatency(IMAGE_DELAY, IMAGE_DELAY));
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop();
+    }
+
+    @Test
+    public void wallClockTimeScalesWithConcurrency() throws Exception {
+        long sequential = IMAGE_COUNT * IMAGE_DELAY;
+        // Warm up the server and the HTTP stack before measuring anything
+        downloadAll(IMAGE_COUNT, IMAGE_COUNT);
+
+        long fullyParallel = downloadAll(IMAGE_COUNT, IMAGE_COUNT);
+        assertTrue("Took " + fullyParallel + " ms", fullyParallel < sequential / 4);
+
+        long fourAtATime = downloadAll(4, IMAGE_COUNT);
+        assertTrue("Took " + fourAtATime + " ms",
+                fourAtATime >= (IMAGE_COUNT / 4) * IMAGE_DELAY);
+        assertTrue("Took " + fourAtATime + " ms", fourAtATime < sequential / 2);
+    }
+
+    @Test
+    public void perHostLimitBoundsSimultaneousRequests() throws Exception {
+        downloadAll(IMAGE_COUNT, 2);
+        assertEquals(2, mServer.getMaxThumbnailsInFlight());
+    }
+
+    @Test
+    public void cancelStopsPendingDownloads() throws Exception {
+        ThumbnailDownloader<byte[]> downloader = new ThumbnailDownloader<>(BYTES, 1, 1);
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            futures.add(downloader.submit(imageURL(i)));
+        }
+        downloader.cancel();
+
+        for (Future<byte[]> future : futures) {
+            try {
+                future.get();
+                fail("Download should have been cancelled");
+            } catch (CancellationException expected) {
+                // expected
+            }
+        }
+        assertTrue(downloader.submit(imageURL(0)).isCancelled());
+    }
+
+    /*
+     * Download IMAGE_COUNT images and return the elapsed wall-clock time in milliseconds.
+     */
+    private long downloadAll(int concurrency, int perHostLimit) throws Exception {
+        ThumbnailDownloader<byte[]> downloader =
+                new ThumbnailDownloader<>(BYTES, concurrency, perHostLimit);
+        long start = System.nanoTime();
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            futures.add(downloader.submit(imageURL(i)));
+        }
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            assertArrayEquals(mServer.getThumbnail(i + ".jpg"), futures.get(i).get());
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        downloader.shutdown();
+        return elapsed;
+    }
+
+    private URL imageURL(int index) throws IOException {
+        return new URL(mServer.getThumbnailUrl(index + ".jpg"));
+    }
+}
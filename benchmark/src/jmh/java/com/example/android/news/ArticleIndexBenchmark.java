@@ -0,0 +1,100 @@
+package com.example.android.news;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the searches of {@link ArticleIndex} over ten thousand articles, as they are run
+ * on every keystroke of a query, and the cost of indexing an article.
+ * <p>
+ * The titles are made of random words of a vocabulary of a few thousand words, the short
+ * ones being the most frequent, as in real titles. The searched prefixes go from a single
+ * letter, which matches most of the articles, to two words.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArticleIndexBenchmark {
+
+    private static final int ARTICLE_COUNT = 10000;
+    // Results shown by the app
+    private static final int MAX_RESULTS = 200;
+    private static final String[] SECTIONS = {"Science", "Technology", "Education",
+            "Environment", "World news", "Sport", "Culture", "Business"};
+    private static final String[] SYLLABLES = {"ba", "ce", "di", "fo", "gu", "la", "me", "ni",
+            "po", "qua", "ri", "sa", "te", "vo", "tum", "ster", "gra", "ion", "ent", "al"};
+
+    // The keystrokes of a search: one letter, a word being typed, a word, two words
+    @Param({"s", "qua", "quantum", "quantum com"})
+    public String query;
+
+    private List<Article> mArticles;
+    private ArticleIndex mIndex;
+
+    @Setup
+    public void buildIndex() {
+        Random random = new Random(42);
+        List<String> vocabulary = new ArrayList<>();
+        vocabulary.add("quantum");
+        vocabulary.add("computing");
+        while (vocabulary.size() < 4000) {
+            StringBuilder word = new StringBuilder();
+            for (int s = 1 + random.nextInt(4); s > 0; s--) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            vocabulary.add(word.toString());
+        }
+
+        long time = PublicationDate.parse("2017-06-20T14:41:01Z");
+        mArticles = new ArrayList<>(ARTICLE_COUNT);
+        for (int i = 0; i < ARTICLE_COUNT; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < 6 + random.nextInt(8); w++) {
+                // Skewed towards the first words of the vocabulary
+                double skew = random.nextDouble();
+                title.append(vocabulary.get((int) (skew * skew * skew * vocabulary.size())))
+                        .append(' ');
+            }
+            String id = "science/2017/jun/20/article-" + i;
+            mArticles.add(new Article(id, title.toString().trim(), "Author " + (i % 300),
+                    time - i * 60000L, SECTIONS[i % SECTIONS.length],
+                    "https://www.theguardian.com/" + id, null));
+        }
+        mIndex = new ArticleIndex(ARTICLE_COUNT);
+        mIndex.addAll(mArticles);
+    }
+
+    @Benchmark
+    public List<Article> search() {
+        return mIndex.search(query, MAX_RESULTS);
+    }
+
+    /*
+     * Index all the articles: the time reported is the time per article.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ARTICLE_COUNT)
+    public ArticleIndex addArticles() {
+        ArticleIndex index = new ArticleIndex(ARTICLE_COUNT);
+        index.addAll(mArticles);
+        return index;
+    }
+}
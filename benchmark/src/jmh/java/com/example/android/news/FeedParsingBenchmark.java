@@ -0,0 +1,70 @@
+package com.example.android.news;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many responses of the "search" endpoint per second go from the bytes of their
+ * body to a list of articles:
+ * <ul>
+ * <li>through {@link FeedReader}, as the app does, with and without compression;</li>
+ * <li>through the old org.json path, see {@link LegacyFeedParser}.</li>
+ * </ul>
+ * Run with the gc profiler, as the jmh task does, to compare the allocation rates as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeedParsingBenchmark {
+
+    // A page of the app, the largest page of the API, and a thousand results
+    @Param({"30", "200", "1000"})
+    public int resultCount;
+
+    private byte[] mBody;
+    private byte[] mGzipBody;
+
+    @Setup
+    public void buildResponses() throws IOException {
+        mBody = SampleResponses.build(resultCount, false);
+        mGzipBody = SampleResponses.build(resultCount, true);
+        // Both paths must see the same articles
+        int articles = FeedReader.read(new ByteArrayInputStream(mBody), null, null)
+                .getArticles().size();
+        if (articles != LegacyFeedParser.parse(new ByteArrayInputStream(mBody)).size()) {
+            throw new IllegalStateException("The parsers disagree");
+        }
+    }
+
+    @Benchmark
+    public FeedResult streaming() throws IOException {
+        return FeedReader.read(new ByteArrayInputStream(mBody), null, null);
+    }
+
+    @Benchmark
+    public FeedResult streamingGzip() throws IOException {
+        return FeedReader.read(new ByteArrayInputStream(mGzipBody), "gzip", null);
+    }
+
+    @Benchmark
+    public List<Article> legacy() throws IOException {
+        return LegacyFeedParser.parse(new ByteArrayInputStream(mBody));
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.android.news;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Baseline of the parsing benchmarks: the way QueryUtils used to read a response, before
+ * {@link GuardianResponseParser} and {@link PublicationDate}. The whole body is read into a
+ * string, which is parsed into an org.json tree, and the date of every article is parsed and
+ * formatted with new SimpleDateFormat instances.
+ * <p>
+ * Only the download of the thumbnails, which the old code did while parsing, is left out.
+ */
+final class LegacyFeedParser {
+
+    private LegacyFeedParser() {
+    }
+
+    static List<Article> parse(InputStream inputStream) throws IOException {
+        return extractFeatureFromJson(readFromStream(inputStream));
+    }
+
+    private static String readFromStream(InputStream inputStream) throws IOException {
+        StringBuilder output = new StringBuilder();
+        if (inputStream != null) {
+            InputStreamReader inputStreamReader = new InputStreamReader(inputStream,
+                    Charset.forName("UTF-8"));
+            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+            String line = bufferedReader.readLine();
+            while (line != null) {
+                output.append(line);
+                line = bufferedReader.readLine();
+            }
+        }
+        return output.toString();
+    }
+
+    private static List<Article> extractFeatureFromJson(String jsonResponse) {
+        ArrayList<Article> articlesList = new ArrayList<>();
+        try {
+            JSONObject jsonObject = new JSONObject(jsonResponse);
+            JSONObject response = jsonObject.getJSONObject("response");
+            JSONArray results = response.getJSONArray("results");
+
+            for (int i = 0; i < results.length(); i++) {
+                JSONObject item = results.getJSONObject(i);
+                if (!item.has("type") || !item.getString("type").equals("article")) {
+                    continue;
+                }
+
+                String section = "";
+                if (item.has("sectionName")) {
+                    section = item.getString("sectionName");
+                }
+
+                String formattedDate = "";
+                if (item.has("webPublicationDate")) {
+                    formattedDate = formatPublicationDate(item.getString("webPublicationDate"));
+                }
+
+                String title = "";
+                if (item.has("webTitle")) {
+                    title = item.getString("webTitle");
+                }
+
+                String link = "";
+                if (item.has("webUrl")) {
+                    link = item.getString("webUrl");
+                }
+
+                String authors = "";
+                JSONArray tags = item.getJSONArray("tags");
+                if (tags.length() > 0) {
+                    JSONObject firstAuthor = tags.getJSONObject(0);
+                    if (firstAuthor.has("webTitle")) {
+                        if (tags.length() > 1) {
+                            authors = firstAuthor.getString("webTitle") + ", ...";
+                        } else {
+                            authors = firstAuthor.getString("webTitle");
+                        }
+                    }
+                }
+
+                JSONObject fields = item.getJSONObject("fields");
+                String thumbnailUrl = fields.getString("thumbnail");
+
+                articlesList.add(new Article(title, authors, formattedDate, section, link,
+                        thumbnailUrl));
+            }
+        } catch (JSONException e) {
+            // Keep the articles parsed so far, as the old code did
+        }
+        return articlesList;
+    }
+
+    /*
+     * The conversion of the date of publication, as it was done for every article.
+     */
+    static String formatPublicationDate(String datetime) {
+        DateFormat dfInput = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        Date date;
+        try {
+            date = dfInput.parse(datetime);
+        } catch (ParseException e) {
+            return "";
+        }
+        StringBuffer sb = new StringBuffer();
+        if (Locale.getDefault() == Locale.US) {
+            DateFormat dfOutput = new SimpleDateFormat("MM/dd/yy", Locale.US);
+            dfOutput.format(date, sb, new FieldPosition(SimpleDateFormat.DATE_FIELD));
+        } else {
+            DateFormat dfOutput = new SimpleDateFormat("dd/MM/yy", Locale.getDefault());
+            dfOutput.format(date, sb, new FieldPosition(SimpleDateFormat.DATE_FIELD));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.news;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many publication dates per second are parsed from the API and formatted for
+ * display, over 100,000 distinct datetimes: with {@link PublicationDate}, and with new
+ * SimpleDateFormat instances for every date, as the app used to do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PublicationDateBenchmark {
+
+    private static final int DATETIMES = 100000;
+
+    private final String[] mDatetimes = new String[DATETIMES];
+
+    @Setup
+    public void buildDatetimes() {
+        Random random = new Random(42);
+        long newest = PublicationDate.parse("2017-06-20T14:41:01Z");
+        for (int i = 0; i < DATETIMES; i++) {
+            // Spread over the last ten years
+            long age = (long) (random.nextDouble() * 10 * 365 * 24 * 60 * 60) * 1000;
+            mDatetimes[i] = PublicationDate.format(newest - age);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATETIMES)
+    public void parseAndFormat(Blackhole blackhole) {
+        for (String datetime : mDatetimes) {
+            blackhole.consume(PublicationDate.formatForDisplay(PublicationDate.parse(datetime)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATETIMES)
+    public void parse(Blackhole blackhole) {
+        for (String datetime : mDatetimes) {
+            blackhole.consume(PublicationDate.parse(datetime));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DATETIMES)
+    public void legacyParseAndFormat(Blackhole blackhole) {
+        for (String datetime : mDatetimes) {
+            blackhole.consume(LegacyFeedParser.formatPublicationDate(datetime));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.android.news;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work done in the main thread to bind a row of the list, over a large list:
+ * before, the date formatted and the section compared with the names of the sections at
+ * every bind, and after, the row made in advance by {@link ArticleRows} looked up.
+ * <p>
+ * The values of the views are returned rather than set, and the colors, which were resolved
+ * from the resources at every bind before, are not part of it: only the work which does not
+ * depend on the Android framework is measured. The time reported is the time per row.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowBindBenchmark {
+
+    private static final int ROW_COUNT = 2000;
+    private static final String[] SECTION_NAMES = {"Technology", "Science", "Education",
+            "Environment"};
+
+    private List<Article> mArticles;
+    private ArticleRows mRows;
+
+    @Setup
+    public void prepareRows() throws IOException {
+        byte[] body = SampleResponses.build(ROW_COUNT, false);
+        mArticles = FeedReader.read(new ByteArrayInputStream(body), null, null).getArticles();
+        Map<String, Integer> colors = new HashMap<>();
+        for (int i = 0; i < SECTION_NAMES.length; i++) {
+            colors.put(SECTION_NAMES[i], 0xff000000 | i);
+        }
+        mRows = new ArticleRows(colors);
+        mRows.prepare(mArticles);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int bindFormattingEachTime() {
+        int bound = 0;
+        for (Article item : mArticles) {
+            bound += item.getTitle().length() + item.getAuthor().length()
+                    + item.getSection().length() + item.getDate().length();
+            for (int i = 0; i < SECTION_NAMES.length; i++) {
+                if (item.getSection().equals(SECTION_NAMES[i])) {
+                    bound += i;
+                    break;
+                }
+            }
+        }
+        return bound;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROW_COUNT)
+    public int bindPreparedRows() {
+        int bound = 0;
+        for (Article item : mArticles) {
+            ArticleRow row = mRows.get(item);
+            bound += row.getTitle().length() + row.getAuthorLine().length()
+                    + row.getSection().length() + row.getDate().length()
+                    + row.getSectionColor();
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.android.news;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Builds responses of the "search" endpoint of any size from search-response.json, a page of
+ * results in the format of the API, with the same fields as the query of the app. Its results
+ * are repeated, each copy with its own id, link and publication date, newest first.
+ */
+final class SampleResponses {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private SampleResponses() {
+    }
+
+    /**
+     * Return the body of a response with the given number of results, as sent by the API:
+     * compact, and gzip compressed if asked.
+     */
+    static byte[] build(int resultCount, boolean gzip) throws IOException {
+        try {
+            JSONObject sample = new JSONObject(readResource("search-response.json"));
+            JSONObject response = sample.getJSONObject("response");
+            JSONArray sampleResults = response.getJSONArray("results");
+            long newest = PublicationDate.parse(
+                    sampleResults.getJSONObject(0).getString("webPublicationDate"));
+
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < resultCount; i++) {
+                JSONObject result = new JSONObject(
+                        sampleResults.getJSONObject(i % sampleResults.length()).toString());
+                result.put("id", result.getString("id") + "-" + i);
+                result.put("webUrl", result.getString("webUrl") + "-" + i);
+                result.put("apiUrl", result.getString("apiUrl") + "-" + i);
+                result.put("webPublicationDate",
+                        PublicationDate.format(newest - i * 7 * 60 * 1000L));
+                results.put(result);
+            }
+            response.put("pageSize", resultCount);
+            response.put("results", results);
+
+            byte[] body = sample.toString().getBytes(UTF_8);
+            return gzip ? gzip(body) : body;
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String readResource(String name) throws IOException {
+        InputStream inputStream = SampleResponses.class.getClassLoader()
+                .getResourceAsStream(name);
+        if (inputStream == null) {
+            throw new IOException("Missing resource " + name);
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), UTF_8);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(output);
+        gzip.write(data);
+        gzip.close();
+        return output.toByteArray();
+    }
+}
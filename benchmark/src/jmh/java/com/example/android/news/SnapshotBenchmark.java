@@ -0,0 +1,81 @@
+package com.example.android.news;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to get the articles of a feed back from a snapshot written by
+ * {@link ArticleCodec}, from memory and from a memory mapped file, against parsing the JSON
+ * response they came from again with {@link FeedReader}. Writing the snapshot is measured too.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    // A page of the app, the largest page of the API, and a thousand results
+    @Param({"30", "200", "1000"})
+    public int resultCount;
+
+    private byte[] mBody;
+    private List<Article> mArticles;
+    private byte[] mSnapshot;
+    private File mSnapshotFile;
+
+    @Setup
+    public void buildSnapshots() throws IOException {
+        mBody = SampleResponses.build(resultCount, false);
+        mArticles = FeedReader.read(new ByteArrayInputStream(mBody), null, null).getArticles();
+        mSnapshot = ArticleCodec.encode(mArticles);
+        mSnapshotFile = File.createTempFile("articles", ".snapshot");
+        ArticleCodec.write(mArticles, mSnapshotFile);
+        if (ArticleCodec.read(mSnapshotFile).size() != mArticles.size()) {
+            throw new IllegalStateException("The snapshot lost articles");
+        }
+    }
+
+    @TearDown
+    public void deleteSnapshot() {
+        mSnapshotFile.delete();
+    }
+
+    @Benchmark
+    public FeedResult parseJson() throws IOException {
+        return FeedReader.read(new ByteArrayInputStream(mBody), null, null);
+    }
+
+    @Benchmark
+    public List<Article> decodeSnapshot() throws IOException {
+        return ArticleCodec.decode(ByteBuffer.wrap(mSnapshot));
+    }
+
+    @Benchmark
+    public List<Article> readSnapshotFile() throws IOException {
+        return ArticleCodec.read(mSnapshotFile);
+    }
+
+    @Benchmark
+    public byte[] encodeSnapshot() {
+        return ArticleCodec.encode(mArticles);
+    }
+}